@@ -0,0 +1,402 @@
+package com.simone.movielynx.backend;
+
+import com.simone.movielynx.loader.CoStarIndex;
+import com.simone.movielynx.loader.CreditGraph;
+import com.simone.movielynx.loader.GraphSnapshot;
+import com.simone.movielynx.loader.HubDistanceIndex;
+import com.simone.movielynx.loader.NameSuggestIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The actor/movie graph served by the backend, held as primitive adjacency arrays.
+ * <p>
+ * The graph is bipartite, so it is kept as two compressed sparse row arrays: actor->movies, as loaded, and
+ * its transpose movie->actors, so that a search can step from an actor to its co-stars in either direction
+ * without touching any objects.  A graph loaded from a snapshot file is memory-mapped rather than read in:
+ * the adjacency arrays and names stay off-heap, out of the way of the garbage collector, and are paged in by
+ * the OS as they are used, so the backend can start serving as soon as the file is mapped.
+ * <p>
+ * A graph may also have the distances of every actor from a few hub actors, as computed by a
+ * HubDistanceIndex, which bound the distance between any two actors, a NameSuggestIndex for looking
+ * actors up by the start of a name, and a CoStarIndex of every actor's co-stars, ranked by shared movies.
+ * <p>
+ * Instances are immutable, and safe to share between request threads.  A mapped graph can be closed to unmap
+ * it straight away, once no thread uses it any more.
+ */
+public class ActorGraph {
+    private final NameTable actorNames;
+    private final NameTable movieNames;
+    private final IntBuffer actorOffsets;
+    private final IntBuffer actorMovies;
+    private final IntBuffer movieOffsets;
+    private final IntBuffer movieActors;
+    private final IntBuffer hubActorIds;
+    private final ByteBuffer hubDistances;
+    private final int hubCount;
+    private final NameSuggester nameSuggester;
+    private final IntBuffer coStarOffsets;
+    private final IntBuffer coStarActors;
+    private final IntBuffer coStarWeights;
+    private final List<ByteBuffer> mappedBuffers;
+    private final long contentId;
+
+    private ActorGraph(NameTable actorNames, NameTable movieNames, IntBuffer actorOffsets, IntBuffer actorMovies,
+                       IntBuffer movieOffsets, IntBuffer movieActors, IntBuffer hubActorIds,
+                       ByteBuffer hubDistances, NameSuggester nameSuggester, IntBuffer coStarOffsets,
+                       IntBuffer coStarActors, IntBuffer coStarWeights, List<ByteBuffer> mappedBuffers,
+                       long contentId) {
+        this.actorNames = actorNames;
+        this.movieNames = movieNames;
+        this.actorOffsets = actorOffsets;
+        this.actorMovies = actorMovies;
+        this.movieOffsets = movieOffsets;
+        this.movieActors = movieActors;
+        this.hubActorIds = hubActorIds;
+        this.hubDistances = hubDistances;
+        this.hubCount = hubActorIds == null ? 0 : hubActorIds.limit();
+        this.nameSuggester = nameSuggester;
+        this.coStarOffsets = coStarOffsets;
+        this.coStarActors = coStarActors;
+        this.coStarWeights = coStarWeights;
+        this.mappedBuffers = mappedBuffers;
+        this.contentId = contentId;
+    }
+
+    /**
+     * Creates a graph on the heap from the given credits.
+     */
+    public static ActorGraph of(CreditGraph creditGraph) {
+        return of(creditGraph, null);
+    }
+
+    /**
+     * Creates a graph on the heap from the given credits and hub distances, indexing its actor names.
+     *
+     * @param hubDistances the distances from the graph's hubs, or null
+     */
+    public static ActorGraph of(CreditGraph creditGraph, HubDistanceIndex hubDistances) {
+        return of(creditGraph, hubDistances, null);
+    }
+
+    /**
+     * Creates a graph on the heap from the given credits, hub distances and co-stars, indexing its actor names.
+     *
+     * @param hubDistances the distances from the graph's hubs, or null
+     * @param coStars      the co-stars of the graph's actors, or null
+     */
+    public static ActorGraph of(CreditGraph creditGraph, HubDistanceIndex hubDistances, CoStarIndex coStars) {
+        String[] actorNames = new String[creditGraph.getActorCount()];
+        for (int actorId = 0; actorId < actorNames.length; actorId++) {
+            actorNames[actorId] = creditGraph.getActorName(actorId);
+        }
+        String[] movieNames = new String[creditGraph.getMovieCount()];
+        for (int movieId = 0; movieId < movieNames.length; movieId++) {
+            movieNames[movieId] = creditGraph.getMovieName(movieId);
+        }
+        return new ActorGraph(NameTable.of(actorNames), NameTable.of(movieNames),
+                IntBuffer.wrap(creditGraph.getCreditOffsets()), IntBuffer.wrap(creditGraph.getMovieIds()),
+                IntBuffer.wrap(creditGraph.getMovieCreditOffsets()), IntBuffer.wrap(creditGraph.getActorIds()),
+                hubDistances == null ? null : IntBuffer.wrap(hubDistances.getHubActorIds()),
+                hubDistances == null ? null : ByteBuffer.wrap(hubDistances.getDistances()),
+                NameSuggester.of(NameSuggestIndex.of(creditGraph)),
+                coStars == null ? null : IntBuffer.wrap(coStars.getOffsets()),
+                coStars == null ? null : IntBuffer.wrap(coStars.getCoStarIds()),
+                coStars == null ? null : IntBuffer.wrap(coStars.getWeights()), Collections.emptyList(),
+                new Random().nextLong());
+    }
+
+    /**
+     * Memory-maps the graph in the given snapshot file, as written by the DB Loader.
+     *
+     * @param file   the snapshot file
+     * @param verify whether to check the checksums of the whole snapshot before mapping it, which reads the
+     *               whole file
+     * @throws IOException if the file can't be mapped, or isn't a valid graph snapshot
+     */
+    public static ActorGraph load(File file, boolean verify) throws IOException {
+        try (GraphSnapshot snapshot = GraphSnapshot.open(file)) {
+            if (verify) {
+                snapshot.verify();
+            }
+            SectionMapper mapper = new SectionMapper(snapshot);
+            IntBuffer hubActorIds = null;
+            ByteBuffer hubDistances = null;
+            if (snapshot.hasSection(GraphSnapshot.HUB_DISTANCES)) {
+                hubActorIds = mapper.mapInts(GraphSnapshot.HUB_ACTORS);
+                hubDistances = mapper.mapBytes(GraphSnapshot.HUB_DISTANCES);
+                if (hubDistances.limit() != (long) hubActorIds.limit() * snapshot.getActorCount()) {
+                    throw new IOException("Graph snapshot has invalid hub distances: " + file);
+                }
+            }
+            NameSuggester nameSuggester = null;
+            if (snapshot.hasSection(GraphSnapshot.SUGGEST_ACTORS)) {
+                nameSuggester = new NameSuggester(mapper.mapInts(GraphSnapshot.SUGGEST_NAME_OFFSETS),
+                        mapper.mapBytes(GraphSnapshot.SUGGEST_NAME_BYTES),
+                        mapper.mapInts(GraphSnapshot.SUGGEST_POSITIONS),
+                        mapper.mapInts(GraphSnapshot.SUGGEST_ACTORS));
+            }
+            IntBuffer coStarOffsets = null;
+            IntBuffer coStarActors = null;
+            IntBuffer coStarWeights = null;
+            if (snapshot.hasSection(GraphSnapshot.COSTAR_WEIGHTS)) {
+                coStarOffsets = mapper.mapInts(GraphSnapshot.COSTAR_OFFSETS);
+                coStarActors = mapper.mapInts(GraphSnapshot.COSTAR_ACTORS);
+                coStarWeights = mapper.mapInts(GraphSnapshot.COSTAR_WEIGHTS);
+                if (coStarOffsets.limit() != snapshot.getActorCount() + 1 ||
+                        coStarActors.limit() != coStarWeights.limit()) {
+                    throw new IOException("Graph snapshot has invalid co-stars: " + file);
+                }
+            }
+            return new ActorGraph(
+                    NameTable.mapped(mapper.mapInts(GraphSnapshot.ACTOR_NAME_OFFSETS),
+                            mapper.mapBytes(GraphSnapshot.ACTOR_NAME_BYTES),
+                            mapper.mapInts(GraphSnapshot.ACTOR_NAME_INDEX)),
+                    NameTable.mapped(mapper.mapInts(GraphSnapshot.MOVIE_NAME_OFFSETS),
+                            mapper.mapBytes(GraphSnapshot.MOVIE_NAME_BYTES), null),
+                    mapper.mapInts(GraphSnapshot.ACTOR_OFFSETS), mapper.mapInts(GraphSnapshot.ACTOR_MOVIES),
+                    mapper.mapInts(GraphSnapshot.MOVIE_OFFSETS), mapper.mapInts(GraphSnapshot.MOVIE_ACTORS),
+                    hubActorIds, hubDistances, nameSuggester, coStarOffsets, coStarActors, coStarWeights,
+                    mapper.mappedBuffers, snapshot.getChecksum() & 0xffffffffL);
+        }
+    }
+
+    public int getActorCount() {
+        return actorNames.size();
+    }
+
+    public int getMovieCount() {
+        return movieNames.size();
+    }
+
+    public String getActorName(int actorId) {
+        return actorNames.get(actorId);
+    }
+
+    public String getMovieName(int movieId) {
+        return movieNames.get(movieId);
+    }
+
+    /**
+     * Writes the name of the given actor to the given writer, straight from the string table if it's mapped.
+     */
+    void writeActorName(int actorId, JsonWriter writer) throws IOException {
+        actorNames.write(actorId, writer);
+    }
+
+    /**
+     * Writes the name of the given movie to the given writer, straight from the string table if it's mapped.
+     */
+    void writeMovieName(int movieId, JsonWriter writer) throws IOException {
+        movieNames.write(movieId, writer);
+    }
+
+    /**
+     * Returns an identifier of the graph's contents, for telling whether a response computed from another graph
+     * still holds: the checksum of the snapshot's header for a mapped graph, which covers every section's
+     * checksum, so it's the same whenever the same snapshot is loaded, or a random value for a graph built in
+     * memory.
+     */
+    public long getContentId() {
+        return contentId;
+    }
+
+    /**
+     * Returns the ID of the actor with the given name, or -1 if there is no such actor.
+     */
+    public int getActorId(String name) {
+        return actorNames.find(name);
+    }
+
+    /**
+     * Returns the index of the given actor's first movie, for getActorMovie().
+     */
+    public int getMoviesStart(int actorId) {
+        return actorOffsets.get(actorId);
+    }
+
+    /**
+     * Returns the index just past the given actor's last movie, for getActorMovie().
+     */
+    public int getMoviesEnd(int actorId) {
+        return actorOffsets.get(actorId + 1);
+    }
+
+    /**
+     * Returns the movie ID at the given index of the actor->movies adjacency.
+     */
+    public int getActorMovie(int index) {
+        return actorMovies.get(index);
+    }
+
+    /**
+     * Returns the index of the given movie's first actor, for getMovieActor().
+     */
+    public int getActorsStart(int movieId) {
+        return movieOffsets.get(movieId);
+    }
+
+    /**
+     * Returns the index just past the given movie's last actor, for getMovieActor().
+     */
+    public int getActorsEnd(int movieId) {
+        return movieOffsets.get(movieId + 1);
+    }
+
+    /**
+     * Returns the actor ID at the given index of the movie->actors adjacency.
+     */
+    public int getMovieActor(int index) {
+        return movieActors.get(index);
+    }
+
+    /**
+     * Returns whether the graph has a name index for suggestActors().
+     */
+    public boolean hasNameIndex() {
+        return nameSuggester != null;
+    }
+
+    /**
+     * Fills the given array with the IDs of distinct actors with a word of their name starting with the given
+     * prefix, ignoring case and accents, and returns how many were found.
+     *
+     * @throws UnsupportedOperationException if the graph has no name index
+     */
+    public int suggestActors(String prefix, int[] actorIds) {
+        if (nameSuggester == null) {
+            throw new UnsupportedOperationException("Graph has no name index");
+        }
+        return nameSuggester.suggest(prefix, actorIds);
+    }
+
+    /**
+     * Returns whether the graph has the co-stars of its actors, for getCoStar().
+     */
+    public boolean hasCoStars() {
+        return coStarOffsets != null;
+    }
+
+    /**
+     * Returns the index of the given actor's first co-star, for getCoStar().  Each actor's co-stars are sorted by
+     * descending number of shared movies.
+     */
+    public int getCoStarsStart(int actorId) {
+        return coStarOffsets.get(actorId);
+    }
+
+    /**
+     * Returns the index just past the given actor's last co-star, for getCoStar().
+     */
+    public int getCoStarsEnd(int actorId) {
+        return coStarOffsets.get(actorId + 1);
+    }
+
+    /**
+     * Returns the actor ID at the given index of the actor->co-stars adjacency.
+     */
+    public int getCoStar(int index) {
+        return coStarActors.get(index);
+    }
+
+    /**
+     * Returns the number of movies shared with the co-star at the given index of the actor->co-stars adjacency.
+     */
+    public int getCoStarWeight(int index) {
+        return coStarWeights.get(index);
+    }
+
+    /**
+     * Returns the number of hub actors with precomputed distances, which may be 0.
+     */
+    public int getHubCount() {
+        return hubCount;
+    }
+
+    public int getHubActorId(int hub) {
+        return hubActorIds.get(hub);
+    }
+
+    /**
+     * Returns the distance of the given actor from the given hub, capped at HubDistanceIndex.MAX_DISTANCE, or
+     * HubDistanceIndex.UNREACHABLE.
+     */
+    public int getHubDistance(int hub, int actorId) {
+        return hubDistances.get(actorId * hubCount + hub) & 0xff;
+    }
+
+    /**
+     * Returns a lower bound of the distance between the given actors from the hub distances, or
+     * Integer.MAX_VALUE if the hubs show that the actors aren't connected.
+     */
+    public int getDistanceLowerBound(int actorId1, int actorId2) {
+        int lowerBound = 0;
+        for (int hub = 0; hub < hubCount; hub++) {
+            int distance1 = getHubDistance(hub, actorId1);
+            int distance2 = getHubDistance(hub, actorId2);
+            if ((distance1 == HubDistanceIndex.UNREACHABLE) != (distance2 == HubDistanceIndex.UNREACHABLE)) {
+                return Integer.MAX_VALUE;
+            }
+            if (distance1 != HubDistanceIndex.UNREACHABLE) {
+                lowerBound = Math.max(lowerBound, Math.abs(distance1 - distance2));
+            }
+        }
+        return lowerBound;
+    }
+
+    /**
+     * Returns an upper bound of the distance between the given actors from the hub distances, through the
+     * nearest hub connected to both, or Integer.MAX_VALUE if there is no such hub.
+     */
+    public int getDistanceUpperBound(int actorId1, int actorId2) {
+        int upperBound = Integer.MAX_VALUE;
+        for (int hub = 0; hub < hubCount; hub++) {
+            int distance1 = getHubDistance(hub, actorId1);
+            int distance2 = getHubDistance(hub, actorId2);
+            // Capped distances aren't exact, so they can't bound the distance from above
+            if (distance1 < HubDistanceIndex.MAX_DISTANCE && distance2 < HubDistanceIndex.MAX_DISTANCE) {
+                upperBound = Math.min(upperBound, distance1 + distance2);
+            }
+        }
+        return upperBound;
+    }
+
+    /**
+     * Unmaps a graph loaded from a snapshot file, rather than leaving it mapped until it's garbage collected.
+     * Nothing may use the graph once it's closed: on most JVMs, reading an unmapped graph crashes the process.
+     */
+    public void close() {
+        for (ByteBuffer buffer : mappedBuffers) {
+            GraphSnapshot.unmap(buffer);
+        }
+    }
+
+    /**
+     * Maps a snapshot's sections, keeping track of the mapped buffers so that they can be unmapped.
+     */
+    private static class SectionMapper {
+        final GraphSnapshot snapshot;
+        final List<ByteBuffer> mappedBuffers = new ArrayList<>();
+
+        SectionMapper(GraphSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        ByteBuffer mapBytes(int sectionId) throws IOException {
+            ByteBuffer buffer = snapshot.mapBytes(sectionId);
+            mappedBuffers.add(buffer);
+            return buffer;
+        }
+
+        IntBuffer mapInts(int sectionId) throws IOException {
+            return mapBytes(sectionId).asIntBuffer();
+        }
+    }
+}
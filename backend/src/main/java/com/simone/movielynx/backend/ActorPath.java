@@ -0,0 +1,48 @@
+package com.simone.movielynx.backend;
+
+/**
+ * A chain of actors connected by movies: actor 0 and actor 1 both appear in movie 0, actor 1 and actor 2 in
+ * movie 1, and so on.
+ */
+public class ActorPath {
+    private final int[] actorIds;
+    private final int[] movieIds;
+
+    ActorPath(int[] actorIds, int[] movieIds) {
+        this.actorIds = actorIds;
+        this.movieIds = movieIds;
+    }
+
+    /**
+     * Returns the degrees of separation between the first and last actor, i.e. the number of movies.
+     */
+    public int getDegrees() {
+        return movieIds.length;
+    }
+
+    public int getActorId(int index) {
+        return actorIds[index];
+    }
+
+    /**
+     * Returns the movie connecting actor {@code index} to actor {@code index + 1}.
+     */
+    public int getMovieId(int index) {
+        return movieIds[index];
+    }
+
+    /**
+     * Returns the same path, from the last actor to the first.
+     */
+    public ActorPath reverse() {
+        int[] reversedActorIds = new int[actorIds.length];
+        for (int i = 0; i < actorIds.length; i++) {
+            reversedActorIds[i] = actorIds[actorIds.length - 1 - i];
+        }
+        int[] reversedMovieIds = new int[movieIds.length];
+        for (int i = 0; i < movieIds.length; i++) {
+            reversedMovieIds[i] = movieIds[movieIds.length - 1 - i];
+        }
+        return new ActorPath(reversedActorIds, reversedMovieIds);
+    }
+}
@@ -0,0 +1,73 @@
+package com.simone.movielynx.backend;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+import java.io.IOException;
+
+/**
+ * Serves {@code /costars?actor=<actor>[&limit=<n>]}: the actors sharing the most movies with an actor.
+ * <p>
+ * Responds with {@code {"actor":..,"coStars":[{"actor":..,"movies":n},..]}}, with up to limit co-stars, 10 by
+ * default, most shared movies first, with 400 if the actor is missing or the limit invalid, and with 404 if the
+ * actor is unknown.  The co-stars are precomputed by the DB Loader, so lookups only read the start of the
+ * actor's row, and are answered on Grizzly's own threads rather than the query executor.  Movies with larger
+ * casts than the loader's maximum cast size don't count towards the co-stars.
+ */
+public class CoStarsHandler extends HttpHandler {
+    public final static String ACTOR_PARAMETER = "actor";
+    public final static String LIMIT_PARAMETER = "limit";
+    public final static int DEFAULT_LIMIT = 10;
+    public final static int MAX_LIMIT = 1000;
+
+    private final ActorGraph graph;
+
+    public CoStarsHandler(ActorGraph graph) {
+        this.graph = graph;
+    }
+
+    @Override
+    public void service(Request request, Response response) throws IOException {
+        String actor = request.getParameter(ACTOR_PARAMETER);
+        if (actor == null) {
+            QueryHandler.sendJson(response, HttpStatus.BAD_REQUEST_400,
+                    Json.error(ACTOR_PARAMETER + " must be given"));
+            return;
+        }
+        int limit = DEFAULT_LIMIT;
+        if (request.getParameter(LIMIT_PARAMETER) != null) {
+            try {
+                limit = Integer.parseInt(request.getParameter(LIMIT_PARAMETER));
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                QueryHandler.sendJson(response, HttpStatus.BAD_REQUEST_400, Json.error(LIMIT_PARAMETER +
+                        " must be between 1 and " + MAX_LIMIT));
+                return;
+            }
+        }
+        if (!graph.hasCoStars()) {
+            QueryHandler.sendJson(response, HttpStatus.SERVICE_UNAVAILABLE_503,
+                    Json.error("The graph snapshot has no co-stars"));
+            return;
+        }
+        int actorId = graph.getActorId(actor);
+        if (actorId < 0) {
+            QueryHandler.sendJson(response, HttpStatus.NOT_FOUND_404, Json.error("Unknown actor: " + actor));
+            return;
+        }
+
+        try (JsonWriter writer = JsonWriter.start(response, HttpStatus.OK_200)) {
+            writer.beginObject().key("actor").value(actor).key("coStars").beginArray();
+            int end = Math.min(graph.getCoStarsEnd(actorId), graph.getCoStarsStart(actorId) + limit);
+            for (int i = graph.getCoStarsStart(actorId); i < end; i++) {
+                writer.beginObject().key("actor").actorName(graph, graph.getCoStar(i))
+                        .key("movies").value(graph.getCoStarWeight(i)).endObject();
+            }
+            writer.endArray().endObject();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.simone.movielynx.backend;
+
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Serves {@code /distance?from=<actor>&to=<actor>}: the degrees of separation between two actors.
+ * <p>
+ * Responds with {@code {"from":..,"to":..,"degrees":n}}, with the same errors as a PathHandler.  When the
+ * graph's hub distances pin the distance down, as they do whenever either actor is a hub, or show that the
+ * actors aren't connected, the request is answered straight away from them; otherwise the distance comes from
+ * a path search, or from the path cache.
+ */
+public class DistanceHandler extends PathHandler {
+
+    /**
+     * @param pathFinder the path finder for the given graph, which may be shared with other handlers
+     * @param cache      the cache of search results for the given graph, or null to search for every request
+     */
+    public DistanceHandler(ActorGraph graph, PathFinder pathFinder, PathCache cache, ExecutorService executor,
+                           long timeoutMillis) {
+        super(graph, pathFinder, cache, executor, timeoutMillis);
+    }
+
+    @Override
+    protected boolean answerImmediately(Request request, Response response) throws IOException {
+        int[] actorIds = getActorIds(getGraph(), request, response);
+        if (actorIds == null) {
+            return true;
+        }
+        if (actorIds[0] == actorIds[1]) {
+            sendDegrees(request, response, 0);
+            return true;
+        }
+        int lowerBound = getGraph().getDistanceLowerBound(actorIds[0], actorIds[1]);
+        if (lowerBound == Integer.MAX_VALUE) {
+            sendPath(request, response, null);
+            return true;
+        }
+        if (lowerBound == getGraph().getDistanceUpperBound(actorIds[0], actorIds[1])) {
+            sendDegrees(request, response, lowerBound);
+            return true;
+        }
+        return super.answerImmediately(request, response);
+    }
+
+    @Override
+    protected void sendPath(Request request, Response response, ActorPath path) throws IOException {
+        if (path == null) {
+            super.sendPath(request, response, null);
+            return;
+        }
+        sendDegrees(request, response, path.getDegrees());
+    }
+
+    private static void sendDegrees(Request request, Response response, int degrees) throws IOException {
+        try (JsonWriter writer = JsonWriter.start(response, HttpStatus.OK_200)) {
+            writer.beginObject().key("from").value(request.getParameter(FROM_PARAMETER))
+                    .key("to").value(request.getParameter(TO_PARAMETER)).key("degrees").value(degrees).endObject();
+        }
+    }
+}
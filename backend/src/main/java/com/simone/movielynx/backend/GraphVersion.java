@@ -0,0 +1,92 @@
+package com.simone.movielynx.backend;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One loaded version of the graph served by a LiveGraph, along with the handlers serving it.
+ * <p>
+ * A version is reference counted with leases: the LiveGraph holds one for as long as the version is current,
+ * and every request served from it holds one until its response is finished.  Once a version has been
+ * replaced and its last lease released, it's drained, and nothing can acquire it again.
+ */
+public class GraphVersion {
+    private final long number;
+    private final ActorGraph graph;
+    private final Map<String, HttpHandler> handlers;
+    // Starts with the lease of the LiveGraph the version is current in
+    private final AtomicInteger leases = new AtomicInteger(1);
+    private volatile Runnable drainedListener = null;
+
+    /**
+     * @param number   the number of the version, increasing with each version of the same LiveGraph
+     * @param handlers the handlers serving the graph, by endpoint
+     */
+    public GraphVersion(long number, ActorGraph graph, Map<String, HttpHandler> handlers) {
+        this.number = number;
+        this.graph = graph;
+        this.handlers = handlers;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    public ActorGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the handler serving the given endpoint from this version, or null if there is none.
+     */
+    public HttpHandler getHandler(String endpoint) {
+        return handlers.get(endpoint);
+    }
+
+    /**
+     * Returns the number of leases held on this version, including the LiveGraph's while it's current.
+     */
+    public int getLeaseCount() {
+        return leases.get();
+    }
+
+    /**
+     * Takes a lease on this version, unless it has already drained.
+     *
+     * @return whether a lease was taken, to be given back with release()
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int count = leases.get();
+            if (count == 0) {
+                return false;
+            }
+            if (leases.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a lease, and runs the drained listener if it was the last one.
+     */
+    void release() {
+        int count = leases.decrementAndGet();
+        if (count < 0) {
+            throw new IllegalStateException("Graph version " + number + " released more often than acquired");
+        }
+        if (count == 0 && drainedListener != null) {
+            drainedListener.run();
+        }
+    }
+
+    /**
+     * Sets what to do once the last lease is released, which must be done before the LiveGraph gives back its
+     * own lease.
+     */
+    void setDrainedListener(Runnable drainedListener) {
+        this.drainedListener = drainedListener;
+    }
+}
@@ -0,0 +1,52 @@
+package com.simone.movielynx.backend;
+
+/**
+ * Minimal JSON helpers for the backend's hand-written responses.
+ */
+class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Appends the given string to the given builder as a quoted, escaped JSON string.
+     */
+    static StringBuilder appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    // U+2028 and U+2029 are valid in JSON but not in JavaScript string literals
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * Returns an error response body with the given message.
+     */
+    static String error(String message) {
+        return appendString(new StringBuilder("{\"error\":"), message).append('}').toString();
+    }
+}
@@ -0,0 +1,311 @@
+package com.simone.movielynx.backend;
+
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams a JSON response as UTF-8 straight into the response's output stream, so that large responses are
+ * never built up as Strings or object trees first.
+ * <p>
+ * Bytes are gathered in a buffer, reused by every writer on the same thread, and handed to Grizzly's own output
+ * buffers a block at a time.  The names of a mapped graph's actors and movies are copied and escaped straight
+ * from the snapshot's string table, without decoding them to Strings.  Commas between values are tracked by the
+ * writer, with one bit per level of nesting, up to MAX_DEPTH levels.  Only one writer may be open on a thread at
+ * a time.
+ * <p>
+ * A response that fits in the buffer goes out with its length, so it's only compressed if it's at least the
+ * server's minimum compression size; larger ones are streamed as they're written, and always compressed.
+ */
+class JsonWriter implements Closeable {
+    final static String CONTENT_TYPE = "application/json";
+    final static int MAX_DEPTH = 63;
+    // The request attribute holding the ETag of a successful response, set by the LiveGraph before handling
+    final static String ETAG_ATTRIBUTE = JsonWriter.class.getName() + ".etag";
+
+    final static int BUFFER_SIZE = 8192;
+
+    private final static byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // Writers never outlive the request they're writing on their thread, so they can share a buffer per thread
+    private final static ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private final OutputStream out;
+    private final Response response;
+    private final byte[] buffer = BUFFERS.get();
+    private int position = 0;
+    private boolean flushed = false;
+    private int depth = 0;
+    // Bit d is set when the value at depth d must be preceded by a comma
+    private long needsComma = 0;
+    private boolean afterKey = false;
+
+    JsonWriter(OutputStream out) {
+        this(out, null);
+    }
+
+    /**
+     * @param response the response being written to the given stream, to give the length of if it fits in
+     *                 the buffer, or null
+     */
+    private JsonWriter(OutputStream out, Response response) {
+        this.out = out;
+        this.response = response;
+    }
+
+    /**
+     * Starts a JSON response with the given status, which carries the request's ETag if it's successful.
+     */
+    static JsonWriter start(Response response, HttpStatus status) {
+        status.setValues(response.getResponse());
+        response.setContentType(CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        Object etag = response.getRequest().getAttribute(ETAG_ATTRIBUTE);
+        if (etag != null && status == HttpStatus.OK_200) {
+            response.setHeader(Header.ETag, (String) etag);
+        }
+        return new JsonWriter(response.getOutputStream(), response);
+    }
+
+    JsonWriter beginObject() throws IOException {
+        return begin('{');
+    }
+
+    JsonWriter endObject() throws IOException {
+        return end('}');
+    }
+
+    JsonWriter beginArray() throws IOException {
+        return begin('[');
+    }
+
+    JsonWriter endArray() throws IOException {
+        return end(']');
+    }
+
+    /**
+     * Writes the key of the next member of the current object.  The key is written as is, so it must not need
+     * escaping.
+     */
+    JsonWriter key(String key) throws IOException {
+        separate();
+        writeByte('"');
+        for (int i = 0; i < key.length(); i++) {
+            writeByte(key.charAt(i));
+        }
+        writeByte('"');
+        writeByte(':');
+        afterKey = true;
+        return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+        separate();
+        writeByte('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                writeAscii(c);
+            } else if (c < 0x800) {
+                writeByte(0xc0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3f));
+            } else if (c == '\u2028' || c == '\u2029') {
+                writeUnicodeEscape(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte(0xf0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+                writeByte(0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // An unpaired surrogate can't be encoded, so is replaced, as String.getBytes() does
+                writeByte('?');
+            } else {
+                writeByte(0xe0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3f));
+                writeByte(0x80 | (c & 0x3f));
+            }
+        }
+        writeByte('"');
+        return this;
+    }
+
+    JsonWriter value(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            return rawValue(Long.toString(value));
+        }
+        separate();
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        // Digits are written backwards into the end of the buffer, then moved into place
+        if (buffer.length - position < 20) {
+            flushBuffer();
+        }
+        int end = buffer.length;
+        int start = end;
+        do {
+            buffer[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        System.arraycopy(buffer, start, buffer, position, end - start);
+        position += end - start;
+        return this;
+    }
+
+    JsonWriter nullValue() throws IOException {
+        return rawValue("null");
+    }
+
+    /**
+     * Writes the name of the given actor of the given graph as a string value.
+     */
+    JsonWriter actorName(ActorGraph graph, int actorId) throws IOException {
+        graph.writeActorName(actorId, this);
+        return this;
+    }
+
+    /**
+     * Writes the name of the given movie of the given graph as a string value.
+     */
+    JsonWriter movieName(ActorGraph graph, int movieId) throws IOException {
+        graph.writeMovieName(movieId, this);
+        return this;
+    }
+
+    /**
+     * Writes the given UTF-8 bytes as a string value, escaping them as value(String) would.
+     */
+    JsonWriter utf8Value(ByteBuffer bytes, int start, int end) throws IOException {
+        separate();
+        writeByte('"');
+        for (int i = start; i < end; i++) {
+            int b = bytes.get(i) & 0xff;
+            if (b < 0x80) {
+                writeAscii((char) b);
+            } else if (b == 0xe2 && i + 2 < end && bytes.get(i + 1) == (byte) 0x80 &&
+                    (bytes.get(i + 2) == (byte) 0xa8 || bytes.get(i + 2) == (byte) 0xa9)) {
+                // U+2028 and U+2029
+                writeUnicodeEscape(bytes.get(i + 2) == (byte) 0xa8 ? '\u2028' : '\u2029');
+                i += 2;
+            } else {
+                writeByte(b);
+            }
+        }
+        writeByte('"');
+        return this;
+    }
+
+    /**
+     * Writes out anything still buffered, giving the response's length if all of it was.  The output stream is
+     * left open, for Grizzly to finish the response.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!flushed && response != null) {
+            response.setContentLength(position);
+        }
+        flushBuffer();
+    }
+
+    private JsonWriter begin(char bracket) throws IOException {
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested more than " + MAX_DEPTH + " levels deep");
+        }
+        separate();
+        writeByte(bracket);
+        depth++;
+        needsComma &= ~(1L << depth);
+        return this;
+    }
+
+    private JsonWriter end(char bracket) throws IOException {
+        depth--;
+        writeByte(bracket);
+        return this;
+    }
+
+    private JsonWriter rawValue(String value) throws IOException {
+        separate();
+        for (int i = 0; i < value.length(); i++) {
+            writeByte(value.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Writes the comma preceding the next value, if it needs one.
+     */
+    private void separate() throws IOException {
+        if (afterKey) {
+            afterKey = false;
+            return;
+        }
+        long bit = 1L << depth;
+        if ((needsComma & bit) != 0) {
+            writeByte(',');
+        }
+        needsComma |= bit;
+    }
+
+    private void writeAscii(char c) throws IOException {
+        switch (c) {
+            case '"':
+                writeByte('\\');
+                writeByte('"');
+                break;
+            case '\\':
+                writeByte('\\');
+                writeByte('\\');
+                break;
+            case '\n':
+                writeByte('\\');
+                writeByte('n');
+                break;
+            case '\r':
+                writeByte('\\');
+                writeByte('r');
+                break;
+            case '\t':
+                writeByte('\\');
+                writeByte('t');
+                break;
+            default:
+                if (c < 0x20) {
+                    writeUnicodeEscape(c);
+                } else {
+                    writeByte(c);
+                }
+        }
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        writeByte('\\');
+        writeByte('u');
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            writeByte(HEX[(c >> shift) & 0xf]);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+            flushed = true;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.simone.movielynx.backend;
+
+import com.simone.movielynx.loader.CreditFingerprintIndex;
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The graph the backend serves, which can be swapped for a new version without a restart and without failing
+ * or holding up any request.
+ * <p>
+ * The current GraphVersion, holding the graph and a set of handlers serving it, sits behind an atomic
+ * reference.  Each request is dispatched to the handlers of whichever version is current when it arrives, and
+ * holds a lease on that version until its response is finished, so a request sees the same graph from start
+ * to end even if a swap happens in between.  Swapping in a new version is a single reference update: requests
+ * arriving after it go to the new version, while those in flight finish on the old one.  Once the old version
+ * has drained, its graph is closed, unmapping its snapshot file, after a further delay that gives any search
+ * abandoned by a finished request time to notice its deadline.  The path cache holds actor IDs, which change
+ * between versions, so it's invalidated by every swap, before the new version's handlers are created.
+ * <p>
+ * A LiveGraph can watch the snapshot file it was loaded from: when the DB Loader moves a new snapshot into
+ * place, it's mapped and verified on a background thread, and swapped in only if it's valid, so a bad snapshot
+ * leaves the current graph in service.
+ * <p>
+ * Since every response depends only on the graph and the request, responses can carry an ETag derived from the
+ * two, and a client repeating a request on the same graph is answered with 304 before any work is done.
+ */
+public class LiveGraph implements Closeable {
+    private final Function<ActorGraph, Map<String, HttpHandler>> handlerFactory;
+    private final PathCache cache;
+    private final long closeDelayMillis;
+    private final AtomicReference<GraphVersion> current;
+    private final ScheduledExecutorService scheduler;
+    private volatile Consumer<GraphVersion> swapListener = null;
+    // The attributes of the snapshot file the current version was loaded from
+    private List<Object> snapshotAttributes = null;
+
+    /**
+     * @param graph            the initial graph
+     * @param handlerFactory   creates the handlers serving a graph, by endpoint
+     * @param cache            the path cache the handlers share, to invalidate on every swap, or null
+     * @param closeDelayMillis the time to wait after an old version has drained before closing its graph
+     */
+    public LiveGraph(ActorGraph graph, Function<ActorGraph, Map<String, HttpHandler>> handlerFactory,
+                     PathCache cache, long closeDelayMillis) {
+        this.handlerFactory = handlerFactory;
+        this.cache = cache;
+        this.closeDelayMillis = closeDelayMillis;
+        this.current = new AtomicReference<>(new GraphVersion(1, graph, handlerFactory.apply(graph)));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "graph-swap");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the current version, without taking a lease on it.
+     */
+    public GraphVersion getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * Takes a lease on the current version, which must be given back with release() once the caller is done
+     * with its graph.
+     */
+    public GraphVersion acquire() {
+        while (true) {
+            GraphVersion version = current.get();
+            // Only fails if the version was swapped out and drained since it was read
+            if (version.tryAcquire()) {
+                return version;
+            }
+        }
+    }
+
+    /**
+     * Gives back a lease taken with acquire().
+     */
+    public void release(GraphVersion version) {
+        version.release();
+    }
+
+    /**
+     * Returns a handler that serves each request with the given endpoint's handler of the current version,
+     * holding a lease on the version until the response is finished.
+     *
+     * @param conditional whether successful responses carry an ETag, derived from the graph's contents and the
+     *                    request's URI, and GET requests with a matching If-None-Match header are answered with
+     *                    304 straight away, without running the endpoint's handler
+     */
+    public HttpHandler handler(String endpoint, boolean conditional) {
+        return new HttpHandler(endpoint) {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                GraphVersion version = acquire();
+                // Called once the response is finished, even if the handler suspended it
+                request.addAfterServiceListener(finishedRequest -> version.release());
+                HttpHandler handler = version.getHandler(endpoint);
+                if (handler == null) {
+                    QueryHandler.sendJson(response, HttpStatus.NOT_FOUND_404, Json.error("Unknown endpoint"));
+                    return;
+                }
+                if (conditional && (request.getMethod() == Method.GET || request.getMethod() == Method.HEAD)) {
+                    String etag = getETag(version.getGraph(), request);
+                    if (matches(request.getHeader(Header.IfNoneMatch), etag)) {
+                        HttpStatus.NOT_MODIFIED_304.setValues(response.getResponse());
+                        response.setHeader(Header.ETag, etag);
+                        return;
+                    }
+                    request.setAttribute(JsonWriter.ETAG_ATTRIBUTE, etag);
+                }
+                handler.service(request, response);
+            }
+        };
+    }
+
+    /**
+     * Makes the given graph the current version, and closes the old version's graph once it has drained.
+     *
+     * @return the new version
+     */
+    public synchronized GraphVersion swap(ActorGraph graph) {
+        // The new handlers must be created in the cache's new generation, while the old ones keep to theirs
+        if (cache != null) {
+            cache.invalidate();
+        }
+        long number = current.get().getNumber() + 1;
+        GraphVersion version = new GraphVersion(number, graph, handlerFactory.apply(graph));
+        GraphVersion oldVersion = current.getAndSet(version);
+        oldVersion.setDrainedListener(() -> closeLater(oldVersion));
+        oldVersion.release();
+        Consumer<GraphVersion> listener = swapListener;
+        if (listener != null) {
+            listener.accept(version);
+        }
+        return version;
+    }
+
+    /**
+     * Sets what to do with each new version once it has been swapped in, such as warming the path cache.
+     */
+    public void setSwapListener(Consumer<GraphVersion> swapListener) {
+        this.swapListener = swapListener;
+    }
+
+    /**
+     * Starts checking the given snapshot file for a new snapshot at the given interval, on a background thread,
+     * and swapping each new valid one in.  The current version is assumed to have been loaded from the file as
+     * it is now.
+     */
+    public void watch(File snapshotFile, long interval, TimeUnit unit) {
+        synchronized (this) {
+            snapshotAttributes = getAttributes(snapshotFile);
+        }
+        scheduler.scheduleWithFixedDelay(() -> checkSnapshot(snapshotFile), interval, interval, unit);
+    }
+
+    /**
+     * Stops watching the snapshot file.  The current version stays in service.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Swaps in the snapshot in the given file if it has changed since the last check, and is valid.
+     *
+     * @return whether a new version was swapped in
+     */
+    synchronized boolean checkSnapshot(File snapshotFile) {
+        List<Object> attributes = getAttributes(snapshotFile);
+        if (attributes == null || attributes.equals(snapshotAttributes)) {
+            return false;
+        }
+        // Whether or not it loads, a snapshot is only tried once
+        snapshotAttributes = attributes;
+        long startTime = System.currentTimeMillis();
+        ActorGraph graph;
+        try {
+            graph = ActorGraph.load(snapshotFile, true);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Keeping graph version " + current.get().getNumber() + ", new snapshot is invalid: " +
+                    e);
+            return false;
+        }
+        GraphVersion version = swap(graph);
+        System.out.println("Swapped in graph version " + version.getNumber() + " with " + graph.getActorCount() +
+                " actors from " + snapshotFile + " in " + (System.currentTimeMillis() - startTime) + "ms");
+        return true;
+    }
+
+    /**
+     * Returns the attributes that change whenever the given file is replaced, or null if it doesn't exist.
+     */
+    private static List<Object> getAttributes(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return Arrays.asList(attributes.fileKey(), attributes.lastModifiedTime(), attributes.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println(e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the weak ETag of the response to the given request from the given graph.  Every query's answer
+     * only depends on the graph and the request's URI, and a response is the same whether it's compressed or
+     * not, so a weak ETag holds across both.
+     */
+    static String getETag(ActorGraph graph, Request request) {
+        String uri = request.getRequestURI();
+        String query = request.getQueryString();
+        long hash = CreditFingerprintIndex.hash(query == null ? uri : uri + '?' + query);
+        return "W/\"" + Long.toHexString(graph.getContentId()) + '-' + Long.toHexString(hash) + '"';
+    }
+
+    /**
+     * Returns whether the given If-None-Match header, if any, holds the given weak ETag, compared weakly.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals(etag) || candidate.equals(etag.substring(2))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void closeLater(GraphVersion version) {
+        try {
+            scheduler.schedule(() -> version.getGraph().close(), closeDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // No longer watching, so leave the graph to be unmapped when it's garbage collected
+        }
+    }
+}
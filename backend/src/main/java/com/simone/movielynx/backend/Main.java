@@ -1,21 +1,107 @@
 package com.simone.movielynx.backend;
 
+import com.simone.movielynx.loader.CoStarIndex;
+import com.simone.movielynx.loader.CreditGraph;
+import com.simone.movielynx.loader.CreditGraphBuilder;
+import com.simone.movielynx.loader.HubDistanceIndex;
+import com.simone.movielynx.loader.MovieLynxDBLoader;
+import com.simone.movielynx.loader.ParallelActorFileParser;
+import org.glassfish.grizzly.http.CompressionConfig;
+import org.glassfish.grizzly.http.server.HttpHandler;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Placeholder for our backend server.
+ * Our backend server, serving actor connection queries from an in-memory actor graph.  When the graph is
+ * memory-mapped from a snapshot file, the file is checked periodically, and a new snapshot written by the DB
+ * Loader is swapped in without a restart.
  */
 public class Main {
 
+    // Constants
+    public static String PORT_ENV_VAR = "PORT";
+    public static String ACTOR_FILE_DIR_ENV_VAR = MovieLynxDBLoader.ACTOR_FILE_DIR_ENV_VAR;
+    public static String GRAPH_SNAPSHOT_FILE_ENV_VAR = MovieLynxDBLoader.GRAPH_SNAPSHOT_FILE_ENV_VAR;
+    public static String VERIFY_SNAPSHOT_ENV_VAR = "VERIFY_SNAPSHOT";
+    public static String QUERY_THREADS_ENV_VAR = "QUERY_THREADS";
+    public static String PAIRWISE_THREADS_ENV_VAR = "PAIRWISE_THREADS";
+    public static String QUERY_QUEUE_SIZE_ENV_VAR = "QUERY_QUEUE_SIZE";
+    public static String QUERY_TIMEOUT_MILLIS_ENV_VAR = "QUERY_TIMEOUT_MILLIS";
+    public static String PATH_CACHE_SIZE_ENV_VAR = "PATH_CACHE_SIZE";
+    public static String PATH_CACHE_TTL_SECONDS_ENV_VAR = "PATH_CACHE_TTL_SECONDS";
+    public static String PATH_CACHE_WARM_FILE_ENV_VAR = "PATH_CACHE_WARM_FILE";
+    public static String HUB_COUNT_ENV_VAR = MovieLynxDBLoader.HUB_COUNT_ENV_VAR;
+    public static String COSTAR_MAX_CAST_SIZE_ENV_VAR = MovieLynxDBLoader.COSTAR_MAX_CAST_SIZE_ENV_VAR;
+    public static String SNAPSHOT_POLL_SECONDS_ENV_VAR = "SNAPSHOT_POLL_SECONDS";
+    public static String COMPRESSION_MIN_BYTES_ENV_VAR = "COMPRESSION_MIN_BYTES";
+    public static int DEFAULT_QUERY_QUEUE_SIZE = 256;
+    public static int DEFAULT_QUERY_TIMEOUT_MILLIS = 2000;
+    public static int DEFAULT_PATH_CACHE_SIZE = 100000;
+    public static int DEFAULT_SNAPSHOT_POLL_SECONDS = 10;
+    public static int DEFAULT_COMPRESSION_MIN_BYTES = 1024;
+    private final static String PATH_ENDPOINT = "/path";
+    private final static String METRICS_ENDPOINT = "/metrics";
+    // The endpoints whose requests are measured
+    private final static List<String> ENDPOINTS = Arrays.asList(PATH_ENDPOINT, "/distance", "/paths", "/suggest",
+            "/costars");
+
     public static void main(String[] args) {
 
-        int port = 8080;
-        if( System.getenv("PORT") != null){
-            port = Integer.valueOf(System.getenv("PORT"));
-        }
+        int port = getIntEnvVariable(PORT_ENV_VAR, 8080);
+        int queryThreads = getIntEnvVariable(QUERY_THREADS_ENV_VAR, Runtime.getRuntime().availableProcessors());
+        int pairwiseThreads = getIntEnvVariable(PAIRWISE_THREADS_ENV_VAR,
+                Runtime.getRuntime().availableProcessors() / 2);
+        int queryQueueSize = getIntEnvVariable(QUERY_QUEUE_SIZE_ENV_VAR, DEFAULT_QUERY_QUEUE_SIZE);
+        int queryTimeoutMillis = getIntEnvVariable(QUERY_TIMEOUT_MILLIS_ENV_VAR, DEFAULT_QUERY_TIMEOUT_MILLIS);
+        int pathCacheSize = getIntEnvVariable(PATH_CACHE_SIZE_ENV_VAR, DEFAULT_PATH_CACHE_SIZE);
+        int pathCacheTtlSeconds = getIntEnvVariable(PATH_CACHE_TTL_SECONDS_ENV_VAR, 0);
+        String pathCacheWarmFile = System.getenv(PATH_CACHE_WARM_FILE_ENV_VAR);
+        int snapshotPollSeconds = getIntEnvVariable(SNAPSHOT_POLL_SECONDS_ENV_VAR, DEFAULT_SNAPSHOT_POLL_SECONDS);
+        int compressionMinBytes = getIntEnvVariable(COMPRESSION_MIN_BYTES_ENV_VAR, DEFAULT_COMPRESSION_MIN_BYTES);
 
         HttpServer server = HttpServer.createSimpleServer(null, port);
         try {
+            String snapshotFile = System.getenv(GRAPH_SNAPSHOT_FILE_ENV_VAR);
+            ActorGraph graph = loadGraph(snapshotFile,
+                    !"false".equalsIgnoreCase(System.getenv(VERIFY_SNAPSHOT_ENV_VAR)),
+                    System.getenv(ACTOR_FILE_DIR_ENV_VAR));
+            QueryExecutor queryExecutor = new QueryExecutor(queryThreads, queryQueueSize);
+            // A /paths query searches its pairs on its own query thread, helped by the pairwise threads, each of
+            // which holds its own graph-sized search arrays.  Every running query may queue a helper per thread.
+            QueryExecutor searchExecutor = pairwiseThreads > 0 ?
+                    new QueryExecutor(pairwiseThreads, queryThreads * pairwiseThreads, "search") : null;
+            PathCache pathCache = pathCacheSize > 0 ?
+                    new PathCache(pathCacheSize, pathCacheTtlSeconds, TimeUnit.SECONDS) : null;
+            RequestMetrics requestMetrics = new RequestMetrics();
+            SearchMetrics searchMetrics = new SearchMetrics();
+            // A retired graph is only closed once every request served from it has finished, and then only after
+            // twice the query timeout, by when any search still running for a finished request has given up
+            LiveGraph liveGraph = new LiveGraph(graph, versionGraph -> createHandlers(versionGraph, queryExecutor,
+                    searchExecutor, queryTimeoutMillis, pathCache, requestMetrics, searchMetrics), pathCache,
+                    2L * queryTimeoutMillis);
+            if (pathCacheWarmFile != null) {
+                warmCache(liveGraph, new File(pathCacheWarmFile));
+                liveGraph.setSwapListener(version -> warmCache(liveGraph, new File(pathCacheWarmFile)));
+            }
+            if (snapshotFile != null && snapshotPollSeconds > 0) {
+                liveGraph.watch(new File(snapshotFile), snapshotPollSeconds, TimeUnit.SECONDS);
+            }
+            for (String endpoint : ENDPOINTS) {
+                server.getServerConfiguration().addHttpHandler(requestMetrics.instrument(endpoint,
+                        liveGraph.handler(endpoint, true)), endpoint);
+            }
+            server.getServerConfiguration().addHttpHandler(liveGraph.handler(METRICS_ENDPOINT, false),
+                    METRICS_ENDPOINT);
+            configureCompression(server, compressionMinBytes);
             server.start();
             System.out.println("Press any key to stop the server...");
             Thread.sleep(Integer.MAX_VALUE);
@@ -23,4 +109,115 @@ public class Main {
             System.err.println(e);
         }
     }
+
+    /**
+     * Creates the handlers serving the given graph, by endpoint.  The executors, path cache, and request and
+     * search metrics are shared by the handlers of every version of the graph, so the metrics carry on across
+     * swaps.
+     *
+     * @param searchExecutor the executor helping /paths queries with their searches, each with up to one helper
+     *                       per thread, or null for each query to search alone
+     */
+    static Map<String, HttpHandler> createHandlers(ActorGraph graph, ExecutorService queryExecutor,
+                                                   QueryExecutor searchExecutor, long queryTimeoutMillis,
+                                                   PathCache pathCache, RequestMetrics requestMetrics,
+                                                   SearchMetrics searchMetrics) {
+        PathFinder pathFinder = new PathFinder(graph, searchMetrics);
+        Map<String, HttpHandler> handlers = new HashMap<>();
+        handlers.put(PATH_ENDPOINT, new PathHandler(graph, pathFinder, pathCache, queryExecutor,
+                queryTimeoutMillis));
+        handlers.put("/distance", new DistanceHandler(graph, pathFinder, pathCache, queryExecutor,
+                queryTimeoutMillis));
+        handlers.put("/paths", new PairwisePathHandler(graph, new PairwisePathFinder(pathFinder, searchExecutor,
+                searchExecutor == null ? 0 : searchExecutor.getMaximumPoolSize()),
+                queryExecutor, queryTimeoutMillis));
+        handlers.put("/suggest", new SuggestHandler(graph));
+        handlers.put("/costars", new CoStarsHandler(graph));
+        handlers.put(METRICS_ENDPOINT, new MetricsHandler(requestMetrics, pathCache, searchMetrics));
+        return handlers;
+    }
+
+    /**
+     * Has the server gzip JSON responses of at least the given size for clients that accept it, or none if the
+     * size is 0.  Only the size of responses that fit in a JsonWriter's buffer is known up front, so larger
+     * responses, which are streamed, are always compressed.
+     */
+    static void configureCompression(HttpServer server, int minBytes) {
+        if (minBytes < 0) {
+            throw new IllegalArgumentException("Invalid minimum compressed response size: " + minBytes);
+        }
+        for (NetworkListener listener : server.getListeners()) {
+            CompressionConfig config = listener.getCompressionConfig();
+            config.setCompressionMode(minBytes == 0 ? CompressionConfig.CompressionMode.OFF :
+                    CompressionConfig.CompressionMode.ON);
+            config.setCompressionMinSize(minBytes);
+            config.setCompressableMimeTypes(JsonWriter.CONTENT_TYPE);
+        }
+    }
+
+    /**
+     * Fills the path cache with the paths between the pairs of actors in the given file, on the current version
+     * of the graph.
+     */
+    private static void warmCache(LiveGraph liveGraph, File pairsFile) {
+        long startTime = System.currentTimeMillis();
+        GraphVersion version = liveGraph.acquire();
+        try {
+            int pairCount = ((PathHandler) version.getHandler(PATH_ENDPOINT)).warmCache(pairsFile);
+            System.out.println("Warmed path cache with " + pairCount + " pairs in " +
+                    (System.currentTimeMillis() - startTime) + "ms");
+        } catch (IOException e) {
+            System.err.println(e);
+        } finally {
+            liveGraph.release(version);
+        }
+    }
+
+    /**
+     * Loads the actor graph, memory-mapping the given snapshot file if there is one, or otherwise parsing the
+     * actor files in the given directory.
+     *
+     * @param snapshotFile  the graph snapshot written by the DB Loader, or null
+     * @param verify        whether to check the snapshot's checksums
+     * @param actorFilesDir the directory containing the actor files, as for the DB Loader, or null
+     * @throws IOException if an error occurs reading the snapshot or actor data
+     */
+    static ActorGraph loadGraph(String snapshotFile, boolean verify, String actorFilesDir) throws IOException {
+        long startTime = System.currentTimeMillis();
+        ActorGraph graph;
+        if (snapshotFile != null) {
+            graph = ActorGraph.load(new File(snapshotFile), verify);
+        } else if (actorFilesDir != null) {
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            CreditGraphBuilder builder = new CreditGraphBuilder();
+            new ParallelActorFileParser(parallelism).parseMovieLists(
+                    MovieLynxDBLoader.findActorFiles(new File(actorFilesDir)), builder);
+            CreditGraph creditGraph = builder.build();
+            int[] hubActorIds = HubDistanceIndex.selectHubs(creditGraph,
+                    getIntEnvVariable(HUB_COUNT_ENV_VAR, MovieLynxDBLoader.DEFAULT_HUB_COUNT));
+            int coStarMaxCastSize = getIntEnvVariable(COSTAR_MAX_CAST_SIZE_ENV_VAR,
+                    MovieLynxDBLoader.DEFAULT_COSTAR_MAX_CAST_SIZE);
+            graph = ActorGraph.of(creditGraph, hubActorIds.length == 0 ? null :
+                    HubDistanceIndex.compute(creditGraph, hubActorIds, parallelism), coStarMaxCastSize == 0 ? null :
+                    CoStarIndex.compute(creditGraph, coStarMaxCastSize, parallelism));
+        } else {
+            throw new IllegalArgumentException(GRAPH_SNAPSHOT_FILE_ENV_VAR + " or " + ACTOR_FILE_DIR_ENV_VAR +
+                    " must be set in the environment");
+        }
+        System.out.println("Loaded " + graph.getActorCount() + " actors and " + graph.getMovieCount() +
+                " movies with " + graph.getHubCount() + " hubs in " + (System.currentTimeMillis() - startTime) + "ms");
+        return graph;
+    }
+
+    private static int getIntEnvVariable(String variable, int defaultValue) {
+        String value = System.getenv(variable);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(variable + " must be an integer: " + value);
+        }
+    }
 }
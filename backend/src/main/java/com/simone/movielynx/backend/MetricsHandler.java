@@ -0,0 +1,151 @@
+package com.simone.movielynx.backend;
+
+import com.simone.movielynx.loader.LatencyHistogram;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Serves {@code /metrics}: the backend's request, cache and search metrics in the Prometheus text format.
+ * <p>
+ * Request latencies are exported as summaries with their 50th, 99th and 99.9th percentiles, which come from
+ * log-bucketed histograms and so are accurate to within 25%.  The metrics are only read when they're scraped,
+ * and reading them never blocks the requests recording them.
+ */
+public class MetricsHandler extends HttpHandler {
+    public final static String CONTENT_TYPE = "text/plain; version=0.0.4";
+    private final static double[] QUANTILES = {0.5, 0.99, 0.999};
+    private final static String PREFIX = "movielynx_";
+
+    private final RequestMetrics requestMetrics;
+    private final PathCache cache;
+    private final SearchMetrics searchMetrics;
+
+    /**
+     * @param cache         the path cache to export the metrics of, or null
+     * @param searchMetrics the path search metrics to export, or null
+     */
+    public MetricsHandler(RequestMetrics requestMetrics, PathCache cache, SearchMetrics searchMetrics) {
+        this.requestMetrics = requestMetrics;
+        this.cache = cache;
+        this.searchMetrics = searchMetrics;
+    }
+
+    @Override
+    public void service(Request request, Response response) throws IOException {
+        HttpStatus.OK_200.setValues(response.getResponse());
+        response.setContentType(CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(format());
+    }
+
+    /**
+     * Returns all metrics in the Prometheus text format.
+     */
+    String format() {
+        StringBuilder sb = new StringBuilder();
+        Map<String, RequestMetrics.Endpoint> endpoints = requestMetrics.getEndpoints();
+
+        appendHeader(sb, "requests_total", "counter", "Requests answered, by endpoint and response status.");
+        for (RequestMetrics.Endpoint endpoint : endpoints.values()) {
+            for (Map.Entry<Integer, Long> statusCount : endpoint.getStatusCounts().entrySet()) {
+                appendSample(sb, "requests_total", "endpoint", endpoint.getName(), "status",
+                        String.valueOf(statusCount.getKey()), statusCount.getValue());
+            }
+        }
+        appendHeader(sb, "requests_in_flight", "gauge", "Requests being answered, by endpoint.");
+        for (RequestMetrics.Endpoint endpoint : endpoints.values()) {
+            appendSample(sb, "requests_in_flight", "endpoint", endpoint.getName(), null, null,
+                    endpoint.getInFlight());
+        }
+        appendHeader(sb, "request_duration_seconds", "summary", "Time to answer requests, by endpoint.");
+        for (RequestMetrics.Endpoint endpoint : endpoints.values()) {
+            LatencyHistogram latencies = endpoint.getLatencies();
+            for (double quantile : QUANTILES) {
+                appendSample(sb, "request_duration_seconds", "endpoint", endpoint.getName(), "quantile",
+                        String.valueOf(quantile), latencies.getPercentileNanos(quantile * 100) / 1e9);
+            }
+            appendSample(sb, "request_duration_seconds_sum", "endpoint", endpoint.getName(), null, null,
+                    latencies.getTotalNanos() / 1e9);
+            appendSample(sb, "request_duration_seconds_count", "endpoint", endpoint.getName(), null, null,
+                    latencies.getCount());
+        }
+
+        if (cache != null) {
+            long hits = cache.getHitCount();
+            long lookups = hits + cache.getMissCount();
+            appendMetric(sb, "path_cache_hits_total", "counter", "Path cache lookups that found a result.", hits);
+            appendMetric(sb, "path_cache_misses_total", "counter", "Path cache lookups that found no result.",
+                    cache.getMissCount());
+            appendMetric(sb, "path_cache_evictions_total", "counter", "Path results evicted from the cache.",
+                    cache.getEvictionCount());
+            appendMetric(sb, "path_cache_size", "gauge", "Path results in the cache.", cache.size());
+            appendMetric(sb, "path_cache_hit_ratio", "gauge", "Fraction of path cache lookups that found a result.",
+                    lookups == 0 ? 0 : (double) hits / lookups);
+        }
+
+        if (searchMetrics != null) {
+            appendHeader(sb, "search_expanded_actors", "summary", "Actors expanded per path search.");
+            appendSample(sb, "search_expanded_actors_sum", null, null, null, null,
+                    searchMetrics.getExpandedActorCount());
+            appendSample(sb, "search_expanded_actors_count", null, null, null, null,
+                    searchMetrics.getSearchCount());
+            appendMetric(sb, "search_expanded_actors_max", "gauge", "Most actors expanded by one path search.",
+                    searchMetrics.getMaxExpandedActors());
+        }
+        return sb.toString();
+    }
+
+    private static void appendMetric(StringBuilder sb, String name, String type, String help, double value) {
+        appendHeader(sb, name, type, help);
+        appendSample(sb, name, null, null, null, null, value);
+    }
+
+    private static void appendHeader(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Appends a sample with up to two labels, skipping labels whose name is null.
+     */
+    private static void appendSample(StringBuilder sb, String name, String label1, String value1, String label2,
+                                     String value2, double value) {
+        sb.append(PREFIX).append(name);
+        if (label1 != null) {
+            sb.append('{');
+            appendLabel(sb, label1, value1);
+            if (label2 != null) {
+                sb.append(',');
+                appendLabel(sb, label2, value2);
+            }
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private static void appendLabel(StringBuilder sb, String label, String value) {
+        sb.append(label).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,91 @@
+package com.simone.movielynx.backend;
+
+import com.simone.movielynx.loader.NameNormalizer;
+import com.simone.movielynx.loader.NameSuggestIndex;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Suggests actors whose names have a word starting with a typed prefix, from a NameSuggestIndex held on the
+ * heap or mapped from a graph snapshot.
+ * <p>
+ * A lookup normalizes the prefix the same way the index's names were normalized, binary searches the sorted
+ * entries for the first match, and scans from there, comparing bytes in place, so that it allocates nothing
+ * but the normalized prefix.  Matches come in the order of the index: by the normalized name from the
+ * matching word on.
+ */
+class NameSuggester {
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer nameBytes;
+    private final IntBuffer entryPositions;
+    private final IntBuffer entryActorIds;
+
+    NameSuggester(IntBuffer nameOffsets, ByteBuffer nameBytes, IntBuffer entryPositions, IntBuffer entryActorIds) {
+        this.nameOffsets = nameOffsets;
+        this.nameBytes = nameBytes;
+        this.entryPositions = entryPositions;
+        this.entryActorIds = entryActorIds;
+    }
+
+    static NameSuggester of(NameSuggestIndex index) {
+        return new NameSuggester(IntBuffer.wrap(index.getNameOffsets()), ByteBuffer.wrap(index.getNameBytes()),
+                IntBuffer.wrap(index.getEntryPositions()), IntBuffer.wrap(index.getEntryActorIds()));
+    }
+
+    /**
+     * Fills the given array with the IDs of distinct actors with a word starting with the given prefix, and
+     * returns how many were found.
+     */
+    int suggest(String prefix, int[] actorIds) {
+        byte[] prefixBytes = NameNormalizer.normalize(prefix).getBytes(StandardCharsets.UTF_8);
+        if (prefixBytes.length == 0) {
+            return 0;
+        }
+        int low = 0;
+        int high = entryPositions.limit();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, prefixBytes) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int count = 0;
+        for (int entry = low; entry < entryPositions.limit() && count < actorIds.length &&
+                compare(entry, prefixBytes) == 0; entry++) {
+            int actorId = entryActorIds.get(entry);
+            if (!contains(actorIds, count, actorId)) {
+                actorIds[count++] = actorId;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Compares the given entry's name from its word on, cut to the length of the given prefix, to the prefix.
+     */
+    private int compare(int entry, byte[] prefix) {
+        int position = entryPositions.get(entry);
+        int length = nameOffsets.get(entryActorIds.get(entry) + 1) - position;
+        for (int i = 0; i < Math.min(length, prefix.length); i++) {
+            int b = nameBytes.get(position + i) & 0xff;
+            if (b != (prefix[i] & 0xff)) {
+                return b - (prefix[i] & 0xff);
+            }
+        }
+        return length < prefix.length ? -1 : 0;
+    }
+
+    private static boolean contains(int[] actorIds, int count, int actorId) {
+        for (int i = 0; i < count; i++) {
+            if (actorIds[i] == actorId) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
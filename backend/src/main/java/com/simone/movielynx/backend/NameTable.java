@@ -0,0 +1,123 @@
+package com.simone.movielynx.backend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The names of a graph's actors or movies, by ID, either held as Strings or decoded on demand from a
+ * memory-mapped string table of UTF-8 bytes.
+ * <p>
+ * Names can be looked up by value, through a HashMap for a table held as Strings, or through a binary search
+ * of a mapped index of IDs sorted by name bytes, so a mapped table needs nothing on the heap.
+ */
+class NameTable {
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final IntBuffer offsets;
+    private final ByteBuffer bytes;
+    private final IntBuffer sortedIds;
+
+    private NameTable(String[] names, IntBuffer offsets, ByteBuffer bytes, IntBuffer sortedIds) {
+        this.names = names;
+        this.offsets = offsets;
+        this.bytes = bytes;
+        this.sortedIds = sortedIds;
+        if (names != null) {
+            ids = new HashMap<>(names.length * 2);
+            for (int id = 0; id < names.length; id++) {
+                ids.put(names[id], id);
+            }
+        } else {
+            ids = null;
+        }
+    }
+
+    static NameTable of(String[] names) {
+        return new NameTable(names, null, null, null);
+    }
+
+    /**
+     * Creates a table over the given string table, where name {@code i} is bytes {@code offsets[i]} up to
+     * {@code offsets[i + 1]}.  The sorted IDs, if given, are the IDs ordered by the unsigned bytes of their
+     * names; without them, the table can't look names up.
+     */
+    static NameTable mapped(IntBuffer offsets, ByteBuffer bytes, IntBuffer sortedIds) {
+        return new NameTable(null, offsets, bytes, sortedIds);
+    }
+
+    int size() {
+        return names != null ? names.length : offsets.limit() - 1;
+    }
+
+    String get(int id) {
+        if (names != null) {
+            return names[id];
+        }
+        int start = offsets.get(id);
+        byte[] name = new byte[offsets.get(id + 1) - start];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = bytes.get(start + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the name with the given ID to the given writer, copying a mapped name's bytes without decoding
+     * them.
+     */
+    void write(int id, JsonWriter writer) throws IOException {
+        if (names != null) {
+            writer.value(names[id]);
+        } else {
+            writer.utf8Value(bytes, offsets.get(id), offsets.get(id + 1));
+        }
+    }
+
+    /**
+     * Returns the ID of the given name, or -1 if there is no such name.
+     */
+    int find(String name) {
+        if (ids != null) {
+            Integer id = ids.get(name);
+            return id == null ? -1 : id;
+        }
+        if (sortedIds == null) {
+            throw new UnsupportedOperationException("Name table has no index");
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = sortedIds.limit() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = sortedIds.get(middle);
+            int comparison = compare(id, nameBytes);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the mapped name with the given ID to the given UTF-8 name, by unsigned bytes.
+     */
+    private int compare(int id, byte[] name) {
+        int start = offsets.get(id);
+        int length = offsets.get(id + 1) - start;
+        for (int i = 0; i < Math.min(length, name.length); i++) {
+            int b = bytes.get(start + i) & 0xff;
+            if (b != (name[i] & 0xff)) {
+                return b - (name[i] & 0xff);
+            }
+        }
+        return length - name.length;
+    }
+}
@@ -0,0 +1,192 @@
+package com.simone.movielynx.backend;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Finds shortest paths between every pair of a set of actors, with the pairs' searches spread over several
+ * threads.
+ * <p>
+ * Each unordered pair is searched once, by a PathFinder, and the reverse path is derived from it, so n actors
+ * take n * (n - 1) / 2 searches.  A bidirectional search between two actors of a small-world graph only
+ * expands around the square root of the actors a full breadth-first search from either one would, so for the
+ * batch sizes this is used for, searching each pair is much cheaper than a full search from each actor, which
+ * only pays off once a batch has several hundred actors.  Pairs the hub distances show aren't connected, or
+ * that are the same actor, are answered without a search.
+ * <p>
+ * The pairs are split into tasks of PAIRS_PER_TASK, which the calling thread works through itself, helped by up
+ * to the given number of helpers on the given executor.  A helper runs one task of its batch and then queues
+ * itself again behind the other batches' helpers, so batches sharing the executor take turns a task at a time,
+ * rather than a large batch holding up every batch queued behind it.  The executor's queue may be bounded: a
+ * helper it rejects is simply left out, since the calling thread gets through the tasks on its own anyway.
+ * Every search checks the caller's deadline, so a batch that runs out of time stops on all threads, and
+ * findPaths() only returns once none of its searches is still running.  Helpers still queued by then find no
+ * tasks left, so the caller never waits for them.  Instances are thread-safe.
+ */
+public class PairwisePathFinder {
+    public final static int PAIRS_PER_TASK = 16;
+
+    private final PathFinder pathFinder;
+    private final ExecutorService executor;
+    private final int helpers;
+
+    /**
+     * @param pathFinder the path finder to search each pair with, which may be shared with other handlers
+     * @param executor   the executor to run helpers on, shared with other batches, or null to search each
+     *                   batch on the calling thread alone
+     * @param helpers    the number of helpers each batch may have on the executor at once
+     */
+    public PairwisePathFinder(PathFinder pathFinder, ExecutorService executor, int helpers) {
+        if (helpers < 0) {
+            throw new IllegalArgumentException("Invalid number of helpers: " + helpers);
+        }
+        this.pathFinder = pathFinder;
+        this.executor = executor;
+        this.helpers = executor == null ? 0 : helpers;
+    }
+
+    /**
+     * Returns the shortest paths between every pair of the given actors: the path from actor i to actor j is
+     * at {@code [i][j]}, or null if they aren't connected.
+     *
+     * @throws QueryTimeoutException if the deadline is reached before every search is finished
+     */
+    public ActorPath[][] findPaths(int[] actorIds, QueryDeadline deadline) {
+        int actorCount = actorIds.length;
+        ActorPath[][] paths = new ActorPath[actorCount][actorCount];
+        // Pair p is actors pairs[2 * p] and pairs[2 * p + 1], with the first before the second
+        int[] pairs = new int[actorCount * (actorCount - 1)];
+        int pairCount = 0;
+        for (int i = 0; i < actorCount; i++) {
+            for (int j = i + 1; j < actorCount; j++) {
+                pairs[2 * pairCount] = i;
+                pairs[2 * pairCount + 1] = j;
+                pairCount++;
+            }
+        }
+
+        Batch batch = new Batch(actorIds, pairs, pairCount, paths, deadline);
+        for (int helper = 0; helper < Math.min(helpers, batch.taskCount - 1); helper++) {
+            if (!batch.help()) {
+                break;
+            }
+        }
+        while (batch.runTask()) {
+            // Keep going until every task has been taken, by this thread or a helper
+        }
+        batch.awaitTasks();
+
+        // The latch makes the helpers' writes to paths visible here
+        for (int i = 0; i < actorCount; i++) {
+            paths[i][i] = new ActorPath(new int[]{actorIds[i]}, new int[0]);
+            for (int j = i + 1; j < actorCount; j++) {
+                paths[j][i] = paths[i][j] == null ? null : paths[i][j].reverse();
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * The tasks of one findPaths() call, taken in order by whichever thread gets to each one first.
+     */
+    private class Batch {
+        final int[] actorIds;
+        final int[] pairs;
+        final int pairCount;
+        final ActorPath[][] paths;
+        final QueryDeadline deadline;
+        final int taskCount;
+        final AtomicInteger nextTask = new AtomicInteger();
+        final CountDownLatch finishedTasks;
+        // The first failure of any task, which cancels the deadline so that the others stop too
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Batch(int[] actorIds, int[] pairs, int pairCount, ActorPath[][] paths, QueryDeadline deadline) {
+            this.actorIds = actorIds;
+            this.pairs = pairs;
+            this.pairCount = pairCount;
+            this.paths = paths;
+            this.deadline = deadline;
+            this.taskCount = (pairCount + PAIRS_PER_TASK - 1) / PAIRS_PER_TASK;
+            this.finishedTasks = new CountDownLatch(taskCount);
+        }
+
+        /**
+         * Queues a helper that runs one task, and queues itself again if there are more.
+         *
+         * @return whether the helper was queued
+         */
+        boolean help() {
+            try {
+                executor.execute(() -> {
+                    if (runTask() && nextTask.get() < taskCount) {
+                        help();
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Runs the next task not yet taken, if any.
+         *
+         * @return whether there was a task to run
+         */
+        boolean runTask() {
+            int task = nextTask.getAndIncrement();
+            if (task >= taskCount) {
+                return false;
+            }
+            try {
+                int end = Math.min(pairCount, (task + 1) * PAIRS_PER_TASK);
+                for (int p = task * PAIRS_PER_TASK; p < end; p++) {
+                    deadline.check();
+                    int i = pairs[2 * p];
+                    int j = pairs[2 * p + 1];
+                    paths[i][j] = pathFinder.findPath(actorIds[i], actorIds[j], deadline);
+                }
+            } catch (Throwable e) {
+                if (failure.compareAndSet(null, e)) {
+                    deadline.cancel();
+                }
+            } finally {
+                finishedTasks.countDown();
+            }
+            return true;
+        }
+
+        /**
+         * Waits for the tasks taken by helpers to finish, then throws the first failure, if any.  Once every task
+         * has been taken, none can start, so this only waits for searches already running, which stop soon after
+         * the deadline is cancelled.
+         */
+        void awaitTasks() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    finishedTasks.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    failure.compareAndSet(null, new QueryTimeoutException("Query interrupted"));
+                    deadline.cancel();
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable e = failure.get();
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.simone.movielynx.backend;
+
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Serves {@code /paths?actor=<actor>&actor=<actor>..[&paths=false]}: the degrees of separation between every
+ * pair of a set of actors, and a shortest path for each connected pair, for drawing networks of actors with one
+ * request rather than one per pair.
+ * <p>
+ * Responds with {@code {"actors":[..],"degrees":[[0,n,null],..],"paths":[{"from":..,"to":..,"degrees":n,
+ * "path":[..]},..]}}: degrees is the matrix of distances between the actors, in the order given, with null for
+ * actors that aren't connected, and paths holds the path of each connected pair once, from the actor given
+ * first, unless paths=false.  Responds with 400 if fewer than 2 or more than MAX_ACTORS actors are given, and
+ * with 404 if any actor is unknown.  The searches are run by a PairwisePathFinder, from the query executor,
+ * and are answered with 503 if they can't finish in time.
+ */
+public class PairwisePathHandler extends QueryHandler {
+    public final static String ACTOR_PARAMETER = "actor";
+    public final static String PATHS_PARAMETER = "paths";
+    public final static int MAX_ACTORS = 100;
+
+    private final ActorGraph graph;
+    private final PairwisePathFinder pathFinder;
+
+    /**
+     * @param pathFinder the pairwise path finder for the given graph, with its own helper executor
+     */
+    public PairwisePathHandler(ActorGraph graph, PairwisePathFinder pathFinder, ExecutorService executor,
+                               long timeoutMillis) {
+        super(executor, timeoutMillis);
+        this.graph = graph;
+        this.pathFinder = pathFinder;
+    }
+
+    @Override
+    protected boolean answerImmediately(Request request, Response response) throws IOException {
+        return getActorIds(request, response) == null;
+    }
+
+    @Override
+    protected void query(Request request, Response response, QueryDeadline deadline) throws IOException {
+        int[] actorIds = getActorIds(request, response);
+        if (actorIds == null) {
+            return;
+        }
+        ActorPath[][] paths = pathFinder.findPaths(actorIds, deadline);
+        String[] actors = request.getParameterValues(ACTOR_PARAMETER);
+
+        try (JsonWriter writer = JsonWriter.start(response, HttpStatus.OK_200)) {
+            writer.beginObject().key("actors").beginArray();
+            for (String actor : actors) {
+                writer.value(actor);
+            }
+            writer.endArray().key("degrees").beginArray();
+            for (int i = 0; i < actors.length; i++) {
+                writer.beginArray();
+                for (int j = 0; j < actors.length; j++) {
+                    if (paths[i][j] == null) {
+                        writer.nullValue();
+                    } else {
+                        writer.value(paths[i][j].getDegrees());
+                    }
+                }
+                writer.endArray();
+            }
+            writer.endArray();
+            if (!"false".equalsIgnoreCase(request.getParameter(PATHS_PARAMETER))) {
+                writer.key("paths").beginArray();
+                for (int i = 0; i < actors.length; i++) {
+                    for (int j = i + 1; j < actors.length; j++) {
+                        if (paths[i][j] != null) {
+                            PathHandler.writePath(writer, graph, actors[i], actors[j], paths[i][j]);
+                        }
+                    }
+                }
+                writer.endArray();
+            }
+            writer.endObject();
+        }
+    }
+
+    /**
+     * Returns the IDs of the requested actors, or answers the request with an error and returns null if there
+     * are too few or too many of them, or any is unknown.
+     */
+    private int[] getActorIds(Request request, Response response) throws IOException {
+        String[] actors = request.getParameterValues(ACTOR_PARAMETER);
+        if (actors == null || actors.length < 2 || actors.length > MAX_ACTORS) {
+            sendJson(response, HttpStatus.BAD_REQUEST_400, Json.error("Between 2 and " + MAX_ACTORS + " " +
+                    ACTOR_PARAMETER + " parameters must be given"));
+            return null;
+        }
+        int[] actorIds = new int[actors.length];
+        for (int i = 0; i < actors.length; i++) {
+            actorIds[i] = graph.getActorId(actors[i]);
+            if (actorIds[i] < 0) {
+                sendJson(response, HttpStatus.NOT_FOUND_404, Json.error("Unknown actor: " + actors[i]));
+                return null;
+            }
+        }
+        return actorIds;
+    }
+}
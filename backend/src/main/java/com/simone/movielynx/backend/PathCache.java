@@ -0,0 +1,211 @@
+package com.simone.movielynx.backend;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent cache of shortest-path results, keyed by the unordered pair of actor IDs, since a path from A to
+ * B is also a path from B to A.  Pairs that aren't connected are cached too.
+ * <p>
+ * The cache is split into stripes by key, each a small access-ordered LinkedHashMap with its own lock and an
+ * equal share of the capacity, so that concurrent requests rarely contend and each stripe evicts its own least
+ * recently used entries.  Entries optionally expire a fixed time after being cached.
+ * <p>
+ * Results are only valid for the graph they were computed on, so the cache must be invalidated whenever a new
+ * graph is loaded.  Every invalidation starts a new generation, and a result computed during an earlier
+ * generation is silently dropped rather than cached, so that a search racing with a graph swap can't put a
+ * stale result back into the cache.
+ */
+public class PathCache {
+    private final static int STRIPES = 16;
+    private final static ActorPath NO_PATH = new ActorPath(new int[0], new int[0]);
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile long generation = 0;
+
+
+    /**
+     * @param capacity   the maximum number of results to cache
+     * @param ttl        the time results stay cached, or 0 for no limit
+     * @param ttlUnit    the unit of the time results stay cached
+     */
+    public PathCache(int capacity, long ttl, TimeUnit ttlUnit) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid path cache capacity: " + capacity);
+        }
+        this.ttlNanos = ttlUnit.toNanos(ttl);
+        int stripeCapacity = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    /**
+     * A cached result.
+     */
+    public static class Result {
+        private final ActorPath path;
+
+        private Result(ActorPath path) {
+            this.path = path;
+        }
+
+        /**
+         * Returns the cached path, or null if the actors aren't connected.
+         */
+        public ActorPath getPath() {
+            return path;
+        }
+    }
+
+    /**
+     * Returns the cached path between the given actors, oriented from the first to the second, or null if
+     * there is no cached result.
+     */
+    public Result get(int fromActorId, int toActorId) {
+        return get(fromActorId, toActorId, generation);
+    }
+
+    /**
+     * Returns the cached path between the given actors, as for get(int, int), but only if the cache hasn't been
+     * invalidated since the given generation, so that a caller still serving an earlier graph never sees the
+     * results of a later one.
+     */
+    public Result get(int fromActorId, int toActorId, long generation) {
+        long key = key(fromActorId, toActorId);
+        ActorPath path = stripeOf(key).get(key, ttlNanos, generation);
+        if (path == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (path == NO_PATH) {
+            return new Result(null);
+        }
+        return new Result(fromActorId <= toActorId ? path : path.reverse());
+    }
+
+    /**
+     * Returns the current generation, to be passed to put() along with the result of a search started now.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches the given result of a search between the given actors, unless the cache has been invalidated since
+     * the given generation.
+     *
+     * @param path       the path from the first actor to the second, or null if they aren't connected
+     * @param generation the generation when the search started
+     */
+    public void put(int fromActorId, int toActorId, ActorPath path, long generation) {
+        if (path != null && fromActorId > toActorId) {
+            path = path.reverse();
+        }
+        long key = key(fromActorId, toActorId);
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            if (generation == this.generation) {
+                stripe.put(key, new Entry(path == null ? NO_PATH : path, System.nanoTime(), generation));
+            }
+        }
+    }
+
+    /**
+     * Drops every cached result, and starts a new generation.
+     */
+    public void invalidate() {
+        // Start the new generation before clearing, so that a put() of the old generation either lands before
+        // its stripe is cleared, or sees the new generation and is dropped
+        generation++;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of cached results.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private static long key(int actorId1, int actorId2) {
+        return ((long) Math.min(actorId1, actorId2) << 32) | (Math.max(actorId1, actorId2) & 0xffffffffL);
+    }
+
+    private Stripe stripeOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 60) & (STRIPES - 1)];
+    }
+
+    private static class Entry {
+        final ActorPath path;
+        final long cachedNanos;
+        final long generation;
+
+        Entry(ActorPath path, long cachedNanos, long generation) {
+            this.path = path;
+            this.cachedNanos = cachedNanos;
+            this.generation = generation;
+        }
+    }
+
+    private class Stripe extends LinkedHashMap<Long, Entry> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        synchronized ActorPath get(long key, long ttlNanos, long generation) {
+            Entry entry = super.get(key);
+            // An entry of another generation is one invalidate() is about to clear
+            if (entry == null || entry.generation != generation) {
+                return null;
+            }
+            if (ttlNanos > 0 && System.nanoTime() - entry.cachedNanos > ttlNanos) {
+                remove(key);
+                return null;
+            }
+            return entry.path;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.simone.movielynx.backend;
+
+import com.simone.movielynx.loader.HubDistanceIndex;
+
+import java.util.Arrays;
+
+/**
+ * Finds shortest actor->movie->actor paths in an ActorGraph with a bidirectional breadth-first search.
+ * <p>
+ * The search grows one level at a time from both ends, always expanding whichever side's frontier has fewer
+ * credits to follow, and stops at the first level where the two sides meet.  A popular movie reached from
+ * both sides is therefore only ever expanded on the cheaper one, which keeps the number of visited actors
+ * far below what a one-sided search from either actor would visit.  Each movie is expanded at most once per
+ * side.
+ * <p>
+ * If the graph has hub distances, they prune the search: actors the hubs show can't be connected are answered
+ * without a search, and an actor is not expanded further if the hubs show that every path through it is
+ * longer than the path through the nearest hub connected to both ends.  Actors on a shortest path are never
+ * pruned, so the paths found are unchanged.
+ * <p>
+ * The per-search arrays are sized to the graph and reused by each thread across searches.  Each thread has one
+ * set, shared by every PathFinder, so when the served graph is swapped a thread's arrays are reused for the new
+ * graph if they're big enough, or replaced, rather than a set being left behind for every graph the thread has
+ * searched.  Rather than being cleared between searches, their entries are stamped with the number of the
+ * search that set them, so starting a search costs nothing regardless of the graph size.  A search checks its
+ * deadline every few hundred actors, so it can be abandoned partway through a level.  Instances are
+ * thread-safe.
+ * <p>
+ * The number of searches and of actors they expanded are counted in SearchMetrics, which may be shared with
+ * the PathFinders of other versions of the graph.
+ */
+public class PathFinder {
+    private final static int FORWARD = 0;
+    private final static int BACKWARD = 1;
+    // Check the deadline once every this many + 1 expanded actors
+    private final static int DEADLINE_CHECK_MASK = 255;
+
+    // Shared by all instances, so that a thread only ever holds the arrays of the graph it last searched
+    private final static ThreadLocal<SearchState> SEARCH_STATES = new ThreadLocal<>();
+
+    private final ActorGraph graph;
+    private final SearchMetrics metrics;
+
+    public PathFinder(ActorGraph graph) {
+        this(graph, new SearchMetrics());
+    }
+
+    /**
+     * @param metrics the metrics to count this finder's searches in
+     */
+    public PathFinder(ActorGraph graph, SearchMetrics metrics) {
+        this.graph = graph;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns a shortest path from the given actor to the other given actor, or null if they aren't connected.
+     */
+    public ActorPath findPath(int fromActorId, int toActorId) {
+        return findPath(fromActorId, toActorId, QueryDeadline.NONE);
+    }
+
+    /**
+     * Returns a shortest path from the given actor to the other given actor, or null if they aren't connected.
+     *
+     * @throws QueryTimeoutException if the deadline is reached before the search is finished
+     */
+    public ActorPath findPath(int fromActorId, int toActorId, QueryDeadline deadline) {
+        if (fromActorId == toActorId) {
+            return new ActorPath(new int[]{fromActorId}, new int[0]);
+        }
+        int upperBound = Integer.MAX_VALUE;
+        if (graph.getHubCount() > 0) {
+            if (graph.getDistanceLowerBound(fromActorId, toActorId) == Integer.MAX_VALUE) {
+                return null;
+            }
+            upperBound = graph.getDistanceUpperBound(fromActorId, toActorId);
+        }
+        SearchState state = getSearchState();
+        state.start(fromActorId, toActorId, upperBound);
+        try {
+            while (state.levelSize(FORWARD) > 0 && state.levelSize(BACKWARD) > 0) {
+                deadline.check();
+                int side = state.levelCost[FORWARD] <= state.levelCost[BACKWARD] ? FORWARD : BACKWARD;
+                int meetingActorId = expandLevel(state, side, deadline);
+                if (meetingActorId >= 0) {
+                    return state.buildPath(meetingActorId);
+                }
+            }
+            return null;
+        } finally {
+            metrics.record(state.expandedActors);
+        }
+    }
+
+    /**
+     * Returns the metrics this finder counts its searches in.
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the calling thread's search state, set up for this finder's graph.
+     */
+    private SearchState getSearchState() {
+        SearchState state = SEARCH_STATES.get();
+        if (state == null || state.graph != graph) {
+            if (state == null || !state.fits(graph)) {
+                // Let go of the old arrays before allocating the new ones
+                SEARCH_STATES.remove();
+                state = new SearchState(graph);
+                SEARCH_STATES.set(state);
+            } else {
+                state.setGraph(graph);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Expands the current level of the given side by one actor->movie->actor step.  Returns the actor where the
+     * two sides meet on the shortest path found in this level, or -1 if they don't meet.
+     */
+    private int expandLevel(SearchState state, int side, QueryDeadline deadline) {
+        int other = 1 - side;
+        int generation = state.generation;
+        int[] queue = state.queue[side];
+        int[] actorStamps = state.actorStamps[side];
+        int[] movieStamps = state.movieStamps[side];
+        int[] depths = state.depths[side];
+
+        int levelStart = state.levelStart[side];
+        int levelEnd = state.tail[side];
+        int tail = levelEnd;
+        long nextCost = 0;
+        int bestLength = Integer.MAX_VALUE;
+        int meetingActorId = -1;
+        for (int q = levelStart; q < levelEnd; q++) {
+            if ((q & DEADLINE_CHECK_MASK) == 0) {
+                deadline.check();
+            }
+            int actorId = queue[q];
+            int depth = depths[actorId] + 1;
+            if (state.upperBound != Integer.MAX_VALUE && depth - 1 + state.lowerBound(actorId, other) >
+                    state.upperBound) {
+                continue;
+            }
+            state.expandedActors++;
+            for (int i = graph.getMoviesStart(actorId); i < graph.getMoviesEnd(actorId); i++) {
+                int movieId = graph.getActorMovie(i);
+                if (movieStamps[movieId] == generation) {
+                    continue;
+                }
+                movieStamps[movieId] = generation;
+                for (int j = graph.getActorsStart(movieId); j < graph.getActorsEnd(movieId); j++) {
+                    int coStarId = graph.getMovieActor(j);
+                    if (actorStamps[coStarId] == generation) {
+                        continue;
+                    }
+                    actorStamps[coStarId] = generation;
+                    depths[coStarId] = depth;
+                    state.parentActors[side][coStarId] = actorId;
+                    state.parentMovies[side][coStarId] = movieId;
+
+                    if (state.actorStamps[other][coStarId] == generation) {
+                        int length = depth + state.depths[other][coStarId];
+                        if (length < bestLength) {
+                            bestLength = length;
+                            meetingActorId = coStarId;
+                        }
+                    }
+                    queue[tail++] = coStarId;
+                    nextCost += graph.getMoviesEnd(coStarId) - graph.getMoviesStart(coStarId);
+                }
+            }
+        }
+        state.levelStart[side] = levelEnd;
+        state.tail[side] = tail;
+        state.levelCost[side] = nextCost;
+        return meetingActorId;
+    }
+
+    /**
+     * The reusable arrays of a single thread's searches, one set per search direction.
+     */
+    private static class SearchState {
+        final int[][] actorStamps = new int[2][];
+        final int[][] movieStamps = new int[2][];
+        final int[][] depths = new int[2][];
+        final int[][] parentActors = new int[2][];
+        final int[][] parentMovies = new int[2][];
+        final int[][] queue = new int[2][];
+        final int[] levelStart = new int[2];
+        final int[] tail = new int[2];
+        final long[] levelCost = new long[2];
+        // The hub distances of the actor each side searches from
+        final int[][] hubDistances = new int[2][];
+        ActorGraph graph;
+        int generation = 0;
+        int upperBound = Integer.MAX_VALUE;
+        // The number of actors expanded by the current search
+        long expandedActors = 0;
+
+        SearchState(ActorGraph graph) {
+            for (int side = 0; side < 2; side++) {
+                actorStamps[side] = new int[graph.getActorCount()];
+                movieStamps[side] = new int[graph.getMovieCount()];
+                depths[side] = new int[graph.getActorCount()];
+                parentActors[side] = new int[graph.getActorCount()];
+                parentMovies[side] = new int[graph.getActorCount()];
+                queue[side] = new int[graph.getActorCount()];
+            }
+            setGraph(graph);
+        }
+
+        /**
+         * Returns whether the arrays are big enough to search the given graph.
+         */
+        boolean fits(ActorGraph graph) {
+            return actorStamps[FORWARD].length >= graph.getActorCount() &&
+                    movieStamps[FORWARD].length >= graph.getMovieCount();
+        }
+
+        /**
+         * Makes the following searches search the given graph, which the arrays must fit.  The stamps left by
+         * searches of the previous graph are all older than the next search, so they don't need clearing.
+         */
+        void setGraph(ActorGraph graph) {
+            this.graph = graph;
+            for (int side = 0; side < 2; side++) {
+                hubDistances[side] = new int[graph.getHubCount()];
+            }
+        }
+
+        void start(int fromActorId, int toActorId, int upperBound) {
+            if (++generation == Integer.MAX_VALUE) {
+                for (int side = 0; side < 2; side++) {
+                    Arrays.fill(actorStamps[side], 0);
+                    Arrays.fill(movieStamps[side], 0);
+                }
+                generation = 1;
+            }
+            int[] startActorIds = {fromActorId, toActorId};
+            for (int side = 0; side < 2; side++) {
+                int actorId = startActorIds[side];
+                actorStamps[side][actorId] = generation;
+                depths[side][actorId] = 0;
+                queue[side][0] = actorId;
+                levelStart[side] = 0;
+                tail[side] = 1;
+                levelCost[side] = graph.getMoviesEnd(actorId) - graph.getMoviesStart(actorId);
+                for (int hub = 0; hub < hubDistances[side].length; hub++) {
+                    hubDistances[side][hub] = graph.getHubDistance(hub, actorId);
+                }
+            }
+            this.upperBound = upperBound;
+            expandedActors = 0;
+        }
+
+        /**
+         * Returns a lower bound of the distance from the given actor to the actor the given side searches
+         * from, like ActorGraph.getDistanceLowerBound() but without reading that actor's distances again.
+         */
+        int lowerBound(int actorId, int side) {
+            int lowerBound = 0;
+            for (int hub = 0; hub < hubDistances[side].length; hub++) {
+                int distance = graph.getHubDistance(hub, actorId);
+                int sideDistance = hubDistances[side][hub];
+                if ((distance == HubDistanceIndex.UNREACHABLE) != (sideDistance == HubDistanceIndex.UNREACHABLE)) {
+                    return Integer.MAX_VALUE;
+                }
+                if (distance != HubDistanceIndex.UNREACHABLE) {
+                    lowerBound = Math.max(lowerBound, Math.abs(distance - sideDistance));
+                }
+            }
+            return lowerBound;
+        }
+
+        int levelSize(int side) {
+            return tail[side] - levelStart[side];
+        }
+
+        ActorPath buildPath(int meetingActorId) {
+            int forwardDepth = depths[FORWARD][meetingActorId];
+            int length = forwardDepth + depths[BACKWARD][meetingActorId];
+            int[] actorIds = new int[length + 1];
+            int[] movieIds = new int[length];
+
+            int actorId = meetingActorId;
+            for (int i = forwardDepth; i > 0; i--) {
+                actorIds[i] = actorId;
+                movieIds[i - 1] = parentMovies[FORWARD][actorId];
+                actorId = parentActors[FORWARD][actorId];
+            }
+            actorIds[0] = actorId;
+
+            actorId = meetingActorId;
+            for (int i = forwardDepth; i < length; i++) {
+                movieIds[i] = parentMovies[BACKWARD][actorId];
+                actorId = parentActors[BACKWARD][actorId];
+                actorIds[i + 1] = actorId;
+            }
+            return new ActorPath(actorIds, movieIds);
+        }
+    }
+}
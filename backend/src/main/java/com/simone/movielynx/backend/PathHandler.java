@@ -0,0 +1,173 @@
+package com.simone.movielynx.backend;
+
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Serves {@code /path?from=<actor>&to=<actor>}: the shortest chain of movies connecting two actors.
+ * <p>
+ * Responds with {@code {"from":..,"to":..,"degrees":n,"path":[{"actor":..},{"movie":..},{"actor":..},..]}},
+ * with 400 if either actor is missing from the request, and 404 if either actor is unknown or the two
+ * actors aren't connected.  Searches run on the query executor, and are answered with 503 if they can't finish
+ * in time.  Results are kept in a PathCache, if one is given, and requests for a cached pair are answered
+ * without a search.  A handler only uses the cache's results for the generation it was created in, so the
+ * handlers for a new graph must be created after the cache is invalidated for it.
+ */
+public class PathHandler extends QueryHandler {
+    public final static String FROM_PARAMETER = "from";
+    public final static String TO_PARAMETER = "to";
+
+    private final ActorGraph graph;
+    private final PathFinder pathFinder;
+    private final PathCache cache;
+    private final long cacheGeneration;
+
+    public PathHandler(ActorGraph graph, ExecutorService executor, long timeoutMillis) {
+        this(graph, null, executor, timeoutMillis);
+    }
+
+    /**
+     * @param cache the cache of search results for the given graph, or null to search for every request
+     */
+    public PathHandler(ActorGraph graph, PathCache cache, ExecutorService executor, long timeoutMillis) {
+        this(graph, new PathFinder(graph), cache, executor, timeoutMillis);
+    }
+
+    /**
+     * @param pathFinder the path finder for the given graph, which may be shared with other handlers
+     * @param cache      the cache of search results for the given graph, or null to search for every request
+     */
+    public PathHandler(ActorGraph graph, PathFinder pathFinder, PathCache cache, ExecutorService executor,
+                       long timeoutMillis) {
+        super(executor, timeoutMillis);
+        this.graph = graph;
+        this.pathFinder = pathFinder;
+        this.cache = cache;
+        this.cacheGeneration = cache == null ? 0 : cache.getGeneration();
+    }
+
+    protected ActorGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    protected boolean answerImmediately(Request request, Response response) throws IOException {
+        int[] actorIds = getActorIds(graph, request, response);
+        if (actorIds == null) {
+            return true;
+        }
+        PathCache.Result result = cache == null ? null : cache.get(actorIds[0], actorIds[1], cacheGeneration);
+        if (result == null) {
+            return false;
+        }
+        sendPath(request, response, result.getPath());
+        return true;
+    }
+
+    @Override
+    protected void query(Request request, Response response, QueryDeadline deadline) throws IOException {
+        int[] actorIds = getActorIds(graph, request, response);
+        if (actorIds == null) {
+            return;
+        }
+        sendPath(request, response, findPath(actorIds[0], actorIds[1], deadline));
+    }
+
+    /**
+     * Fills the cache with the paths between the pairs of actors in the given file, one pair per line with the
+     * two names separated by a tab, typically the most requested pairs.  Pairs with unknown actors are skipped.
+     *
+     * @return the number of pairs searched
+     * @throws IOException if the file can't be read
+     */
+    public int warmCache(File pairsFile) throws IOException {
+        if (cache == null) {
+            return 0;
+        }
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(pairsFile),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    continue;
+                }
+                int fromActorId = graph.getActorId(line.substring(0, tab));
+                int toActorId = graph.getActorId(line.substring(tab + 1));
+                if (fromActorId >= 0 && toActorId >= 0) {
+                    findPath(fromActorId, toActorId, QueryDeadline.NONE);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private ActorPath findPath(int fromActorId, int toActorId, QueryDeadline deadline) {
+        if (cache == null) {
+            return pathFinder.findPath(fromActorId, toActorId, deadline);
+        }
+        ActorPath path = pathFinder.findPath(fromActorId, toActorId, deadline);
+        cache.put(fromActorId, toActorId, path, cacheGeneration);
+        return path;
+    }
+
+    /**
+     * Returns the IDs of the requested actors, or answers the request with an error and returns null if
+     * either is missing or unknown.
+     */
+    static int[] getActorIds(ActorGraph graph, Request request, Response response) throws IOException {
+        String from = request.getParameter(FROM_PARAMETER);
+        String to = request.getParameter(TO_PARAMETER);
+        if (from == null || to == null) {
+            sendJson(response, HttpStatus.BAD_REQUEST_400, Json.error("Both " + FROM_PARAMETER + " and " +
+                    TO_PARAMETER + " must be given"));
+            return null;
+        }
+        int fromActorId = graph.getActorId(from);
+        int toActorId = graph.getActorId(to);
+        if (fromActorId < 0 || toActorId < 0) {
+            String unknownActor = fromActorId < 0 ? from : to;
+            sendJson(response, HttpStatus.NOT_FOUND_404, Json.error("Unknown actor: " + unknownActor));
+            return null;
+        }
+        return new int[]{fromActorId, toActorId};
+    }
+
+    /**
+     * Answers the given request with the given path, or with 404 if it is null.
+     */
+    protected void sendPath(Request request, Response response, ActorPath path) throws IOException {
+        String from = request.getParameter(FROM_PARAMETER);
+        String to = request.getParameter(TO_PARAMETER);
+        if (path == null) {
+            sendJson(response, HttpStatus.NOT_FOUND_404, Json.error("No path from " + from + " to " + to));
+            return;
+        }
+        try (JsonWriter writer = JsonWriter.start(response, HttpStatus.OK_200)) {
+            writePath(writer, graph, from, to, path);
+        }
+    }
+
+    /**
+     * Writes the given path between the given actors to the given writer, as a JSON object.
+     */
+    static void writePath(JsonWriter writer, ActorGraph graph, String from, String to, ActorPath path)
+            throws IOException {
+        writer.beginObject().key("from").value(from).key("to").value(to)
+                .key("degrees").value(path.getDegrees()).key("path").beginArray();
+        for (int i = 0; i <= path.getDegrees(); i++) {
+            if (i > 0) {
+                writer.beginObject().key("movie").movieName(graph, path.getMovieId(i - 1)).endObject();
+            }
+            writer.beginObject().key("actor").actorName(graph, path.getActorId(i)).endObject();
+        }
+        writer.endArray().endObject();
+    }
+}
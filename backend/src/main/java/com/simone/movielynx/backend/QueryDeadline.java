@@ -0,0 +1,49 @@
+package com.simone.movielynx.backend;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time limit of a single graph query, checked periodically by long-running searches so that they give
+ * up instead of holding a worker thread past the point where their answer is still wanted.  A query can also
+ * be cancelled outright, from any thread.
+ */
+public class QueryDeadline {
+    /**
+     * A deadline that never expires, for callers outside of a request.
+     */
+    public final static QueryDeadline NONE = new QueryDeadline(Long.MAX_VALUE);
+
+    private final long deadlineNanos;
+    private volatile boolean cancelled = false;
+
+    private QueryDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Returns a deadline the given time from now.
+     */
+    public static QueryDeadline after(long timeout, TimeUnit unit) {
+        return new QueryDeadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether the query has run out of time or been cancelled.
+     */
+    public boolean isExpired() {
+        return cancelled || (deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos > 0);
+    }
+
+    /**
+     * Throws a QueryTimeoutException if the query has run out of time or been cancelled.
+     */
+    public void check() {
+        if (isExpired()) {
+            throw new QueryTimeoutException(cancelled ? "Query cancelled" : "Query timed out");
+        }
+    }
+}
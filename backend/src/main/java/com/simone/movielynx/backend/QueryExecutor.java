@@ -0,0 +1,49 @@
+package com.simone.movielynx.backend;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bounded executor graph queries run on: a fixed number of threads, and a fixed-size queue beyond which
+ * new queries are rejected with a RejectedExecutionException.  The searches /paths queries spread over several
+ * threads run on another one.
+ */
+public class QueryExecutor extends ThreadPoolExecutor {
+
+    /**
+     * @param threads   the number of query threads
+     * @param queueSize the number of queries that may wait for a thread
+     */
+    public QueryExecutor(int threads, int queueSize) {
+        this(threads, queueSize, "query");
+    }
+
+    /**
+     * @param threads    the number of threads
+     * @param queueSize  the number of tasks that may wait for a thread
+     * @param threadName the name of the threads, followed by each one's number
+     */
+    public QueryExecutor(int threads, int queueSize, String threadName) {
+        super(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                new QueryThreadFactory(threadName), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static class QueryThreadFactory implements ThreadFactory {
+        private final String threadName;
+        private final AtomicInteger count = new AtomicInteger();
+
+        QueryThreadFactory(String threadName) {
+            this.threadName = threadName;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, threadName + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.simone.movielynx.backend;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class of handlers for graph queries that may take a while, which run the query off Grizzly's own
+ * threads.
+ * <p>
+ * The response is suspended and the query handed to a dedicated, bounded executor, so that expensive searches
+ * never hold up the threads serving other requests.  When the executor's queue is full, the request is
+ * rejected straight away with 503 rather than queued indefinitely.  Each query gets a deadline, counted from
+ * when the request arrived so that time spent queued counts against it; a query still queued at its deadline
+ * is not run at all, and a running query that reaches it is answered with 503 as well.
+ * <p>
+ * Requests that can be answered cheaply, such as invalid ones or ones with a cached result, can be answered
+ * straight away by overriding answerImmediately(), without taking up a place on the executor.
+ */
+public abstract class QueryHandler extends HttpHandler {
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+
+    /**
+     * @param executor      the executor to run queries on, which should reject queries once its queue is full
+     * @param timeoutMillis the time each query may take, including time spent queued
+     */
+    protected QueryHandler(ExecutorService executor, long timeoutMillis) {
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Answers the given request, on one of the query executor's threads.
+     *
+     * @param deadline the query's deadline, to be checked periodically by long-running searches
+     * @throws QueryTimeoutException if the deadline is reached before the query is answered
+     */
+    protected abstract void query(Request request, Response response, QueryDeadline deadline) throws IOException;
+
+    /**
+     * Answers the given request straight away on the calling Grizzly thread, if that can be done cheaply.
+     *
+     * @return whether the request has been answered; if not, it is passed on to query()
+     */
+    protected boolean answerImmediately(Request request, Response response) throws IOException {
+        return false;
+    }
+
+    @Override
+    public void service(Request request, Response response) throws IOException {
+        if (answerImmediately(request, response)) {
+            return;
+        }
+        QueryDeadline deadline = QueryDeadline.after(timeoutMillis, TimeUnit.MILLISECONDS);
+        response.suspend();
+        try {
+            executor.execute(() -> run(request, response, deadline));
+        } catch (RejectedExecutionException e) {
+            try {
+                sendJson(response, HttpStatus.SERVICE_UNAVAILABLE_503, Json.error("Too many queries, try again later"));
+            } finally {
+                response.resume();
+            }
+        }
+    }
+
+    private void run(Request request, Response response, QueryDeadline deadline) {
+        try {
+            deadline.check();
+            query(request, response, deadline);
+        } catch (QueryTimeoutException e) {
+            sendError(response, HttpStatus.SERVICE_UNAVAILABLE_503, e.getMessage());
+        } catch (Exception e) {
+            System.err.println(e);
+            sendError(response, HttpStatus.INTERNAL_SERVER_ERROR_500, "Internal error");
+        } finally {
+            response.resume();
+        }
+    }
+
+    private static void sendError(Response response, HttpStatus status, String message) {
+        try {
+            if (!response.isCommitted()) {
+                response.reset();
+                sendJson(response, status, Json.error(message));
+            }
+        } catch (IOException e) {
+            System.err.println(e);
+        }
+    }
+
+    static void sendJson(Response response, HttpStatus status, String body) throws IOException {
+        status.setValues(response.getResponse());
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(body);
+    }
+}
@@ -0,0 +1,11 @@
+package com.simone.movielynx.backend;
+
+/**
+ * Thrown by a graph query that ran out of time or was cancelled before finishing.
+ */
+public class QueryTimeoutException extends RuntimeException {
+
+    public QueryTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,107 @@
+package com.simone.movielynx.backend;
+
+import com.simone.movielynx.loader.LatencyHistogram;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint request counts by status, in-flight requests and latency histograms.
+ * <p>
+ * Every counter is a LongAdder, and the latency histograms are made of LongAdder buckets, so recording a
+ * request never takes a lock and concurrent requests don't contend on a shared counter.  A request is timed
+ * from when its handler is called until its response is finished, which for queries run on the query executor
+ * is after the response has been resumed, so time spent queued is included.
+ */
+public class RequestMetrics {
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a handler that records each request's metrics under the given endpoint, and then passes it on to
+     * the given handler.
+     */
+    public HttpHandler instrument(String endpoint, HttpHandler handler) {
+        Endpoint metrics = getEndpoint(endpoint);
+        return new HttpHandler(handler.getName()) {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                long startTime = System.nanoTime();
+                metrics.inFlight.increment();
+                // Called once the response is finished, even if the handler suspended it
+                request.addAfterServiceListener(finishedRequest -> metrics.record(
+                        finishedRequest.getResponse().getStatus(), System.nanoTime() - startTime));
+                handler.service(request, response);
+            }
+        };
+    }
+
+    /**
+     * Returns the metrics of the given endpoint, creating them if they don't exist yet.
+     */
+    public Endpoint getEndpoint(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, Endpoint::new);
+    }
+
+    /**
+     * Returns the metrics of every endpoint, by endpoint.
+     */
+    public Map<String, Endpoint> getEndpoints() {
+        return new TreeMap<>(endpoints);
+    }
+
+    /**
+     * The metrics of one endpoint.
+     */
+    public static class Endpoint {
+        private final String name;
+        private final LongAdder inFlight = new LongAdder();
+        private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Records a finished request.
+         */
+        void record(int status, long nanos) {
+            // ConcurrentHashMap.computeIfAbsent() locks even when the key is present, so look it up first
+            LongAdder statusCount = statusCounts.get(status);
+            if (statusCount == null) {
+                statusCount = statusCounts.computeIfAbsent(status, key -> new LongAdder());
+            }
+            statusCount.increment();
+            latencies.record(nanos);
+            inFlight.decrement();
+        }
+
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        /**
+         * Returns the number of finished requests, by response status.
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            for (Map.Entry<Integer, LongAdder> entry : statusCounts.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().sum());
+            }
+            return counts;
+        }
+
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+    }
+}
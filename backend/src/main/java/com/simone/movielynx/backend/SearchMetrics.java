@@ -0,0 +1,48 @@
+package com.simone.movielynx.backend;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The number of path searches run, and of actors they expanded, so that the cost of queries can be monitored.
+ * <p>
+ * One instance is shared by the PathFinders of every version of the graph, so the counters keep growing across
+ * swaps, like the request metrics.  They're LongAdders, added to once per search, so concurrent searches don't
+ * contend on a shared counter.
+ */
+public class SearchMetrics {
+    private final LongAdder searchCount = new LongAdder();
+    private final LongAdder expandedActorCount = new LongAdder();
+    private final LongAccumulator maxExpandedActors = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a search that expanded the given number of actors, whether it finished or was abandoned.
+     */
+    void record(long expandedActors) {
+        searchCount.increment();
+        expandedActorCount.add(expandedActors);
+        maxExpandedActors.accumulate(expandedActors);
+    }
+
+    /**
+     * Returns the number of searches run so far, including abandoned ones but not ones answered without a
+     * search.
+     */
+    public long getSearchCount() {
+        return searchCount.sum();
+    }
+
+    /**
+     * Returns the total number of actors expanded by the searches run so far.
+     */
+    public long getExpandedActorCount() {
+        return expandedActorCount.sum();
+    }
+
+    /**
+     * Returns the largest number of actors expanded by a single search so far.
+     */
+    public long getMaxExpandedActors() {
+        return maxExpandedActors.get();
+    }
+}
@@ -0,0 +1,67 @@
+package com.simone.movielynx.backend;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+import java.io.IOException;
+
+/**
+ * Serves {@code /suggest?q=<prefix>[&limit=<n>]}: actors with a word of their name starting with the given
+ * prefix, ignoring case and accents, for autocompleting names as they're typed.
+ * <p>
+ * Responds with {@code {"query":..,"actors":[..]}}, with up to limit actors, 10 by default, and with 400 if
+ * the prefix is missing or the limit invalid.  Lookups take microseconds, so they're answered on Grizzly's own
+ * threads rather than the query executor.
+ */
+public class SuggestHandler extends HttpHandler {
+    public final static String QUERY_PARAMETER = "q";
+    public final static String LIMIT_PARAMETER = "limit";
+    public final static int DEFAULT_LIMIT = 10;
+    public final static int MAX_LIMIT = 100;
+
+    private final ActorGraph graph;
+
+    public SuggestHandler(ActorGraph graph) {
+        this.graph = graph;
+    }
+
+    @Override
+    public void service(Request request, Response response) throws IOException {
+        String query = request.getParameter(QUERY_PARAMETER);
+        if (query == null) {
+            QueryHandler.sendJson(response, HttpStatus.BAD_REQUEST_400,
+                    Json.error(QUERY_PARAMETER + " must be given"));
+            return;
+        }
+        int limit = DEFAULT_LIMIT;
+        if (request.getParameter(LIMIT_PARAMETER) != null) {
+            try {
+                limit = Integer.parseInt(request.getParameter(LIMIT_PARAMETER));
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                QueryHandler.sendJson(response, HttpStatus.BAD_REQUEST_400, Json.error(LIMIT_PARAMETER +
+                        " must be between 1 and " + MAX_LIMIT));
+                return;
+            }
+        }
+        if (!graph.hasNameIndex()) {
+            QueryHandler.sendJson(response, HttpStatus.SERVICE_UNAVAILABLE_503,
+                    Json.error("The graph snapshot has no name index"));
+            return;
+        }
+
+        int[] actorIds = new int[limit];
+        int count = graph.suggestActors(query, actorIds);
+        try (JsonWriter writer = JsonWriter.start(response, HttpStatus.OK_200)) {
+            writer.beginObject().key("query").value(query).key("actors").beginArray();
+            for (int i = 0; i < count; i++) {
+                writer.actorName(graph, actorIds[i]);
+            }
+            writer.endArray().endObject();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.simone.movielynx.backend;
+
+import com.simone.movielynx.loader.ActorCredits;
+import com.simone.movielynx.loader.CoStarIndex;
+import com.simone.movielynx.loader.CreditGraph;
+import com.simone.movielynx.loader.CreditGraphBuilder;
+import com.simone.movielynx.loader.GraphSnapshot;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for ActorGraph.
+ */
+public class ActorGraphTest {
+
+    @Test
+    public void testSnapshotMatchesCredits() throws Exception {
+        Random random = new Random(3);
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        for (int actor = 0; actor < 2000; actor++) {
+            List<String> movies = new ArrayList<>();
+            for (int j = random.nextInt(5); j >= 0; j--) {
+                movies.add("Movie é " + random.nextInt(1500));
+            }
+            builder.handle(new ActorCredits("Actor Å " + actor, movies));
+        }
+        CreditGraph creditGraph = builder.build();
+        File file = File.createTempFile("ActorGraphTest", ".graph");
+        file.deleteOnExit();
+        GraphSnapshot.write(creditGraph, file);
+
+        ActorGraph expected = ActorGraph.of(creditGraph);
+        ActorGraph actual = ActorGraph.load(file, true);
+        assertEquals(expected.getActorCount(), actual.getActorCount());
+        assertEquals(expected.getMovieCount(), actual.getMovieCount());
+        for (int actorId = 0; actorId < expected.getActorCount(); actorId++) {
+            assertEquals(expected.getActorName(actorId), actual.getActorName(actorId));
+            assertEquals(actorId, actual.getActorId(expected.getActorName(actorId)));
+            assertEquals(expected.getMoviesStart(actorId), actual.getMoviesStart(actorId));
+            assertEquals(expected.getMoviesEnd(actorId), actual.getMoviesEnd(actorId));
+            for (int i = expected.getMoviesStart(actorId); i < expected.getMoviesEnd(actorId); i++) {
+                assertEquals(expected.getActorMovie(i), actual.getActorMovie(i));
+            }
+        }
+        for (int movieId = 0; movieId < expected.getMovieCount(); movieId++) {
+            assertEquals(expected.getMovieName(movieId), actual.getMovieName(movieId));
+            assertEquals(expected.getActorsStart(movieId), actual.getActorsStart(movieId));
+            assertEquals(expected.getActorsEnd(movieId), actual.getActorsEnd(movieId));
+            for (int i = expected.getActorsStart(movieId); i < expected.getActorsEnd(movieId); i++) {
+                assertEquals(expected.getMovieActor(i), actual.getMovieActor(i));
+                assertTrue(hasMovie(actual, actual.getMovieActor(i), movieId));
+            }
+        }
+        assertEquals(-1, actual.getActorId("Nobody"));
+    }
+
+    @Test
+    public void testSuggestActors() throws Exception {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        for (String actor : Arrays.asList("Tom (I) Hanks", "Tom (II) Hanks", "Tomas Åström", "Anna Thomas",
+                "Zoë Tomlinson", "Conan O'Brien")) {
+            builder.handle(new ActorCredits(actor, Collections.singletonList("Movie")));
+        }
+        CreditGraph creditGraph = builder.build();
+        File file = File.createTempFile("ActorGraphTest", ".graph");
+        file.deleteOnExit();
+        GraphSnapshot.write(creditGraph, file);
+
+        for (ActorGraph graph : Arrays.asList(ActorGraph.of(creditGraph), ActorGraph.load(file, true))) {
+            assertTrue(graph.hasNameIndex());
+            assertEquals("[Tom (I) Hanks, Tom (II) Hanks, Tomas Åström, Zoë Tomlinson]",
+                    suggest(graph, "TOM", 10));
+            assertEquals("[Tom (I) Hanks, Tom (II) Hanks]", suggest(graph, "tom h", 10));
+            assertEquals("[Tom (I) Hanks]", suggest(graph, "hank", 1));
+            assertEquals("[Tomas Åström]", suggest(graph, "astro", 10));
+            assertEquals("[Zoë Tomlinson]", suggest(graph, "zoe", 10));
+            assertEquals("[Conan O'Brien]", suggest(graph, "obri", 10));
+            assertEquals("[Anna Thomas]", suggest(graph, "th", 10));
+            assertEquals("[]", suggest(graph, "  ", 10));
+            assertEquals("[]", suggest(graph, "tomz", 10));
+        }
+    }
+
+    @Test
+    public void testCoStars() throws Exception {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        builder.handle(new ActorCredits("A", Arrays.asList("M1", "M2")));
+        builder.handle(new ActorCredits("B", Arrays.asList("M1", "M2")));
+        builder.handle(new ActorCredits("C", Arrays.asList("M2", "M3")));
+        builder.handle(new ActorCredits("D", Collections.singletonList("M4")));
+        CreditGraph creditGraph = builder.build();
+        CoStarIndex coStars = CoStarIndex.compute(creditGraph, 10, 1);
+        File file = File.createTempFile("ActorGraphTest", ".graph");
+        file.deleteOnExit();
+        GraphSnapshot.write(creditGraph, null, coStars, file);
+
+        assertFalse(ActorGraph.of(creditGraph).hasCoStars());
+        for (ActorGraph graph : Arrays.asList(ActorGraph.of(creditGraph, null, coStars),
+                ActorGraph.load(file, true))) {
+            assertTrue(graph.hasCoStars());
+            assertEquals("[B:2, C:1]", coStars(graph, "A"));
+            assertEquals("[A:1, B:1]", coStars(graph, "C"));
+            assertEquals("[]", coStars(graph, "D"));
+        }
+    }
+
+    private static String coStars(ActorGraph graph, String actor) {
+        int actorId = graph.getActorId(actor);
+        List<String> coStars = new ArrayList<>();
+        for (int i = graph.getCoStarsStart(actorId); i < graph.getCoStarsEnd(actorId); i++) {
+            coStars.add(graph.getActorName(graph.getCoStar(i)) + ":" + graph.getCoStarWeight(i));
+        }
+        return coStars.toString();
+    }
+
+    private static String suggest(ActorGraph graph, String prefix, int limit) {
+        int[] actorIds = new int[limit];
+        int count = graph.suggestActors(prefix, actorIds);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add(graph.getActorName(actorIds[i]));
+        }
+        return names.toString();
+    }
+
+    private static boolean hasMovie(ActorGraph graph, int actorId, int movieId) {
+        for (int i = graph.getMoviesStart(actorId); i < graph.getMoviesEnd(actorId); i++) {
+            if (graph.getActorMovie(i) == movieId) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
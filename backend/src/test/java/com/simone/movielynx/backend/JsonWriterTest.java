@@ -0,0 +1,63 @@
+package com.simone.movielynx.backend;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for JsonWriter.
+ */
+public class JsonWriterTest {
+
+    @Test
+    public void testNesting() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject().key("a").beginArray().value(1).beginArray().endArray().nullValue().endArray()
+                    .key("b").beginObject().key("c").value("d").endObject()
+                    .key("e").beginArray().beginObject().endObject().beginObject().key("f").value(-2).endObject()
+                    .endArray().endObject();
+        }
+        assertEquals("{\"a\":[1,[],null],\"b\":{\"c\":\"d\"},\"e\":[{},{\"f\":-2}]}",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginArray().value(0).value(7).value(-10).value(Long.MAX_VALUE).value(Long.MIN_VALUE).endArray();
+        }
+        assertEquals("[0,7,-10," + Long.MAX_VALUE + "," + Long.MIN_VALUE + "]",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStringsMatchJson() throws Exception {
+        // Long enough to run over the writer's buffer several times
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            sb.append("Foo \"Bar\" \\ \n\r\t\u0001 \u00e9\u00c5 \u20ac \u2028 \u2029 \uD83C\uDFAC ");
+        }
+        String value = sb.toString();
+        String expected = Json.appendString(new StringBuilder(), value).toString();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.value(value);
+        }
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        // The same string from a UTF-8 string table, between other names
+        byte[] bytes = ("x" + value + "y").getBytes(StandardCharsets.UTF_8);
+        out = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.utf8Value(ByteBuffer.wrap(bytes), 1, bytes.length - 1);
+        }
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
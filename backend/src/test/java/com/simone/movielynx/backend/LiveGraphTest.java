@@ -0,0 +1,192 @@
+package com.simone.movielynx.backend;
+
+import com.simone.movielynx.loader.CreditGraph;
+import com.simone.movielynx.loader.GraphSnapshot;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for LiveGraph, through a running server.
+ */
+public class LiveGraphTest {
+
+    @Test
+    public void testSwapSnapshot() throws Exception {
+        File file = File.createTempFile("LiveGraphTest", ".graph");
+        file.deleteOnExit();
+        GraphSnapshot.write(PathFinderTest.createCreditGraph("A", "M1", "B", "M1"), file);
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        HttpServer server = HttpServer.createSimpleServer(null, port);
+        QueryExecutor executor = new QueryExecutor(2, 10);
+        QueryExecutor searchExecutor = new QueryExecutor(2, 10, "search");
+        PathCache cache = new PathCache(100, 0, TimeUnit.SECONDS);
+        RequestMetrics requestMetrics = new RequestMetrics();
+        SearchMetrics searchMetrics = new SearchMetrics();
+        LiveGraph liveGraph = new LiveGraph(ActorGraph.load(file, true), graph -> Main.createHandlers(graph,
+                executor, searchExecutor, 10000, cache, requestMetrics, searchMetrics), cache, 0);
+        try {
+            server.getServerConfiguration().addHttpHandler(liveGraph.handler("/path", true), "/path");
+            server.getServerConfiguration().addHttpHandler(liveGraph.handler("/paths", true), "/paths");
+            server.start();
+            liveGraph.watch(file, 1, TimeUnit.HOURS);
+            assertFalse(liveGraph.checkSnapshot(file));
+            assertEquals("200 {\"from\":\"A\",\"to\":\"B\",\"degrees\":1,\"path\":[" +
+                    "{\"actor\":\"A\"},{\"movie\":\"M1\"},{\"actor\":\"B\"}]}",
+                    PathHandlerTest.get(port, "/path?from=A&to=B"));
+            assertEquals(1, cache.size());
+            assertEquals(1, searchMetrics.getSearchCount());
+
+            // A request still holding the old version keeps its graph open until it's done
+            GraphVersion oldVersion = liveGraph.acquire();
+            GraphSnapshot.write(PathFinderTest.createCreditGraph(
+                    "A", "M2",
+                    "B", "M3",
+                    "C", "M2", "M3"), file);
+            assertTrue(liveGraph.checkSnapshot(file));
+            assertEquals(2, liveGraph.getCurrent().getNumber());
+            assertEquals(0, cache.size());
+            assertEquals("200 {\"from\":\"A\",\"to\":\"B\",\"degrees\":2,\"path\":[" +
+                    "{\"actor\":\"A\"},{\"movie\":\"M2\"},{\"actor\":\"C\"},{\"movie\":\"M3\"},{\"actor\":\"B\"}]}",
+                    PathHandlerTest.get(port, "/path?from=A&to=B"));
+            assertEquals("200 {\"actors\":[\"A\",\"C\"],\"degrees\":[[0,1],[1,0]]}",
+                    PathHandlerTest.get(port, "/paths?actor=A&actor=C&paths=false"));
+            // The search metrics carry on from the old version's
+            assertEquals(3, searchMetrics.getSearchCount());
+            assertEquals("M1", oldVersion.getGraph().getMovieName(oldVersion.getGraph().getActorMovie(0)));
+            assertEquals(1, oldVersion.getLeaseCount());
+            liveGraph.release(oldVersion);
+            assertEquals(0, oldVersion.getLeaseCount());
+        } finally {
+            liveGraph.close();
+            server.shutdownNow();
+            executor.shutdownNow();
+            searchExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInvalidSnapshotKeepsVersion() throws Exception {
+        CreditGraph creditGraph = PathFinderTest.createCreditGraph("A", "M1", "B", "M1");
+        LiveGraph liveGraph = new LiveGraph(ActorGraph.of(creditGraph), graph -> Main.createHandlers(graph, null,
+                null, 10000, null, new RequestMetrics(), new SearchMetrics()), null, 0);
+        try {
+            GraphVersion version = liveGraph.getCurrent();
+            File file = File.createTempFile("LiveGraphTest", ".graph");
+            file.deleteOnExit();
+            FileUtils.writeStringToFile(file, "Not a snapshot", "UTF-8");
+            assertFalse(liveGraph.checkSnapshot(file));
+            assertSame(version, liveGraph.getCurrent());
+            assertFalse(liveGraph.checkSnapshot(file));
+
+            assertTrue(file.delete());
+            assertFalse(liveGraph.checkSnapshot(file));
+            GraphSnapshot.write(creditGraph, file);
+            assertTrue(liveGraph.checkSnapshot(file));
+            assertEquals(2, liveGraph.getCurrent().getNumber());
+            assertEquals(0, version.getLeaseCount());
+        } finally {
+            liveGraph.close();
+        }
+    }
+
+    @Test
+    public void testConditionalCompressedResponses() throws Exception {
+        // A chain of actors, each sharing a movie with the next
+        List<String> credits = new ArrayList<>();
+        for (int actor = 0; actor < 40; actor++) {
+            credits.addAll(Arrays.asList("Actor " + actor, "M" + actor, "M" + (actor + 1)));
+        }
+        CreditGraph creditGraph = PathFinderTest.createCreditGraph(credits.toArray(new String[0]));
+        File file = File.createTempFile("LiveGraphTest", ".graph");
+        file.deleteOnExit();
+        GraphSnapshot.write(creditGraph, file);
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        HttpServer server = HttpServer.createSimpleServer(null, port);
+        QueryExecutor executor = new QueryExecutor(2, 10);
+        QueryExecutor searchExecutor = new QueryExecutor(2, 10, "search");
+        LiveGraph liveGraph = new LiveGraph(ActorGraph.load(file, true), graph ->
+                Main.createHandlers(graph, executor, searchExecutor, 10000, null, new RequestMetrics(),
+                        new SearchMetrics()), null, 0);
+        try {
+            server.getServerConfiguration().addHttpHandler(liveGraph.handler("/path", true), "/path");
+            server.getServerConfiguration().addHttpHandler(liveGraph.handler("/paths", true), "/paths");
+            server.getServerConfiguration().addHttpHandler(liveGraph.handler("/metrics", false), "/metrics");
+            Main.configureCompression(server, 1024);
+            server.start();
+
+            HttpURLConnection connection = open(port, "/path?from=Actor+0&to=Actor+2", null);
+            assertEquals(200, connection.getResponseCode());
+            assertNull(connection.getContentEncoding());
+            String etag = connection.getHeaderField("ETag");
+            assertTrue(etag, etag.startsWith("W/\""));
+            assertEquals("{\"from\":\"Actor 0\",\"to\":\"Actor 2\",\"degrees\":2,\"path\":[{\"actor\":\"Actor 0\"}," +
+                    "{\"movie\":\"M1\"},{\"actor\":\"Actor 1\"},{\"movie\":\"M2\"},{\"actor\":\"Actor 2\"}]}",
+                    IOUtils.toString(connection.getInputStream(), "UTF-8"));
+
+            // Repeated on the same graph, or on a graph from the same snapshot, the request isn't answered again
+            connection = open(port, "/path?from=Actor+0&to=Actor+2", etag);
+            assertEquals(304, connection.getResponseCode());
+            assertEquals(etag, connection.getHeaderField("ETag"));
+            liveGraph.swap(ActorGraph.load(file, true));
+            assertEquals(304, open(port, "/path?from=Actor+0&to=Actor+2", "\"x\", " + etag).getResponseCode());
+            assertEquals(200, open(port, "/path?from=Actor+0&to=Actor+3", etag).getResponseCode());
+            assertNull(open(port, "/metrics", null).getHeaderField("ETag"));
+            liveGraph.swap(ActorGraph.of(creditGraph));
+            assertEquals(200, open(port, "/path?from=Actor+0&to=Actor+2", etag).getResponseCode());
+
+            // Large responses are compressed, and the same whether they're compressed or not
+            StringBuilder query = new StringBuilder("/paths?actor=Actor+0");
+            for (int actor = 1; actor < 40; actor += 3) {
+                query.append("&actor=Actor+").append(actor);
+            }
+            String expected = PathHandlerTest.get(port, query.toString());
+            connection = open(port, query.toString(), null);
+            assertEquals("gzip", connection.getContentEncoding());
+            try (InputStream inputStream = new GZIPInputStream(connection.getInputStream())) {
+                assertEquals(expected, "200 " + IOUtils.toString(inputStream, "UTF-8"));
+            }
+        } finally {
+            liveGraph.close();
+            server.shutdownNow();
+            executor.shutdownNow();
+            searchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens a GET of the given path that accepts gzip, with the given If-None-Match header if any.
+     */
+    private static HttpURLConnection open(int port, String path, String ifNoneMatch) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (ifNoneMatch != null) {
+            connection.setRequestProperty("If-None-Match", ifNoneMatch);
+        }
+        return connection;
+    }
+}
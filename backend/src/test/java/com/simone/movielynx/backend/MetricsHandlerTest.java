@@ -0,0 +1,62 @@
+package com.simone.movielynx.backend;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for MetricsHandler and RequestMetrics, through a running server.
+ */
+public class MetricsHandlerTest {
+
+    @Test
+    public void testMetrics() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        ActorGraph graph = PathFinderTest.createGraph("A", "M1", "B", "M1", "M2", "C", "M2", "D", "M3");
+        HttpServer server = HttpServer.createSimpleServer(null, port);
+        QueryExecutor executor = new QueryExecutor(2, 10);
+        PathCache cache = new PathCache(100, 0, TimeUnit.SECONDS);
+        PathFinder pathFinder = new PathFinder(graph);
+        RequestMetrics requestMetrics = new RequestMetrics();
+        server.getServerConfiguration().addHttpHandler(requestMetrics.instrument("/path",
+                new PathHandler(graph, pathFinder, cache, executor, 10000)), "/path");
+        server.getServerConfiguration().addHttpHandler(
+                new MetricsHandler(requestMetrics, cache, pathFinder.getMetrics()), "/metrics");
+        server.start();
+        try {
+            assertTrue(PathHandlerTest.get(port, "/path?from=A&to=C").startsWith("200 "));
+            assertTrue(PathHandlerTest.get(port, "/path?from=A&to=C").startsWith("200 "));
+            assertTrue(PathHandlerTest.get(port, "/path?from=A&to=X").startsWith("404 "));
+
+            // Requests are recorded once their response is finished, which may be just after it's received
+            RequestMetrics.Endpoint endpoint = requestMetrics.getEndpoint("/path");
+            for (int i = 0; i < 100 && endpoint.getLatencies().getCount() < 3; i++) {
+                Thread.sleep(50);
+            }
+            String metrics = PathHandlerTest.get(port, "/metrics");
+            assertTrue(metrics, metrics.startsWith("200 # HELP movielynx_requests_total "));
+            assertTrue(metrics, metrics.contains("\nmovielynx_requests_total{endpoint=\"/path\",status=\"200\"} 2\n"));
+            assertTrue(metrics, metrics.contains("\nmovielynx_requests_total{endpoint=\"/path\",status=\"404\"} 1\n"));
+            assertTrue(metrics, metrics.contains("\nmovielynx_requests_in_flight{endpoint=\"/path\"} 0\n"));
+            assertTrue(metrics, metrics.contains(
+                    "\nmovielynx_request_duration_seconds{endpoint=\"/path\",quantile=\"0.999\"} "));
+            assertTrue(metrics, metrics.contains("\nmovielynx_request_duration_seconds_count{endpoint=\"/path\"} 3\n"));
+            assertTrue(metrics, metrics.contains("\nmovielynx_path_cache_hits_total 1\n"));
+            assertTrue(metrics, metrics.contains("\nmovielynx_path_cache_hit_ratio 0.5\n"));
+            assertTrue(metrics, metrics.contains("\nmovielynx_search_expanded_actors_count 1\n"));
+            assertEquals(1, pathFinder.getMetrics().getSearchCount());
+            assertTrue(pathFinder.getMetrics().getExpandedActorCount() > 0);
+        } finally {
+            server.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+}
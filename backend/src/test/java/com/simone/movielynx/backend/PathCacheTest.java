@@ -0,0 +1,71 @@
+package com.simone.movielynx.backend;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for PathCache.
+ */
+public class PathCacheTest {
+
+    @Test
+    public void testGetAndPut() throws Exception {
+        ActorGraph graph = PathFinderTest.createGraph("A", "M1", "B", "M1", "M2", "C", "M2", "D", "M3");
+        ActorPath path = new PathFinder(graph).findPath(0, 2);
+        PathCache cache = new PathCache(100, 0, TimeUnit.SECONDS);
+
+        assertNull(cache.get(0, 2));
+        cache.put(0, 2, path, cache.getGeneration());
+        cache.put(0, 3, null, cache.getGeneration());
+        assertEquals("A M1 B M2 C", PathFinderTest.toString(graph, cache.get(0, 2).getPath()));
+        assertEquals("C M2 B M1 A", PathFinderTest.toString(graph, cache.get(2, 0).getPath()));
+        assertNotNull(cache.get(3, 0));
+        assertNull(cache.get(3, 0).getPath());
+        assertEquals(4, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        PathCache cache = new PathCache(160, 0, TimeUnit.SECONDS);
+        for (int actorId = 0; actorId < 1000; actorId++) {
+            cache.put(actorId, actorId + 1, null, cache.getGeneration());
+            // Keep the first pair recently used
+            assertNotNull(cache.get(0, 1));
+        }
+        assertTrue(cache.size() <= 160);
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+        assertNotNull(cache.get(0, 1));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        PathCache cache = new PathCache(100, 1, TimeUnit.NANOSECONDS);
+        cache.put(0, 1, null, cache.getGeneration());
+        Thread.sleep(1);
+        assertNull(cache.get(0, 1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        PathCache cache = new PathCache(100, 0, TimeUnit.SECONDS);
+        long generation = cache.getGeneration();
+        cache.put(0, 1, null, generation);
+        cache.invalidate();
+        assertNull(cache.get(0, 1));
+
+        // A search started before the invalidation isn't cached
+        cache.put(0, 1, null, generation);
+        assertNull(cache.get(0, 1));
+        cache.put(0, 1, null, cache.getGeneration());
+        assertNotNull(cache.get(0, 1));
+
+        // Nor is a later generation's result seen by a handler of an earlier one
+        assertNull(cache.get(0, 1, generation));
+        assertNotNull(cache.get(0, 1, cache.getGeneration()));
+    }
+}
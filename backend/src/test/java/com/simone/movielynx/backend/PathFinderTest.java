@@ -0,0 +1,289 @@
+package com.simone.movielynx.backend;
+
+import com.simone.movielynx.loader.ActorCredits;
+import com.simone.movielynx.loader.CreditGraph;
+import com.simone.movielynx.loader.CreditGraphBuilder;
+import com.simone.movielynx.loader.HubDistanceIndex;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for PathFinder.
+ */
+public class PathFinderTest {
+
+    @Test
+    public void testSimplePath() throws Exception {
+        ActorGraph graph = createGraph(
+                "A", "M1",
+                "B", "M1", "M2",
+                "C", "M2", "M3",
+                "D", "M3",
+                "E", "M4");
+        PathFinder pathFinder = new PathFinder(graph);
+
+        ActorPath path = pathFinder.findPath(graph.getActorId("A"), graph.getActorId("D"));
+        assertEquals(3, path.getDegrees());
+        assertEquals("A M1 B M2 C M3 D", toString(graph, path));
+        assertEquals("D M3 C M2 B M1 A", toString(graph, pathFinder.findPath(graph.getActorId("D"),
+                graph.getActorId("A"))));
+        assertEquals("B", toString(graph, pathFinder.findPath(graph.getActorId("B"), graph.getActorId("B"))));
+        assertNull(pathFinder.findPath(graph.getActorId("A"), graph.getActorId("E")));
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        ActorGraph graph = createGraph("A", "M1", "B", "M1", "M2", "C", "M2");
+        QueryDeadline deadline = QueryDeadline.after(1, TimeUnit.MINUTES);
+        assertEquals(2, new PathFinder(graph).findPath(0, 2, deadline).getDegrees());
+
+        deadline.cancel();
+        boolean gotException = false;
+        try {
+            new PathFinder(graph).findPath(0, 2, deadline);
+        } catch (QueryTimeoutException e) {
+            gotException = true;
+        }
+        assertTrue(gotException);
+    }
+
+    @Test
+    public void testAlternatingGraphs() throws Exception {
+        // Searches of the two graphs on the same thread share its arrays, which must be replaced when they're
+        // too small, and reused when they're big enough, without stamps from one graph leaking into the other
+        ActorGraph small = createGraph("A", "M1", "B", "M1", "M2", "C", "M2");
+        ActorGraph large = createGraph(
+                "A", "M1",
+                "B", "M1", "M2",
+                "C", "M2", "M3",
+                "D", "M3", "M4",
+                "E", "M4",
+                "F", "M5");
+        PathFinder smallFinder = new PathFinder(small);
+        PathFinder largeFinder = new PathFinder(large);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("A M1 B M2 C", toString(small, smallFinder.findPath(0, 2)));
+            assertEquals("A M1 B M2 C M3 D M4 E", toString(large, largeFinder.findPath(0, 4)));
+            assertNull(largeFinder.findPath(0, 5));
+            assertEquals("C M2 B M1 A", toString(small, smallFinder.findPath(2, 0)));
+        }
+    }
+
+    @Test
+    public void testMatchesBreadthFirstSearch() throws Exception {
+        Random random = new Random(7);
+        List<String> credits = new ArrayList<>();
+        for (int actor = 0; actor < 3000; actor++) {
+            credits.add("Actor " + actor);
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                // A few popular movies, and a long tail of small ones
+                int movie = random.nextInt(10) == 0 ? random.nextInt(20) : random.nextInt(4000);
+                credits.add("Movie " + movie);
+            }
+        }
+        ActorGraph graph = createGraph(credits.toArray(new String[0]));
+        assertMatchesBreadthFirstSearch(graph, random);
+    }
+
+    @Test
+    public void testHubPruningMatchesBreadthFirstSearch() throws Exception {
+        Random random = new Random(11);
+        List<String> credits = new ArrayList<>();
+        for (int actor = 0; actor < 3000; actor++) {
+            credits.add("Actor " + actor);
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                credits.add("Movie " + random.nextInt(3000));
+            }
+        }
+        CreditGraph creditGraph = createCreditGraph(credits.toArray(new String[0]));
+        ActorGraph graph = ActorGraph.of(creditGraph, HubDistanceIndex.compute(creditGraph,
+                HubDistanceIndex.selectHubs(creditGraph, 4), 2));
+        assertEquals(4, graph.getHubCount());
+        assertMatchesBreadthFirstSearch(graph, random);
+    }
+
+    @Test
+    public void testPairwiseMatchesBreadthFirstSearch() throws Exception {
+        Random random = new Random(13);
+        List<String> credits = new ArrayList<>();
+        for (int actor = 0; actor < 3000; actor++) {
+            credits.add("Actor " + actor);
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                credits.add("Movie " + random.nextInt(3000));
+            }
+        }
+        CreditGraph creditGraph = createCreditGraph(credits.toArray(new String[0]));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (ActorGraph graph : Arrays.asList(ActorGraph.of(creditGraph), ActorGraph.of(creditGraph,
+                    HubDistanceIndex.compute(creditGraph, HubDistanceIndex.selectHubs(creditGraph, 4), 2)))) {
+                PairwisePathFinder pathFinder = new PairwisePathFinder(new PathFinder(graph), executor, 3);
+                for (int round = 0; round < 5; round++) {
+                    int[] actorIds = new int[12];
+                    for (int i = 0; i < actorIds.length; i++) {
+                        actorIds[i] = random.nextInt(graph.getActorCount());
+                    }
+                    actorIds[actorIds.length - 1] = actorIds[0];
+                    ActorPath[][] paths = pathFinder.findPaths(actorIds, QueryDeadline.NONE);
+                    for (int i = 0; i < actorIds.length; i++) {
+                        for (int j = 0; j < actorIds.length; j++) {
+                            int expected = breadthFirstDegrees(graph, actorIds[i], actorIds[j]);
+                            if (expected < 0) {
+                                assertNull(paths[i][j]);
+                            } else {
+                                assertEquals(expected, paths[i][j].getDegrees());
+                                assertValidPath(graph, paths[i][j], actorIds[i], actorIds[j]);
+                            }
+                        }
+                    }
+                }
+            }
+
+            // With every helper thread busy, e.g. with other batches, a batch is searched by its caller alone
+            ActorGraph graph = ActorGraph.of(creditGraph);
+            CountDownLatch busy = new CountDownLatch(1);
+            for (int thread = 0; thread < 3; thread++) {
+                executor.execute(() -> {
+                    try {
+                        busy.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            int[] actorIds = new int[20];
+            for (int i = 0; i < actorIds.length; i++) {
+                actorIds[i] = random.nextInt(graph.getActorCount());
+            }
+            ActorPath[][] paths = new PairwisePathFinder(new PathFinder(graph), executor, 3).findPaths(actorIds,
+                    QueryDeadline.after(1, TimeUnit.MINUTES));
+            busy.countDown();
+            for (int i = 0; i < actorIds.length; i++) {
+                int expected = breadthFirstDegrees(graph, actorIds[0], actorIds[i]);
+                assertEquals(expected, paths[0][i] == null ? -1 : paths[0][i].getDegrees());
+            }
+
+            QueryDeadline deadline = QueryDeadline.after(1, TimeUnit.MINUTES);
+            deadline.cancel();
+            boolean gotException = false;
+            try {
+                new PairwisePathFinder(new PathFinder(ActorGraph.of(creditGraph)), executor, 3).findPaths(
+                        new int[]{0, 1, 2}, deadline);
+            } catch (QueryTimeoutException e) {
+                gotException = true;
+            }
+            assertTrue(gotException);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertMatchesBreadthFirstSearch(ActorGraph graph, Random random) {
+        PathFinder pathFinder = new PathFinder(graph);
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(graph.getActorCount());
+            int to = random.nextInt(graph.getActorCount());
+            int expected = breadthFirstDegrees(graph, from, to);
+            ActorPath path = pathFinder.findPath(from, to);
+            if (expected < 0) {
+                assertNull(path);
+            } else {
+                assertEquals(expected, path.getDegrees());
+                assertValidPath(graph, path, from, to);
+                assertTrue(graph.getDistanceLowerBound(from, to) <= expected);
+                assertTrue(graph.getDistanceUpperBound(from, to) >= expected);
+            }
+        }
+    }
+
+    /**
+     * Creates a graph from a flat list of names, where names starting with "M" are the movies of the
+     * preceding actor.
+     */
+    static ActorGraph createGraph(String... names) throws Exception {
+        return ActorGraph.of(createCreditGraph(names));
+    }
+
+    static CreditGraph createCreditGraph(String... names) throws Exception {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        String actor = null;
+        List<String> movies = new ArrayList<>();
+        for (String name : names) {
+            if (name.startsWith("M")) {
+                movies.add(name);
+            } else {
+                if (actor != null) {
+                    builder.handle(new ActorCredits(actor, movies));
+                }
+                actor = name;
+                movies = new ArrayList<>();
+            }
+        }
+        builder.handle(new ActorCredits(actor, movies));
+        return builder.build();
+    }
+
+    static String toString(ActorGraph graph, ActorPath path) {
+        StringBuilder sb = new StringBuilder(graph.getActorName(path.getActorId(0)));
+        for (int i = 0; i < path.getDegrees(); i++) {
+            sb.append(' ').append(graph.getMovieName(path.getMovieId(i)));
+            sb.append(' ').append(graph.getActorName(path.getActorId(i + 1)));
+        }
+        return sb.toString();
+    }
+
+    private static void assertValidPath(ActorGraph graph, ActorPath path, int from, int to) {
+        assertEquals(from, path.getActorId(0));
+        assertEquals(to, path.getActorId(path.getDegrees()));
+        for (int i = 0; i < path.getDegrees(); i++) {
+            assertTrue(hasMovie(graph, path.getActorId(i), path.getMovieId(i)));
+            assertTrue(hasMovie(graph, path.getActorId(i + 1), path.getMovieId(i)));
+        }
+    }
+
+    private static boolean hasMovie(ActorGraph graph, int actorId, int movieId) {
+        for (int i = graph.getMoviesStart(actorId); i < graph.getMoviesEnd(actorId); i++) {
+            if (graph.getActorMovie(i) == movieId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Plain one-sided breadth-first search, returning the degrees of separation or -1.
+     */
+    private static int breadthFirstDegrees(ActorGraph graph, int from, int to) {
+        int[] degrees = new int[graph.getActorCount()];
+        Arrays.fill(degrees, -1);
+        degrees[from] = 0;
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            int actorId = queue.poll();
+            if (actorId == to) {
+                return degrees[actorId];
+            }
+            for (int i = graph.getMoviesStart(actorId); i < graph.getMoviesEnd(actorId); i++) {
+                int movieId = graph.getActorMovie(i);
+                for (int j = graph.getActorsStart(movieId); j < graph.getActorsEnd(movieId); j++) {
+                    int coStarId = graph.getMovieActor(j);
+                    if (degrees[coStarId] < 0) {
+                        degrees[coStarId] = degrees[actorId] + 1;
+                        queue.add(coStarId);
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,129 @@
+package com.simone.movielynx.backend;
+
+import com.simone.movielynx.loader.CreditGraph;
+import com.simone.movielynx.loader.HubDistanceIndex;
+import org.apache.commons.io.IOUtils;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for PathHandler, through a running server.
+ */
+public class PathHandlerTest {
+    private static HttpServer server = null;
+    private static QueryExecutor executor = null;
+    private static ExecutorService searchExecutor = null;
+    private static PathCache cache = null;
+    private static int port = 0;
+
+    @BeforeClass
+    public static void staticPrepare() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        CreditGraph creditGraph = PathFinderTest.createCreditGraph(
+                "Foo \"Quoted\" Bar", "M1",
+                "B", "M1", "M2",
+                "C", "M2",
+                "D", "M3",
+                "E", "M3");
+        ActorGraph graph = ActorGraph.of(creditGraph, HubDistanceIndex.compute(creditGraph, new int[]{1}, 1));
+        server = HttpServer.createSimpleServer(null, port);
+        executor = new QueryExecutor(2, 10);
+        cache = new PathCache(100, 0, TimeUnit.SECONDS);
+        PathFinder pathFinder = new PathFinder(graph);
+        server.getServerConfiguration().addHttpHandler(
+                new PathHandler(graph, pathFinder, cache, executor, 10000), "/path");
+        server.getServerConfiguration().addHttpHandler(
+                new DistanceHandler(graph, pathFinder, cache, executor, 10000), "/distance");
+        searchExecutor = Executors.newFixedThreadPool(2);
+        server.getServerConfiguration().addHttpHandler(new PairwisePathHandler(graph,
+                new PairwisePathFinder(pathFinder, searchExecutor, 2), executor, 10000), "/paths");
+        server.start();
+    }
+
+    @AfterClass
+    public static void staticCleanup() {
+        server.shutdownNow();
+        executor.shutdownNow();
+        searchExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testPath() throws Exception {
+        assertEquals("200 {\"from\":\"Foo \\\"Quoted\\\" Bar\",\"to\":\"C\",\"degrees\":2,\"path\":[" +
+                        "{\"actor\":\"Foo \\\"Quoted\\\" Bar\"},{\"movie\":\"M1\"},{\"actor\":\"B\"}," +
+                        "{\"movie\":\"M2\"},{\"actor\":\"C\"}]}",
+                get("/path?from=" + URLEncoder.encode("Foo \"Quoted\" Bar", "UTF-8") + "&to=C"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        assertEquals("400 {\"error\":\"Both from and to must be given\"}", get("/path?from=B"));
+        assertEquals("404 {\"error\":\"Unknown actor: X\"}", get("/path?from=B&to=X"));
+        assertEquals("404 {\"error\":\"No path from B to D\"}", get("/path?from=B&to=D"));
+    }
+
+    @Test
+    public void testDistance() throws Exception {
+        // From the hub B, and between actors the hub isn't connected to
+        assertEquals("200 {\"from\":\"C\",\"to\":\"B\",\"degrees\":1}", get("/distance?from=C&to=B"));
+        assertEquals("200 {\"from\":\"D\",\"to\":\"E\",\"degrees\":1}", get("/distance?from=D&to=E"));
+        assertEquals("200 {\"from\":\"C\",\"to\":\"C\",\"degrees\":0}", get("/distance?from=C&to=C"));
+        assertEquals("404 {\"error\":\"No path from C to D\"}", get("/distance?from=C&to=D"));
+        assertEquals("404 {\"error\":\"Unknown actor: X\"}", get("/distance?from=X&to=D"));
+    }
+
+    @Test
+    public void testPairwisePaths() throws Exception {
+        assertEquals("200 {\"actors\":[\"C\",\"B\",\"D\"],\"degrees\":[[0,1,null],[1,0,null],[null,null,0]]," +
+                "\"paths\":[{\"from\":\"C\",\"to\":\"B\",\"degrees\":1,\"path\":[" +
+                "{\"actor\":\"C\"},{\"movie\":\"M2\"},{\"actor\":\"B\"}]}]}", get("/paths?actor=C&actor=B&actor=D"));
+        assertEquals("200 {\"actors\":[\"D\",\"E\"],\"degrees\":[[0,1],[1,0]]}",
+                get("/paths?actor=D&actor=E&paths=false"));
+        assertEquals("400 {\"error\":\"Between 2 and 100 actor parameters must be given\"}", get("/paths?actor=C"));
+        assertEquals("404 {\"error\":\"Unknown actor: X\"}", get("/paths?actor=C&actor=X"));
+    }
+
+    @Test
+    public void testCachedPath() throws Exception {
+        long hits = cache.getHitCount();
+        assertEquals("200 {\"from\":\"C\",\"to\":\"B\",\"degrees\":1,\"path\":[" +
+                "{\"actor\":\"C\"},{\"movie\":\"M2\"},{\"actor\":\"B\"}]}", get("/path?from=C&to=B"));
+        assertEquals(hits, cache.getHitCount());
+        assertEquals("200 {\"from\":\"B\",\"to\":\"C\",\"degrees\":1,\"path\":[" +
+                "{\"actor\":\"B\"},{\"movie\":\"M2\"},{\"actor\":\"C\"}]}", get("/path?from=B&to=C"));
+        assertEquals(hits + 1, cache.getHitCount());
+    }
+
+    /**
+     * Returns the status code and body of a GET of the given path.
+     */
+    static String get(String path) throws Exception {
+        return get(port, path);
+    }
+
+    /**
+     * Returns the status code and body of a GET of the given path, from the server on the given port.
+     */
+    static String get(int port, String path) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        int status = connection.getResponseCode();
+        try (InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return status + " " + IOUtils.toString(inputStream, "UTF-8");
+        }
+    }
+}
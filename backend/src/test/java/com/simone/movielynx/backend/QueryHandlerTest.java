@@ -0,0 +1,90 @@
+package com.simone.movielynx.backend;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for QueryHandler's executor hand-off, rejection and deadlines, through a running server.
+ */
+public class QueryHandlerTest {
+    private HttpServer server = null;
+    private QueryExecutor executor = null;
+    private int port = 0;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Semaphore started = new Semaphore(0);
+
+    @Before
+    public void prepare() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = HttpServer.createSimpleServer(null, port);
+        executor = new QueryExecutor(1, 1);
+
+        // Blocks until released, then waits for its deadline if asked to
+        server.getServerConfiguration().addHttpHandler(new QueryHandler(executor, 500) {
+            @Override
+            protected void query(Request request, Response response, QueryDeadline deadline)
+                    throws IOException {
+                started.release();
+                try {
+                    release.await();
+                    while (request.getParameter("slow") != null) {
+                        deadline.check();
+                        Thread.sleep(10);
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                sendJson(response, HttpStatus.OK_200, "{}");
+            }
+        }, "/query");
+        server.start();
+    }
+
+    @After
+    public void cleanup() {
+        release.countDown();
+        server.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            // One query running, one queued, so the next one is rejected
+            Future<String> running = clients.submit(() -> PathHandlerTest.get(port, "/query"));
+            started.acquire();
+            Future<String> queued = clients.submit(() -> PathHandlerTest.get(port, "/query"));
+            while (executor.getQueue().isEmpty()) {
+                Thread.sleep(10);
+            }
+            assertEquals("503 {\"error\":\"Too many queries, try again later\"}", PathHandlerTest.get(port, "/query"));
+
+            release.countDown();
+            assertEquals("200 {}", running.get());
+            assertEquals("200 {}", queued.get());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        release.countDown();
+        assertEquals("503 {\"error\":\"Query timed out\"}", PathHandlerTest.get(port, "/query?slow=true"));
+        assertEquals("200 {}", PathHandlerTest.get(port, "/query"));
+    }
+}
@@ -0,0 +1,138 @@
+package com.simone.movielynx.benchmarks;
+
+import com.simone.movielynx.loader.ActorFileParser;
+import com.simone.movielynx.loader.MovieLynxDBLoader;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Generates synthetic actor files in the IMDb actors.list format, so that the benchmarks run offline on data
+ * of any size.
+ * <p>
+ * The shape follows IMDb's: a movie for roughly every three actors, most actors with one or two credits and a
+ * power-law tail of prolific ones, a power-law spread of cast sizes with a few movies of thousands, TV credits
+ * mixed in (which the parser skips), "Last, First (I)" names with a sprinkling of accented letters, and a small
+ * share of names appearing in both actors.list and actresses.list, which the loader merges.  The same size and
+ * seed always give the same files.
+ */
+public class ActorFileGenerator {
+    private final static String HEADER = "THE ACTORS LIST\n==============\n\nName\t\t\tTitles\n";
+    private final static String[] SYLLABLES = {"an", "bel", "car", "do", "el", "fa", "gi", "ho", "is", "jo",
+            "ka", "lu", "ma", "no", "or", "pe", "qui", "ra", "so", "ti", "ul", "va", "wi", "xe", "yo", "z\u00E9",
+            "str\u00F6m", "\u00F1ez"};
+    private final static double CREDIT_EXPONENT = 1.9;
+    private final static int MAX_CREDITS = 3000;
+    private final static double TV_SHARE = 0.3;
+    private final static double DUPLICATE_SHARE = 0.01;
+
+    private final int actorCount;
+    private final int movieCount;
+    private final long seed;
+
+    /**
+     * @param actorCount the number of actors to generate, over both files
+     * @param seed       the seed of the random numbers
+     */
+    public ActorFileGenerator(int actorCount, long seed) {
+        this.actorCount = actorCount;
+        this.movieCount = Math.max(1, actorCount / 3);
+        this.seed = seed;
+    }
+
+    /**
+     * Writes actors.list and actresses.list into the given directory, overwriting any existing ones.
+     */
+    public void write(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create directory " + dir);
+        }
+        Random random = new Random(seed);
+        int actressStart = actorCount * 3 / 5;
+        write(new File(dir, MovieLynxDBLoader.ACTOR_FILES.get(0)), 0, actressStart, random);
+        write(new File(dir, MovieLynxDBLoader.ACTOR_FILES.get(1)), actressStart, actorCount, random);
+    }
+
+    private void write(File file, int fromActor, int toActor, Random random) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                ActorFileParser.ACTOR_FILE_CHARSET), 1 << 16)) {
+            writer.write(HEADER);
+            writer.write("----\t\t\t------\n");
+            for (int actor = fromActor; actor < toActor; actor++) {
+                // A few actors reuse a name from the other file, as happens in IMDb's data
+                int nameActor = random.nextDouble() < DUPLICATE_SHARE ? random.nextInt(actorCount) : actor;
+                writer.write(actorName(nameActor));
+                int creditCount = creditCount(random);
+                for (int i = 0; i < creditCount; i++) {
+                    writer.write(i == 0 ? "\t" : "\t\t\t");
+                    writer.write(credit(random, i));
+                    writer.write('\n');
+                }
+                writer.write('\n');
+            }
+        }
+    }
+
+    private String actorName(int actor) {
+        Random nameRandom = new Random(seed ^ (actor * 0x9E3779B97F4A7C15L));
+        return word(nameRandom) + ", " + word(nameRandom) + " (" + romanNumeral(actor % 3 + 1) + ")";
+    }
+
+    private static String word(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1 + random.nextInt(3); i >= 0; i--) {
+            sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.toString();
+    }
+
+    private static String romanNumeral(int value) {
+        return value == 1 ? "I" : value == 2 ? "II" : "III";
+    }
+
+    /**
+     * Draws a number of credits from a power law: P(count >= k) = k^-(CREDIT_EXPONENT - 1).
+     */
+    private static int creditCount(Random random) {
+        double u = 1 - random.nextDouble();
+        return (int) Math.min(MAX_CREDITS, Math.floor(Math.pow(u, -1 / (CREDIT_EXPONENT - 1))));
+    }
+
+    private String credit(Random random, int index) {
+        if (random.nextDouble() < TV_SHARE) {
+            int show = random.nextInt(movieCount);
+            return "\"Show " + show + "\" (" + year(show) + ") {Episode " + index + " (#1." + index + ")}  [Self]";
+        }
+        // Popular movies are drawn far more often, giving a power-law spread of cast sizes
+        double u = random.nextDouble();
+        int movie = (int) (movieCount * u * u);
+        String title = "Movie Title " + movie + " (" + year(movie) + ")";
+        switch (random.nextInt(4)) {
+            case 0:
+                return title + "  (uncredited)  [Extra]";
+            case 1:
+                return title;
+            default:
+                return title + "  [Character " + index + "]  <" + (index + 1) + ">";
+        }
+    }
+
+    private static int year(int movie) {
+        return 1920 + movie % 98;
+    }
+
+    /**
+     * Writes synthetic actor files: {@code ActorFileGenerator <dir> [actorCount] [seed]}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ActorFileGenerator <dir> [actorCount] [seed]");
+            System.exit(1);
+        }
+        int actorCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        new ActorFileGenerator(actorCount, seed).write(new File(args[0]));
+        System.out.println("Wrote " + actorCount + " actors to " + args[0]);
+    }
+}
@@ -0,0 +1,89 @@
+package com.simone.movielynx.benchmarks;
+
+import com.simone.movielynx.loader.ActorFileParser;
+import com.simone.movielynx.loader.ParallelActorFileParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of parsing actor files: single lines, and whole files sequentially and in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActorFileParserBenchmark {
+
+    @Param("200000")
+    public int actorCount;
+
+    private File dir;
+    private File actorFile;
+    private String[] actorLines;
+    private String[] movieLines;
+    private int nextActorLine = 0;
+    private int nextMovieLine = 0;
+    private final ActorFileParser parser = new ActorFileParser();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchmarkData.generate(actorCount);
+        actorFile = BenchmarkData.getActorFiles(dir).get(0);
+        List<String> actorLineList = new ArrayList<>();
+        List<String> movieLineList = new ArrayList<>();
+        for (String line : Files.readAllLines(actorFile.toPath(), ActorFileParser.ACTOR_FILE_CHARSET)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (!Character.isWhitespace(line.charAt(0)) && line.indexOf('\t') >= 0) {
+                actorLineList.add(line);
+            }
+            movieLineList.add(line);
+        }
+        actorLines = actorLineList.toArray(new String[0]);
+        movieLines = movieLineList.toArray(new String[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public String getActorFromLine() {
+        if (nextActorLine == actorLines.length) {
+            nextActorLine = 0;
+        }
+        return parser.getActorFromLine(actorLines[nextActorLine++]);
+    }
+
+    @Benchmark
+    public String getMovieFromLine() {
+        if (nextMovieLine == movieLines.length) {
+            nextMovieLine = 0;
+        }
+        return parser.getMovieFromLine(movieLines[nextMovieLine++]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void parseMovieList(Blackhole blackhole) throws IOException {
+        parser.parseMovieList(actorFile, blackhole::consume);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void parseMovieListsInParallel(Blackhole blackhole) throws IOException {
+        new ParallelActorFileParser(Runtime.getRuntime().availableProcessors()).parseMovieLists(
+                BenchmarkData.getActorFiles(dir), blackhole::consume);
+    }
+}
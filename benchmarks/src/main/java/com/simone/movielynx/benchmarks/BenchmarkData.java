@@ -0,0 +1,62 @@
+package com.simone.movielynx.benchmarks;
+
+import com.simone.movielynx.loader.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic data shared by the benchmarks' setup, generated into a temporary directory.
+ */
+class BenchmarkData {
+    final static long SEED = 1;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Generates actor files with the given number of actors into a new temporary directory.
+     */
+    static File generate(int actorCount) throws IOException {
+        File dir = Files.createTempDirectory("movielynx-benchmark").toFile();
+        new ActorFileGenerator(actorCount, SEED).write(dir);
+        return dir;
+    }
+
+    static List<File> getActorFiles(File dir) {
+        return MovieLynxDBLoader.findActorFiles(dir);
+    }
+
+    /**
+     * Parses the actor files in the given directory into a list of credits, in file order.
+     */
+    static List<ActorCredits> parseCredits(File dir) throws IOException {
+        List<ActorCredits> credits = new ArrayList<>();
+        new ParallelActorFileParser(Runtime.getRuntime().availableProcessors()).parseMovieLists(
+                getActorFiles(dir), credits::add);
+        return credits;
+    }
+
+    /**
+     * Parses the actor files in the given directory into a credit graph.
+     */
+    static CreditGraph buildCreditGraph(File dir) throws IOException {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        new ParallelActorFileParser(Runtime.getRuntime().availableProcessors()).parseMovieLists(
+                getActorFiles(dir), builder);
+        return builder.build();
+    }
+
+    static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,53 @@
+package com.simone.movielynx.benchmarks;
+
+import com.simone.movielynx.loader.ActorCredits;
+import com.simone.movielynx.loader.CreditGraph;
+import com.simone.movielynx.loader.CreditGraphBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the loader's merge step: building the deduplicated credit graph from parsed credits, merging
+ * actors that appear more than once, and the movie->actor transpose the snapshot and searches need.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CreditGraphBenchmark {
+
+    @Param("200000")
+    public int actorCount;
+
+    private List<ActorCredits> credits;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File dir = BenchmarkData.generate(actorCount);
+        try {
+            credits = BenchmarkData.parseCredits(dir);
+        } finally {
+            BenchmarkData.delete(dir);
+        }
+    }
+
+    @Benchmark
+    public CreditGraph build() {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        for (ActorCredits actorCredits : credits) {
+            builder.handle(actorCredits);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public int[] buildAndTranspose() {
+        return build().getActorIds();
+    }
+}
@@ -0,0 +1,65 @@
+package com.simone.movielynx.benchmarks;
+
+import com.simone.movielynx.backend.ActorGraph;
+import com.simone.movielynx.backend.ActorPath;
+import com.simone.movielynx.backend.PathFinder;
+import com.simone.movielynx.loader.CreditGraph;
+import com.simone.movielynx.loader.HubDistanceIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of shortest-path queries between random pairs of actors, with and without hub distances.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PathFinderBenchmark {
+    private final static int PAIR_COUNT = 4096;
+
+    @Param("200000")
+    public int actorCount;
+
+    @Param({"0", "16"})
+    public int hubCount;
+
+    private PathFinder pathFinder;
+    private int[] fromActorIds;
+    private int[] toActorIds;
+    private int nextPair = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File dir = BenchmarkData.generate(actorCount);
+        CreditGraph creditGraph;
+        try {
+            creditGraph = BenchmarkData.buildCreditGraph(dir);
+        } finally {
+            BenchmarkData.delete(dir);
+        }
+        ActorGraph graph = ActorGraph.of(creditGraph, hubCount == 0 ? null : HubDistanceIndex.compute(creditGraph,
+                HubDistanceIndex.selectHubs(creditGraph, hubCount), Runtime.getRuntime().availableProcessors()));
+        pathFinder = new PathFinder(graph);
+
+        Random random = new Random(BenchmarkData.SEED);
+        fromActorIds = new int[PAIR_COUNT];
+        toActorIds = new int[PAIR_COUNT];
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            fromActorIds[i] = random.nextInt(graph.getActorCount());
+            toActorIds[i] = random.nextInt(graph.getActorCount());
+        }
+    }
+
+    @Benchmark
+    public ActorPath findPath() {
+        int pair = nextPair++ & (PAIR_COUNT - 1);
+        return pathFinder.findPath(fromActorIds[pair], toActorIds[pair]);
+    }
+}
@@ -0,0 +1,35 @@
+package com.simone.movielynx.loader;
+
+import java.util.List;
+
+/**
+ * The movie credits of a single actor, as found in one actor block of an actor file.
+ */
+public class ActorCredits {
+    private final String actor;
+    private final List<String> movies;
+
+    public ActorCredits(String actor, List<String> movies) {
+        this.actor = actor;
+        this.movies = movies;
+    }
+
+    /**
+     * Returns the normalized actor name.
+     */
+    public String getActor() {
+        return actor;
+    }
+
+    /**
+     * Returns the movies of this actor, in the order they appear in the actor file.
+     */
+    public List<String> getMovies() {
+        return movies;
+    }
+
+    @Override
+    public String toString() {
+        return actor + " " + movies;
+    }
+}
@@ -0,0 +1,17 @@
+package com.simone.movielynx.loader;
+
+import java.io.IOException;
+
+/**
+ * Callback used to stream actor credits out of an actor file as they are parsed.
+ */
+public interface ActorCreditsHandler {
+
+    /**
+     * Called once for each actor with at least one movie, as soon as the actor's block has been parsed.
+     *
+     * @param credits the actor's credits
+     * @throws IOException if the handler fails to process the credits
+     */
+    void handle(ActorCredits credits) throws IOException;
+}
@@ -1,15 +1,15 @@
 package com.simone.movielynx.loader;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Class to parse actor files: files of the form here: ftp://ftp.fu-berlin.de/pub/misc/movies/database/actors.list.gz
@@ -19,9 +19,34 @@ import java.util.regex.Pattern;
  * 2) An 'actor' line is of the form: "<name>\t<movie_name> (<date>)
  * 3) A 'movie only' line is of the form: "\t<movie_name> (<date>)
  * 4) Any lines that don't conform to the above format are ignored.
+ * 5) The file is encoded in ISO-8859-1.
+ * <p>
+ * Lines are read into a reusable buffer and tokenized in a single pass by ActorLineTokenizer, so the
+ * only per-line allocations are the actor and movie names themselves.
  */
 public class ActorFileParser {
-    private final static String MOVIE_START_LINE = "----\t\t\t------";
+    /**
+     * The charset of the IMDb actor files.
+     */
+    public final static Charset ACTOR_FILE_CHARSET = StandardCharsets.ISO_8859_1;
+
+    final static String MOVIE_START_LINE = "----\t\t\t------";
+
+    private final LoadMetrics metrics;
+
+    public ActorFileParser() {
+        this(null);
+    }
+
+    /**
+     * Creates a new parser that counts the lines, actors and credits it parses in the parse phase of the given
+     * metrics.
+     *
+     * @param metrics the metrics to count in, or null
+     */
+    public ActorFileParser(LoadMetrics metrics) {
+        this.metrics = metrics;
+    }
 
     /**
      * Given an InputStream to an actor file, parses it and returns a map of actor names to the
@@ -33,46 +58,115 @@ public class ActorFileParser {
      */
     public Map<String, List<String>> parseMovieList(InputStream inputStream) throws IOException {
         Map<String, List<String>> actorToMovieListMap = new HashMap<>();
+        parseMovieList(inputStream, credits -> actorToMovieListMap.put(credits.getActor(), credits.getMovies()));
+        return actorToMovieListMap;
+    }
+
+    /**
+     * Given an InputStream to an actor file, parses it and streams each actor's credits to the given
+     * handler as soon as the next actor line is reached.  Only one actor's credits are held in memory
+     * at a time, regardless of the size of the file.
+     *
+     * @param inputStream the InputStream to the actor file
+     * @param handler     the handler to pass each actor's credits to
+     * @throws IOException if an error occurs reading from the InputStream, or in the handler
+     */
+    public void parseMovieList(InputStream inputStream, ActorCreditsHandler handler) throws IOException {
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-            String line = "";
+            LineReader reader = new CharLineReader(new InputStreamReader(inputStream, ACTOR_FILE_CHARSET));
+            if (skipToMovieList(reader)) {
+                parseActorBlocks(reader, handler);
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
 
-            // First locate the "movie start" start
-            boolean isStartMovieList = false;
-            while (!isStartMovieList && (line = reader.readLine()) != null) {
-                isStartMovieList = isMovieStartLine(line);
+    /**
+     * Given an actor file, memory maps it and streams each actor's credits to the given handler as soon as
+     * the next actor line is reached.  Gives the same results as parsing a FileInputStream to the file,
+     * without going through the InputStreamReader/BufferedReader stack.
+     *
+     * @param actorFile the actor file
+     * @param handler   the handler to pass each actor's credits to
+     * @throws IOException if an error occurs reading the file, or in the handler
+     */
+    public void parseMovieList(File actorFile, ActorCreditsHandler handler) throws IOException {
+        try (MappedActorFile mappedFile = new MappedActorFile(actorFile)) {
+            LineReader reader = new MappedLineReader(mappedFile, 0, mappedFile.size());
+            if (skipToMovieList(reader)) {
+                parseActorBlocks(reader, handler);
             }
+        }
+    }
 
-            // Iterate through rest of the file, building up a movie list for each actor
-            String currActor = null;
-            List<String> currActorMovieList = null;
-            while ((line = reader.readLine()) != null) {
-                String lineActor = getActorFromLine(line);
-                String lineMovie = getMovieFromLine(line);
-                // Starting a new actor
-                if (lineActor != null) {
-                    // When starting a new actor, add the previous actor to the map
-                    if (currActor != null && currActorMovieList.size() > 0) {
-                        actorToMovieListMap.put(currActor, currActorMovieList);
-                    }
-                    currActor = lineActor;
-                    currActorMovieList = new ArrayList<>();
-                }
+    /**
+     * Reads lines up to and including the "movie start" line.
+     *
+     * @return whether the "movie start" line was found
+     */
+    boolean skipToMovieList(LineReader reader) throws IOException {
+        while (reader.readLine()) {
+            if (isMovieStartLine(reader.getLine(), reader.getLength())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                if (lineMovie != null && currActorMovieList != null) {
-                    currActorMovieList.add(lineMovie);
+    /**
+     * Parses a LineReader positioned past the "movie start" line, such as one over a chunk of an actor file
+     * that starts at an actor line, streaming each actor's credits to the given handler.
+     *
+     * @param reader  the reader over the actor lines
+     * @param handler the handler to pass each actor's credits to
+     * @throws IOException if an error occurs reading the lines, or in the handler
+     */
+    void parseActorBlocks(LineReader reader, ActorCreditsHandler handler) throws IOException {
+        ActorLineTokenizer tokenizer = new ActorLineTokenizer();
+
+        // Iterate through rest of the file, building up a movie list for each actor
+        String currActor = null;
+        List<String> currActorMovieList = null;
+        long lines = 0;
+        long actors = 0;
+        long credits = 0;
+        while (reader.readLine()) {
+            lines++;
+            if (!tokenizer.tokenize(reader.getLine(), reader.getLength())) {
+                continue;
+            }
+            String lineActor = tokenizer.getActor();
+            String lineMovie = tokenizer.getMovie();
+            // Starting a new actor
+            if (lineActor != null) {
+                // When starting a new actor, hand off the previous actor
+                if (currActor != null && currActorMovieList.size() > 0) {
+                    handler.handle(new ActorCredits(currActor, currActorMovieList));
+                    actors++;
+                    credits += currActorMovieList.size();
                 }
+                currActor = lineActor;
+                currActorMovieList = new ArrayList<>();
             }
 
-            // Add the final actor to the map
-            if (currActorMovieList != null && currActorMovieList.size() > 0) {
-                actorToMovieListMap.put(currActor, currActorMovieList);
+            if (lineMovie != null && currActorMovieList != null) {
+                currActorMovieList.add(lineMovie);
             }
-        } finally {
-            inputStream.close();
         }
 
-        return actorToMovieListMap;
+        // Hand off the final actor
+        if (currActorMovieList != null && currActorMovieList.size() > 0) {
+            handler.handle(new ActorCredits(currActor, currActorMovieList));
+            actors++;
+            credits += currActorMovieList.size();
+        }
+        if (metrics != null) {
+            LoadMetrics.Phase parse = metrics.getPhase(LoadMetrics.PARSE);
+            parse.addLines(lines);
+            parse.addActors(actors);
+            parse.addCredits(credits);
+        }
     }
 
 
@@ -87,28 +181,7 @@ public class ActorFileParser {
         if (line == null || line.length() == 0) {
             return null;
         }
-
-        // Actor line must start with a non-whitespace character
-        if (Character.isWhitespace(line.charAt(0))) {
-            return null;
-        }
-
-        // Actor name ends at the first occurrence of a tab
-        int tabIndex = line.indexOf("\t");
-        if (tabIndex < 0) {
-            return null;
-        }
-        String rawActorName = line.substring(0, tabIndex);
-
-        // If the raw actor name has a comma, use that to determine first and last name
-        if (rawActorName.indexOf(",") >= 0) {
-            int commaIndex = rawActorName.indexOf(",");
-            String lastName = rawActorName.substring(0, commaIndex);
-            String firstName = rawActorName.substring(commaIndex + 1);
-            return firstName.trim() + " " + lastName.trim();
-        } else {
-            return rawActorName;
-        }
+        return new ActorLineTokenizer().actorFromLine(line.toCharArray(), line.length());
     }
 
     /**
@@ -122,33 +195,7 @@ public class ActorFileParser {
         if (line == null || line.length() == 0) {
             return null;
         }
-
-        // First locate the long movie part of the line
-        String longMoviePart = null;
-
-        // Whitespace at the beginning means this is not an actor line
-        if (Character.isWhitespace(line.charAt(0))) {
-            longMoviePart = line.trim();
-        }
-        // Otherwise, remove the actor portion
-        else {
-            int tabIndex = line.indexOf("\t");
-            if (tabIndex < 0) {
-                return null;
-            }
-            longMoviePart = line.substring(tabIndex).trim();
-        }
-
-        // If the movie part starts with a quote, then it's a TV show, and we will disregard it
-        if (longMoviePart.startsWith("\"")) {
-            return null;
-        }
-        Pattern pattern = Pattern.compile("(.*) (\\(\\d+\\))(.*)");
-        Matcher matcher = pattern.matcher(longMoviePart);
-        if (matcher.matches()) {
-            return matcher.group(1);
-        }
-        return null;
+        return new ActorLineTokenizer().movieFromLine(line.toCharArray(), line.length());
     }
 
     /**
@@ -160,4 +207,16 @@ public class ActorFileParser {
     public boolean isMovieStartLine(String line) {
         return line != null && line.equals(MOVIE_START_LINE);
     }
+
+    private boolean isMovieStartLine(char[] line, int length) {
+        if (length != MOVIE_START_LINE.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (line[i] != MOVIE_START_LINE.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,197 @@
+package com.simone.movielynx.loader;
+
+/**
+ * Single-pass tokenizer for the lines of an actor file.
+ * <p>
+ * Works directly on a char buffer using index arithmetic, so the only objects created per line are the
+ * actor and movie Strings that are actually returned.  The rules are the same ones ActorFileParser has
+ * always applied:
+ * 1) An 'actor' line starts with a non-whitespace character, and the actor name ends at the first tab.
+ * A "Last, First" name is normalized to "First Last".
+ * 2) The movie part of a line is everything after the actor name (or the whole line for a 'movie only'
+ * line), trimmed.  Movie parts starting with a quote are TV shows and are ignored.
+ * 3) The movie name is everything up to and including the last " (<year>)" group of the movie part, where
+ * the year is either digits or "????" for an unknown year, optionally followed by IMDb's "/I", "/II", ...
+ * disambiguator.  Keeping the year and disambiguator keeps remakes and same-titled movies apart, and the
+ * result is IMDb's own unique movie title, e.g. "Hamlet (1948)" or "Crash (2004/I)".  Anything after the
+ * group, like roles and billing, is dropped.
+ * <p>
+ * Instances keep a scratch buffer between calls and are not thread-safe.
+ */
+class ActorLineTokenizer {
+    private char[] scratch = new char[128];
+    private String actor = null;
+    private String movie = null;
+
+    /**
+     * Tokenizes the given line, making its actor and movie available through getActor() and getMovie().
+     *
+     * @param line   the buffer holding the line
+     * @param length the length of the line
+     * @return whether the line contained either an actor or a movie
+     */
+    boolean tokenize(char[] line, int length) {
+        actor = null;
+        movie = null;
+        if (length == 0) {
+            return false;
+        }
+
+        int movieStart = 0;
+        if (!Character.isWhitespace(line[0])) {
+            int tabIndex = indexOf(line, '\t', 0, length);
+            if (tabIndex < 0) {
+                return false;
+            }
+            actor = buildActor(line, tabIndex);
+            movieStart = tabIndex;
+        }
+        movie = buildMovie(line, movieStart, length);
+        return actor != null || movie != null;
+    }
+
+    /**
+     * Returns the actor of the last tokenized line, or null if it was not an actor line.
+     */
+    String getActor() {
+        return actor;
+    }
+
+    /**
+     * Returns the movie of the last tokenized line, or null if it contained no movie.
+     */
+    String getMovie() {
+        return movie;
+    }
+
+    /**
+     * Returns the actor contained in the given line, or null if it is not an actor line.
+     */
+    String actorFromLine(char[] line, int length) {
+        if (length == 0 || Character.isWhitespace(line[0])) {
+            return null;
+        }
+        int tabIndex = indexOf(line, '\t', 0, length);
+        return tabIndex < 0 ? null : buildActor(line, tabIndex);
+    }
+
+    /**
+     * Returns the movie contained in the given line, or null if it contains no movie.
+     */
+    String movieFromLine(char[] line, int length) {
+        if (length == 0) {
+            return null;
+        }
+        int movieStart = 0;
+        if (!Character.isWhitespace(line[0])) {
+            movieStart = indexOf(line, '\t', 0, length);
+            if (movieStart < 0) {
+                return null;
+            }
+        }
+        return buildMovie(line, movieStart, length);
+    }
+
+    private String buildActor(char[] line, int tabIndex) {
+        int commaIndex = indexOf(line, ',', 0, tabIndex);
+        if (commaIndex < 0) {
+            return new String(line, 0, tabIndex);
+        }
+
+        // "Last, First" becomes "First Last", with both halves trimmed
+        int lastStart = trimStart(line, 0, commaIndex);
+        int lastEnd = trimEnd(line, lastStart, commaIndex);
+        int firstStart = trimStart(line, commaIndex + 1, tabIndex);
+        int firstEnd = trimEnd(line, firstStart, tabIndex);
+        int firstLength = firstEnd - firstStart;
+        int lastLength = lastEnd - lastStart;
+        int nameLength = firstLength + 1 + lastLength;
+        if (nameLength > scratch.length) {
+            scratch = new char[Math.max(scratch.length * 2, nameLength)];
+        }
+        System.arraycopy(line, firstStart, scratch, 0, firstLength);
+        scratch[firstLength] = ' ';
+        System.arraycopy(line, lastStart, scratch, firstLength + 1, lastLength);
+        return new String(scratch, 0, nameLength);
+    }
+
+    private String buildMovie(char[] line, int from, int to) {
+        int start = trimStart(line, from, to);
+        int end = trimEnd(line, start, to);
+        if (start == end || line[start] == '"') {
+            return null;
+        }
+
+        // Scan backwards for the last " (<year>[/<disambiguator>])" group; the movie is everything up to its
+        // closing parenthesis.  A line terminator anywhere in the movie part means no match.
+        int movieEnd = -1;
+        for (int i = end - 1; i >= start; i--) {
+            char c = line[i];
+            if (isLineTerminator(c)) {
+                return null;
+            }
+            if (movieEnd < 0 && c == ')' && isYearGroup(line, start, i)) {
+                movieEnd = i + 1;
+            }
+        }
+        return movieEnd < 0 ? null : new String(line, start, movieEnd - start);
+    }
+
+    /**
+     * Returns whether the given closing parenthesis ends a " (<year>[/<disambiguator>])" group, with a
+     * non-empty title before it.
+     */
+    private static boolean isYearGroup(char[] line, int start, int closeIndex) {
+        int yearEnd = closeIndex;
+        int romanStart = closeIndex;
+        while (romanStart > start && MovieKey.isRomanDigit(line[romanStart - 1])) {
+            romanStart--;
+        }
+        if (romanStart < closeIndex && romanStart - 1 > start && line[romanStart - 1] == '/') {
+            yearEnd = romanStart - 1;
+        }
+        int yearStart = yearEnd;
+        if (yearEnd - 4 > start && line[yearEnd - 1] == '?' && line[yearEnd - 2] == '?' &&
+                line[yearEnd - 3] == '?' && line[yearEnd - 4] == '?') {
+            yearStart = yearEnd - 4;
+        } else {
+            while (yearStart > start && isDigit(line[yearStart - 1])) {
+                yearStart--;
+            }
+        }
+        int openIndex = yearStart - 1;
+        return yearStart < yearEnd && openIndex - 1 > start && line[openIndex] == '(' && line[openIndex - 1] == ' ';
+    }
+
+    private static int indexOf(char[] line, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Same definition of whitespace as String.trim()
+    private static int trimStart(char[] line, int from, int to) {
+        while (from < to && line[from] <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(char[] line, int from, int to) {
+        while (to > from && line[to - 1] <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -0,0 +1,90 @@
+package com.simone.movielynx.loader;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * LineReader over a Reader, for actor data that is only available as a stream.
+ */
+class CharLineReader implements LineReader {
+    private final static int CHUNK_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] chunk = new char[CHUNK_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean skipLineFeed = false;
+
+    private char[] line = new char[256];
+    private int length = 0;
+
+    CharLineReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean readLine() throws IOException {
+        length = 0;
+        while (true) {
+            if (position >= limit) {
+                limit = reader.read(chunk, 0, chunk.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return length > 0;
+                }
+            }
+
+            // Second half of a "\r\n" pair that straddled two chunks
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (chunk[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+
+            int start = position;
+            while (position < limit && chunk[position] != '\n' && chunk[position] != '\r') {
+                position++;
+            }
+            append(start, position);
+
+            if (position < limit) {
+                skipLineFeed = chunk[position] == '\r';
+                position++;
+                if (skipLineFeed && position < limit) {
+                    skipLineFeed = false;
+                    if (chunk[position] == '\n') {
+                        position++;
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public char[] getLine() {
+        return line;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    private void append(int start, int end) {
+        int count = end - start;
+        if (count == 0) {
+            return;
+        }
+        if (length + count > line.length) {
+            char[] grown = new char[Math.max(line.length * 2, length + count)];
+            System.arraycopy(line, 0, grown, 0, length);
+            line = grown;
+        }
+        System.arraycopy(chunk, start, line, length, count);
+        length += count;
+    }
+}
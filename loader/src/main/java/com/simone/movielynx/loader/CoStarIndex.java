@@ -0,0 +1,227 @@
+package com.simone.movielynx.loader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * The actor->actor co-star graph of a CreditGraph: for every actor, the other actors credited in any of the
+ * same movies, each weighted by the number of movies they share.
+ * <p>
+ * The co-stars are computed as the sparse self-join of the credits with their movie->actor transpose, one
+ * block of actors per task: each actor's movies' casts are counted into a dense per-thread array of weights,
+ * and only the entries touched are read back and cleared, so every actor costs time proportional to its
+ * co-star credits rather than to the number of actors.  Movies with more than maxCastSize actors, such as
+ * documentaries and compilations, would add an edge between every pair of their actors, so they're left out
+ * of the join altogether.
+ * <p>
+ * The co-stars are held in compressed sparse row form, like the credits: the co-stars of actor {@code a} are
+ * {@code coStarIds[offsets[a]]} up to (but excluding) {@code coStarIds[offsets[a + 1]]}, with their weights
+ * at the same indexes of weights.  Each actor's co-stars are sorted by descending weight, then by actor ID,
+ * so an actor's top co-stars are the start of its row.
+ */
+public class CoStarIndex {
+    private final static int ACTORS_PER_TASK = 4096;
+
+    private final int maxCastSize;
+    private final int[] offsets;
+    private final int[] coStarIds;
+    private final int[] weights;
+
+    /**
+     * @param maxCastSize the largest cast of the movies that were joined
+     * @param offsets     the offsets of each actor's co-stars in coStarIds, with actorCount + 1 entries
+     * @param coStarIds   the actor IDs of each actor's co-stars
+     * @param weights     the number of movies each actor shares with each of its co-stars
+     */
+    public CoStarIndex(int maxCastSize, int[] offsets, int[] coStarIds, int[] weights) {
+        if (offsets.length == 0 || offsets[offsets.length - 1] != coStarIds.length ||
+                coStarIds.length != weights.length) {
+            throw new IllegalArgumentException("Co-star offsets don't match " + coStarIds.length + " co-stars");
+        }
+        this.maxCastSize = maxCastSize;
+        this.offsets = offsets;
+        this.coStarIds = coStarIds;
+        this.weights = weights;
+    }
+
+    /**
+     * Computes the co-stars of every actor of the given graph, joining the casts of movies of up to the given
+     * number of actors, with up to the given number of threads.
+     */
+    public static CoStarIndex compute(CreditGraph graph, int maxCastSize, int parallelism) throws IOException {
+        if (maxCastSize < 2) {
+            throw new IllegalArgumentException("Invalid maximum cast size: " + maxCastSize);
+        }
+        // Build the shared movie->actor transpose once, before the tasks need it
+        graph.getActorIds();
+        int actorCount = graph.getActorCount();
+        ThreadLocal<int[]> threadWeights = ThreadLocal.withInitial(() -> new int[actorCount]);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            List<Future<Block>> futures = new ArrayList<>();
+            for (int start = 0; start < actorCount; start += ACTORS_PER_TASK) {
+                int blockStart = start;
+                int blockEnd = Math.min(actorCount, start + ACTORS_PER_TASK);
+                futures.add(executor.submit(() -> join(graph, maxCastSize, blockStart, blockEnd,
+                        threadWeights.get())));
+            }
+
+            int[] offsets = new int[actorCount + 1];
+            List<Block> blocks = new ArrayList<>(futures.size());
+            long coStarCount = 0;
+            for (Future<Block> future : futures) {
+                Block block = future.get();
+                for (int i = 0; i < block.counts.length; i++) {
+                    coStarCount += block.counts[i];
+                    if (coStarCount > Integer.MAX_VALUE - 8) {
+                        throw new IOException("Too many co-stars, lower the maximum cast size: " + maxCastSize);
+                    }
+                    offsets[block.start + i + 1] = (int) coStarCount;
+                }
+                blocks.add(block);
+            }
+            int[] coStarIds = new int[(int) coStarCount];
+            int[] weights = new int[(int) coStarCount];
+            for (Block block : blocks) {
+                System.arraycopy(block.coStarIds, 0, coStarIds, offsets[block.start], block.size);
+                System.arraycopy(block.weights, 0, weights, offsets[block.start], block.size);
+            }
+            return new CoStarIndex(maxCastSize, offsets, coStarIds, weights);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted computing co-stars", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error computing co-stars", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the largest cast of the movies that were joined.
+     */
+    public int getMaxCastSize() {
+        return maxCastSize;
+    }
+
+    public int getActorCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the total number of co-star entries, which counts every pair of co-stars twice.
+     */
+    public int getCoStarCount() {
+        return coStarIds.length;
+    }
+
+    /**
+     * Returns the index in getCoStarIds() of the given actor's first co-star.
+     */
+    public int getCoStarsStart(int actorId) {
+        return offsets[actorId];
+    }
+
+    /**
+     * Returns the index in getCoStarIds() just past the given actor's last co-star.
+     */
+    public int getCoStarsEnd(int actorId) {
+        return offsets[actorId + 1];
+    }
+
+    /**
+     * Returns the offsets of all actors' co-stars, with getActorCount() + 1 entries.  The array is shared, and
+     * must not be modified.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the actor IDs of all co-stars, grouped by actor.  The array is shared, and must not be modified.
+     */
+    public int[] getCoStarIds() {
+        return coStarIds;
+    }
+
+    /**
+     * Returns the number of shared movies of all co-stars, at the same indexes as getCoStarIds().  The array is
+     * shared, and must not be modified.
+     */
+    public int[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * Joins the casts of the movies of the given block of actors, counting shared movies in the given array,
+     * which must be all zeroes, and is left that way.
+     */
+    private static Block join(CreditGraph graph, int maxCastSize, int start, int end, int[] weights) {
+        int[] movieIds = graph.getMovieIds();
+        int[] movieCreditOffsets = graph.getMovieCreditOffsets();
+        int[] actorIds = graph.getActorIds();
+        Block block = new Block(start, end - start);
+        int[] touched = new int[16];
+        for (int actorId = start; actorId < end; actorId++) {
+            int touchedCount = 0;
+            for (int i = graph.getCreditStart(actorId); i < graph.getCreditEnd(actorId); i++) {
+                int movieId = movieIds[i];
+                if (movieCreditOffsets[movieId + 1] - movieCreditOffsets[movieId] > maxCastSize) {
+                    continue;
+                }
+                for (int j = movieCreditOffsets[movieId]; j < movieCreditOffsets[movieId + 1]; j++) {
+                    int coStarId = actorIds[j];
+                    if (coStarId != actorId && weights[coStarId]++ == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = coStarId;
+                    }
+                }
+            }
+
+            // Sort by descending weight, then by ID, as longs of (MAX_VALUE - weight, ID)
+            long[] sortKeys = new long[touchedCount];
+            for (int i = 0; i < touchedCount; i++) {
+                sortKeys[i] = ((long) (Integer.MAX_VALUE - weights[touched[i]]) << 32) | touched[i];
+                weights[touched[i]] = 0;
+            }
+            Arrays.sort(sortKeys);
+            block.add(actorId, sortKeys);
+        }
+        return block;
+    }
+
+    /**
+     * The co-stars of one block of actors.
+     */
+    private static class Block {
+        final int start;
+        final int[] counts;
+        int[] coStarIds = new int[256];
+        int[] weights = new int[256];
+        int size = 0;
+
+        Block(int start, int actorCount) {
+            this.start = start;
+            this.counts = new int[actorCount];
+        }
+
+        void add(int actorId, long[] sortKeys) {
+            if (size + sortKeys.length > coStarIds.length) {
+                int capacity = (int) Math.max(size + sortKeys.length, Math.min(Integer.MAX_VALUE - 8,
+                        coStarIds.length * 2L));
+                coStarIds = Arrays.copyOf(coStarIds, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            for (long sortKey : sortKeys) {
+                coStarIds[size] = (int) sortKey;
+                weights[size++] = Integer.MAX_VALUE - (int) (sortKey >>> 32);
+            }
+            counts[actorId - start] = sortKeys.length;
+        }
+    }
+}
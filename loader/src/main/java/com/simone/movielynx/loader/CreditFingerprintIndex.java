@@ -0,0 +1,202 @@
+package com.simone.movielynx.loader;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A compact index of one 64-bit fingerprint per actor, used to find the actors whose credits changed between
+ * two loads.
+ * <p>
+ * Each entry is a pair of 64-bit hashes: one of the actor's name, and one of the actor's set of movie names.
+ * The credit hash is the sum of the hashes of the individual movies, so it doesn't depend on the order the
+ * movies appear in, or on the movie IDs of a particular run.  Entries are kept sorted by actor hash, so that
+ * lookups are a binary search and the index is stored on disk as-is, at 16 bytes per actor.  Two actors whose
+ * names hash to the same 64-bit value are assumed not to happen.
+ */
+public class CreditFingerprintIndex {
+    private final static int MAGIC = 0x4D4C4650;
+    private final static int VERSION = 1;
+
+    private final long[] actorHashes;
+    private final long[] creditHashes;
+
+    private CreditFingerprintIndex(long[] actorHashes, long[] creditHashes) {
+        this.actorHashes = actorHashes;
+        this.creditHashes = creditHashes;
+    }
+
+    /**
+     * Fingerprints every actor of the given graph.
+     */
+    public static CreditFingerprintIndex of(CreditGraph graph) {
+        long[] movieHashes = new long[graph.getMovieCount()];
+        for (int movieId = 0; movieId < movieHashes.length; movieId++) {
+            movieHashes[movieId] = hash(graph.getMovieName(movieId));
+        }
+
+        long[] actorHashes = new long[graph.getActorCount()];
+        long[] creditHashes = new long[graph.getActorCount()];
+        int[] movieIds = graph.getMovieIds();
+        for (int actorId = 0; actorId < actorHashes.length; actorId++) {
+            actorHashes[actorId] = hash(graph.getActorName(actorId));
+            long creditHash = 0;
+            for (int i = graph.getCreditStart(actorId); i < graph.getCreditEnd(actorId); i++) {
+                creditHash += movieHashes[movieIds[i]];
+            }
+            creditHashes[actorId] = creditHash;
+        }
+        sort(actorHashes, creditHashes, 0, actorHashes.length - 1);
+        return new CreditFingerprintIndex(actorHashes, creditHashes);
+    }
+
+    /**
+     * Reads an index written by write().
+     *
+     * @param file the file to read
+     * @throws IOException if the file can't be read, or isn't a fingerprint index
+     */
+    public static CreditFingerprintIndex read(File file) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (inputStream.readInt() != MAGIC) {
+                throw new IOException("Not a fingerprint index: " + file);
+            }
+            int version = inputStream.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported fingerprint index version " + version + ": " + file);
+            }
+            int size = inputStream.readInt();
+            long[] actorHashes = new long[size];
+            long[] creditHashes = new long[size];
+            for (int i = 0; i < size; i++) {
+                actorHashes[i] = inputStream.readLong();
+                creditHashes[i] = inputStream.readLong();
+            }
+            return new CreditFingerprintIndex(actorHashes, creditHashes);
+        }
+    }
+
+    /**
+     * Writes this index to the given file, replacing it only once the whole index has been written.
+     *
+     * @param file the file to write
+     * @throws IOException if the file can't be written
+     */
+    public void write(File file) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmpFile)))) {
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+            outputStream.writeInt(actorHashes.length);
+            for (int i = 0; i < actorHashes.length; i++) {
+                outputStream.writeLong(actorHashes[i]);
+                outputStream.writeLong(creditHashes[i]);
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Returns the number of actors in this index.
+     */
+    public int size() {
+        return actorHashes.length;
+    }
+
+    /**
+     * Returns the IDs of the actors of the given graph, which this index was built from, that are missing from
+     * the given previous index or have different credits there.
+     */
+    public int[] getChangedActors(CreditGraph graph, CreditFingerprintIndex previous) {
+        int[] changed = new int[graph.getActorCount()];
+        int count = 0;
+        for (int actorId = 0; actorId < graph.getActorCount(); actorId++) {
+            long actorHash = hash(graph.getActorName(actorId));
+            int previousIndex = Arrays.binarySearch(previous.actorHashes, actorHash);
+            if (previousIndex < 0 ||
+                    previous.creditHashes[previousIndex] != creditHashes[Arrays.binarySearch(actorHashes, actorHash)]) {
+                changed[count++] = actorId;
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Returns the hashes of the actors in the given previous index that are missing from this index, sorted.
+     */
+    public long[] getRemovedActors(CreditFingerprintIndex previous) {
+        long[] removed = new long[previous.size()];
+        int count = 0;
+        for (long actorHash : previous.actorHashes) {
+            if (!containsActor(actorHash)) {
+                removed[count++] = actorHash;
+            }
+        }
+        return Arrays.copyOf(removed, count);
+    }
+
+    /**
+     * Returns whether this index has an entry for the actor with the given name hash.
+     */
+    public boolean containsActor(long actorHash) {
+        return Arrays.binarySearch(actorHashes, actorHash) >= 0;
+    }
+
+    /**
+     * Returns the 64-bit hash of the given name, as used for both actor and movie names.
+     */
+    public static long hash(String name) {
+        // FNV-1a over the chars, followed by a final avalanche so that sums of hashes stay well distributed
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Sorts keys[from..to], inclusive, moving values along with their keys.
+     */
+    private static void sort(long[] keys, long[] values, int from, int to) {
+        while (from < to) {
+            long pivot = keys[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, i, j);
+                    swap(values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half, and loop on the larger one
+            if (j - from < to - i) {
+                sort(keys, values, from, j);
+                from = i;
+            } else {
+                sort(keys, values, i, to);
+                to = j;
+            }
+        }
+    }
+
+    private static void swap(long[] array, int i, int j) {
+        long tmp = array[i];
+        array[i] = array[j];
+        array[j] = tmp;
+    }
+}
@@ -0,0 +1,143 @@
+package com.simone.movielynx.loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The actor->movie credits of the actor files, with actors and movies identified by dense int IDs.
+ * <p>
+ * Credits are kept in compressed sparse row form: the movie IDs of actor {@code a} are
+ * {@code movieIds[creditOffsets[a]]} up to (but excluding) {@code movieIds[creditOffsets[a + 1]]}, so the
+ * whole graph is two int arrays plus one copy of each name.  Each actor's movie IDs are sorted and distinct.
+ * Instances are immutable apart from a lazily built movie->actor transpose, and are built with
+ * CreditGraphBuilder.
+ */
+public class CreditGraph {
+    private final String[] actorNames;
+    private final String[] movieNames;
+    private final int[] creditOffsets;
+    private final int[] movieIds;
+    private int[] movieCreditOffsets = null;
+    private int[] actorIds = null;
+
+    CreditGraph(String[] actorNames, String[] movieNames, int[] creditOffsets, int[] movieIds) {
+        this.actorNames = actorNames;
+        this.movieNames = movieNames;
+        this.creditOffsets = creditOffsets;
+        this.movieIds = movieIds;
+    }
+
+    /**
+     * Returns the number of actors, whose IDs are 0 to getActorCount() - 1.
+     */
+    public int getActorCount() {
+        return actorNames.length;
+    }
+
+    /**
+     * Returns the number of movies, whose IDs are 0 to getMovieCount() - 1.
+     */
+    public int getMovieCount() {
+        return movieNames.length;
+    }
+
+    /**
+     * Returns the total number of credits.
+     */
+    public int getCreditCount() {
+        return movieIds.length;
+    }
+
+    public String getActorName(int actorId) {
+        return actorNames[actorId];
+    }
+
+    public String getMovieName(int movieId) {
+        return movieNames[movieId];
+    }
+
+    /**
+     * Returns the index in getMovieIds() of the given actor's first credit.
+     */
+    public int getCreditStart(int actorId) {
+        return creditOffsets[actorId];
+    }
+
+    /**
+     * Returns the index in getMovieIds() just past the given actor's last credit.
+     */
+    public int getCreditEnd(int actorId) {
+        return creditOffsets[actorId + 1];
+    }
+
+    /**
+     * Returns the movie IDs of all credits, grouped by actor.  The array is shared, and must not be modified.
+     */
+    public int[] getMovieIds() {
+        return movieIds;
+    }
+
+    /**
+     * Returns the offsets of all actors' credits in getMovieIds(), with getActorCount() + 1 entries.  The
+     * array is shared, and must not be modified.
+     */
+    public int[] getCreditOffsets() {
+        return creditOffsets;
+    }
+
+    /**
+     * Returns the offsets of all movies' credits in getActorIds(), with getMovieCount() + 1 entries, for
+     * traversing the graph from movies to actors.  The array is shared, and must not be modified.
+     */
+    public synchronized int[] getMovieCreditOffsets() {
+        if (movieCreditOffsets == null) {
+            transpose();
+        }
+        return movieCreditOffsets;
+    }
+
+    /**
+     * Returns the actor IDs of all credits, grouped by movie, with each movie's actor IDs sorted.  The array is
+     * shared, and must not be modified.
+     */
+    public synchronized int[] getActorIds() {
+        if (actorIds == null) {
+            transpose();
+        }
+        return actorIds;
+    }
+
+    /**
+     * Returns the given actor's credits by name, for writers that work with names.
+     */
+    public ActorCredits getActorCredits(int actorId) {
+        List<String> movies = new ArrayList<>(getCreditEnd(actorId) - getCreditStart(actorId));
+        for (int i = getCreditStart(actorId); i < getCreditEnd(actorId); i++) {
+            movies.add(movieNames[movieIds[i]]);
+        }
+        return new ActorCredits(actorNames[actorId], movies);
+    }
+
+    /**
+     * Builds the movie->actor transpose of the credits, with a counting sort by movie.
+     */
+    private void transpose() {
+        int[] offsets = new int[movieNames.length + 1];
+        for (int movieId : movieIds) {
+            offsets[movieId + 1]++;
+        }
+        for (int movieId = 0; movieId < movieNames.length; movieId++) {
+            offsets[movieId + 1] += offsets[movieId];
+        }
+        int[] ids = new int[movieIds.length];
+        int[] next = Arrays.copyOf(offsets, movieNames.length);
+        for (int actorId = 0; actorId < actorNames.length; actorId++) {
+            for (int i = creditOffsets[actorId]; i < creditOffsets[actorId + 1]; i++) {
+                ids[next[movieIds[i]]++] = actorId;
+            }
+        }
+        movieCreditOffsets = offsets;
+        actorIds = ids;
+    }
+}
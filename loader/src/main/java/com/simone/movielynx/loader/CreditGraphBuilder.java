@@ -0,0 +1,122 @@
+package com.simone.movielynx.loader;
+
+import java.util.Arrays;
+
+/**
+ * Builds a CreditGraph from parsed actor credits, interning every actor and movie name as it goes so that
+ * each distinct name is kept only once.
+ * <p>
+ * If the same actor is handled more than once, as happens when a name appears in both actors.list and
+ * actresses.list, the actor's credits are the union of all the credits handled for it.  Credits are only
+ * appended while parsing; they are grouped by actor, sorted and de-duplicated once, in build().  Every row of
+ * the graph is therefore the sorted set of the actor's movie IDs, regardless of how the credits were split
+ * across files or parse threads.
+ * <p>
+ * Instances are not thread-safe, but the parsers only ever call handlers from a single thread.
+ */
+public class CreditGraphBuilder implements ActorCreditsHandler {
+    private final static int INITIAL_CAPACITY = 1024;
+
+    private final NameInterner actors = new NameInterner();
+    private final NameInterner movies = new NameInterner();
+
+    // Actor and movie IDs of all handled credits, in the order they were handled
+    private int[] creditActors = new int[INITIAL_CAPACITY];
+    private int[] creditMovies = new int[INITIAL_CAPACITY];
+    private int creditCount = 0;
+
+    private int[] actorCreditCounts = new int[INITIAL_CAPACITY];
+    private long collisionCount = 0;
+
+    /**
+     * Adds the given actor's credits to any earlier credits for the same actor.
+     *
+     * @param actorCredits the actor's credits
+     */
+    @Override
+    public void handle(ActorCredits actorCredits) {
+        int actorId = actors.intern(actorCredits.getActor());
+        if (actorId == actorCreditCounts.length) {
+            actorCreditCounts = Arrays.copyOf(actorCreditCounts, actorId * 2);
+        }
+        int newCreditCount = creditCount + actorCredits.getMovies().size();
+        if (newCreditCount > creditActors.length) {
+            int capacity = Math.max(creditActors.length * 2, newCreditCount);
+            creditActors = Arrays.copyOf(creditActors, capacity);
+            creditMovies = Arrays.copyOf(creditMovies, capacity);
+        }
+
+        if (actorCreditCounts[actorId] > 0) {
+            collisionCount++;
+        }
+        actorCreditCounts[actorId] += actorCredits.getMovies().size();
+        for (String movie : actorCredits.getMovies()) {
+            creditActors[creditCount] = actorId;
+            creditMovies[creditCount++] = movies.intern(movie);
+        }
+    }
+
+    /**
+     * Returns the number of distinct actors handled so far.
+     */
+    public int getActorCount() {
+        return actors.size();
+    }
+
+    /**
+     * Returns the number of times credits were handled for an actor that already had credits, and had to be
+     * merged.
+     */
+    public long getCollisionCount() {
+        return collisionCount;
+    }
+
+    /**
+     * Returns the number of distinct actor and movie names that share their 64-bit key with a different name
+     * of the same kind.  The names are still kept apart, so this only ever costs time.
+     */
+    public long getKeyCollisionCount() {
+        return actors.getCollisionCount() + movies.getCollisionCount();
+    }
+
+    /**
+     * Builds the graph of all credits handled so far.
+     */
+    public CreditGraph build() {
+        int actorCount = actors.size();
+        String[] actorNames = new String[actorCount];
+        int[] creditOffsets = new int[actorCount + 1];
+        for (int actorId = 0; actorId < actorCount; actorId++) {
+            actorNames[actorId] = actors.getName(actorId);
+            creditOffsets[actorId + 1] = creditOffsets[actorId] + actorCreditCounts[actorId];
+        }
+
+        // Counting sort of the credits by actor
+        int[] movieIds = new int[creditCount];
+        int[] next = Arrays.copyOf(creditOffsets, actorCount);
+        for (int i = 0; i < creditCount; i++) {
+            movieIds[next[creditActors[i]]++] = creditMovies[i];
+        }
+
+        // Sort and de-duplicate each row, compacting the rows as we go
+        int[] compactOffsets = new int[actorCount + 1];
+        int length = 0;
+        for (int actorId = 0; actorId < actorCount; actorId++) {
+            int start = creditOffsets[actorId];
+            int end = creditOffsets[actorId + 1];
+            Arrays.sort(movieIds, start, end);
+            for (int i = start; i < end; i++) {
+                if (i == start || movieIds[i] != movieIds[i - 1]) {
+                    movieIds[length++] = movieIds[i];
+                }
+            }
+            compactOffsets[actorId + 1] = length;
+        }
+
+        String[] movieNames = new String[movies.size()];
+        for (int movieId = 0; movieId < movieNames.length; movieId++) {
+            movieNames[movieId] = movies.getName(movieId);
+        }
+        return new CreditGraph(actorNames, movieNames, compactOffsets, Arrays.copyOf(movieIds, length));
+    }
+}
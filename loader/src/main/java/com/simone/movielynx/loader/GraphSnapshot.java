@@ -0,0 +1,380 @@
+package com.simone.movielynx.loader;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The graph snapshot file: a read-only copy of a CreditGraph laid out so that it can be memory-mapped and
+ * traversed in place, without any parse step.  The DB Loader writes it, and the Backend App maps it.
+ * <p>
+ * All values are big-endian, as written by DataOutputStream and read by a MappedByteBuffer by default.  The
+ * file starts with a fixed-size header:
+ * <pre>
+ * int MAGIC, int VERSION, int actorCount, int movieCount, int creditCount, int sectionCount
+ * MAX_SECTIONS x (int sectionId, int crc32, long offset, long length), unused entries zeroed
+ * int crc32 of all the header bytes before it
+ * </pre>
+ * followed by the sections, each aligned to 8 bytes.  The sections written for every graph are:
+ * <pre>
+ * ACTOR_OFFSETS       int[actorCount + 1]  offsets of each actor's movies in ACTOR_MOVIES
+ * ACTOR_MOVIES        int[creditCount]     movie IDs of each actor's credits, sorted per actor
+ * MOVIE_OFFSETS       int[movieCount + 1]  offsets of each movie's actors in MOVIE_ACTORS
+ * MOVIE_ACTORS        int[creditCount]     actor IDs of each movie's credits, sorted per movie
+ * ACTOR_NAME_OFFSETS  int[actorCount + 1]  offsets of each actor's name in ACTOR_NAME_BYTES
+ * ACTOR_NAME_BYTES    byte[]               UTF-8 actor names
+ * MOVIE_NAME_OFFSETS  int[movieCount + 1]  offsets of each movie's name in MOVIE_NAME_BYTES
+ * MOVIE_NAME_BYTES    byte[]               UTF-8 movie names
+ * ACTOR_NAME_INDEX    int[actorCount]      actor IDs sorted by the unsigned bytes of their UTF-8 names
+ * </pre>
+ * The optional sections are:
+ * <pre>
+ * HUB_ACTORS           int[hubCount]               actor IDs of the hubs of a HubDistanceIndex
+ * HUB_DISTANCES        byte[actorCount * hubCount] each actor's distance from each hub, interleaved by actor
+ * SUGGEST_NAME_OFFSETS int[actorCount + 1]         offsets of each normalized name in SUGGEST_NAME_BYTES
+ * SUGGEST_NAME_BYTES   byte[]                      UTF-8 actor names, normalized by NameNormalizer
+ * SUGGEST_POSITIONS    int[entryCount]             positions of each NameSuggestIndex entry's word
+ * SUGGEST_ACTORS       int[entryCount]             actor IDs of each NameSuggestIndex entry
+ * COSTAR_OFFSETS       int[actorCount + 1]         offsets of each actor's co-stars in COSTAR_ACTORS
+ * COSTAR_ACTORS        int[coStarCount]            actor IDs of each CoStarIndex actor's co-stars
+ * COSTAR_WEIGHTS       int[coStarCount]            movies shared with each co-star in COSTAR_ACTORS
+ * </pre>
+ * Readers ignore sections they don't know, so new optional sections can be added without a version change.
+ * Each section has its own CRC32, checked by verify().
+ */
+public class GraphSnapshot implements Closeable {
+    public final static int MAGIC = 0x4D4C4753;
+    public final static int VERSION = 2;
+    public final static int MAX_SECTIONS = 32;
+    public final static int HEADER_SIZE = 6 * 4 + MAX_SECTIONS * 24 + 4;
+
+    public final static int ACTOR_OFFSETS = 1;
+    public final static int ACTOR_MOVIES = 2;
+    public final static int MOVIE_OFFSETS = 3;
+    public final static int MOVIE_ACTORS = 4;
+    public final static int ACTOR_NAME_OFFSETS = 5;
+    public final static int ACTOR_NAME_BYTES = 6;
+    public final static int MOVIE_NAME_OFFSETS = 7;
+    public final static int MOVIE_NAME_BYTES = 8;
+    public final static int ACTOR_NAME_INDEX = 9;
+    public final static int HUB_ACTORS = 10;
+    public final static int HUB_DISTANCES = 11;
+    public final static int SUGGEST_NAME_OFFSETS = 12;
+    public final static int SUGGEST_NAME_BYTES = 13;
+    public final static int SUGGEST_POSITIONS = 14;
+    public final static int SUGGEST_ACTORS = 15;
+    public final static int COSTAR_OFFSETS = 16;
+    public final static int COSTAR_ACTORS = 17;
+    public final static int COSTAR_WEIGHTS = 18;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int actorCount;
+    private final int movieCount;
+    private final int creditCount;
+    private final int checksum;
+    private final int[] sectionIds;
+    private final int[] sectionChecksums;
+    private final long[] sectionOffsets;
+    private final long[] sectionLengths;
+
+    private GraphSnapshot(File file) throws IOException {
+        this.file = file;
+        randomAccessFile = new RandomAccessFile(file, "r");
+        channel = randomAccessFile.getChannel();
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported graph snapshot version " + version + ": " + file);
+            }
+            byte[] headerBytes = new byte[HEADER_SIZE - 4];
+            ((ByteBuffer) header.duplicate().position(0)).get(headerBytes);
+            CRC32 headerChecksum = new CRC32();
+            headerChecksum.update(headerBytes);
+            checksum = (int) headerChecksum.getValue();
+            if (header.getInt(HEADER_SIZE - 4) != checksum) {
+                throw new IOException("Corrupt graph snapshot header: " + file);
+            }
+
+            actorCount = header.getInt();
+            movieCount = header.getInt();
+            creditCount = header.getInt();
+            int sectionCount = header.getInt();
+            sectionIds = new int[sectionCount];
+            sectionChecksums = new int[sectionCount];
+            sectionOffsets = new long[sectionCount];
+            sectionLengths = new long[sectionCount];
+            for (int i = 0; i < sectionCount; i++) {
+                sectionIds[i] = header.getInt();
+                sectionChecksums[i] = header.getInt();
+                sectionOffsets[i] = header.getLong();
+                sectionLengths[i] = header.getLong();
+                if (sectionOffsets[i] < HEADER_SIZE || sectionOffsets[i] + sectionLengths[i] > channel.size()) {
+                    throw new IOException("Truncated graph snapshot: " + file);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the given snapshot file, reading and checking only its header.  Sections are mapped on demand.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the file can't be read, or isn't a valid graph snapshot
+     */
+    public static GraphSnapshot open(File file) throws IOException {
+        return new GraphSnapshot(file);
+    }
+
+    public int getActorCount() {
+        return actorCount;
+    }
+
+    public int getMovieCount() {
+        return movieCount;
+    }
+
+    public int getCreditCount() {
+        return creditCount;
+    }
+
+    /**
+     * Returns the CRC32 of the header, which covers every section's CRC32, so identifies the snapshot's contents.
+     */
+    public int getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Returns whether this snapshot has the given section.
+     */
+    public boolean hasSection(int sectionId) {
+        return indexOf(sectionId) >= 0;
+    }
+
+    /**
+     * Memory-maps the given section.  The mapping stays valid after this snapshot is closed.
+     *
+     * @throws IOException if the section is missing, or can't be mapped
+     */
+    public ByteBuffer mapBytes(int sectionId) throws IOException {
+        int index = indexOf(sectionId);
+        if (index < 0) {
+            throw new IOException("Graph snapshot has no section " + sectionId + ": " + file);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, sectionOffsets[index], sectionLengths[index]);
+    }
+
+    /**
+     * Memory-maps the given section as ints.
+     *
+     * @throws IOException if the section is missing, or can't be mapped
+     */
+    public IntBuffer mapInts(int sectionId) throws IOException {
+        return mapBytes(sectionId).asIntBuffer();
+    }
+
+    /**
+     * Checks the CRC32 of every section against the header.
+     *
+     * @throws IOException if a section's contents don't match its checksum
+     */
+    public void verify() throws IOException {
+        byte[] chunk = new byte[1 << 16];
+        for (int i = 0; i < sectionIds.length; i++) {
+            ByteBuffer section = mapBytes(sectionIds[i]);
+            CRC32 checksum = new CRC32();
+            while (section.hasRemaining()) {
+                int length = Math.min(chunk.length, section.remaining());
+                section.get(chunk, 0, length);
+                checksum.update(chunk, 0, length);
+            }
+            if ((int) checksum.getValue() != sectionChecksums[i]) {
+                throw new IOException("Corrupt graph snapshot section " + sectionIds[i] + ": " + file);
+            }
+        }
+    }
+
+    /**
+     * Unmaps a section mapped by mapBytes() straight away, rather than whenever the buffer is garbage collected,
+     * so that the memory and file it maps are released.  Any later access to the buffer, or to views of it, may
+     * crash the JVM, so it must only be called once nothing uses them any more.
+     *
+     * @return whether the buffer was unmapped; if not, it is unmapped when garbage collected
+     */
+    public static boolean unmap(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return false;
+        }
+        try {
+            // sun.nio.ch.DirectBuffer.cleaner().clean(), which has no public equivalent
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner == null) {
+                return false;
+            }
+            Method cleanMethod = cleaner.getClass().getMethod("clean");
+            cleanMethod.setAccessible(true);
+            cleanMethod.invoke(cleaner);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes the file.  Sections that have already been mapped stay valid.
+     */
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+
+    private int indexOf(int sectionId) {
+        for (int i = 0; i < sectionIds.length; i++) {
+            if (sectionIds[i] == sectionId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the given graph to the given snapshot file, replacing it only once the whole snapshot has been
+     * written.
+     *
+     * @param graph the graph to write
+     * @param file  the snapshot file to write
+     * @throws IOException if the file can't be written
+     */
+    public static void write(CreditGraph graph, File file) throws IOException {
+        write(graph, null, null, file);
+    }
+
+    /**
+     * Writes the given graph, its name index, and the given hub distances to the given snapshot file, replacing
+     * it only once the whole snapshot has been written.
+     *
+     * @param graph        the graph to write
+     * @param hubDistances the distances from the graph's hubs, or null
+     * @param file         the snapshot file to write
+     * @throws IOException if the file can't be written
+     */
+    public static void write(CreditGraph graph, HubDistanceIndex hubDistances, File file) throws IOException {
+        write(graph, hubDistances, null, file);
+    }
+
+    /**
+     * Writes the given graph, its name index, and the given hub distances and co-stars to the given snapshot
+     * file, replacing it only once the whole snapshot has been written.
+     *
+     * @param graph        the graph to write
+     * @param hubDistances the distances from the graph's hubs, or null
+     * @param coStars      the co-stars of the graph's actors, or null
+     * @param file         the snapshot file to write
+     * @throws IOException if the file can't be written
+     */
+    public static void write(CreditGraph graph, HubDistanceIndex hubDistances, CoStarIndex coStars, File file)
+            throws IOException {
+        byte[][] actorNames = new byte[graph.getActorCount()][];
+        for (int actorId = 0; actorId < actorNames.length; actorId++) {
+            actorNames[actorId] = graph.getActorName(actorId).getBytes(StandardCharsets.UTF_8);
+        }
+        byte[][] movieNames = new byte[graph.getMovieCount()][];
+        for (int movieId = 0; movieId < movieNames.length; movieId++) {
+            movieNames[movieId] = graph.getMovieName(movieId).getBytes(StandardCharsets.UTF_8);
+        }
+
+        try (GraphSnapshotWriter writer = new GraphSnapshotWriter(file, graph.getActorCount(),
+                graph.getMovieCount(), graph.getCreditCount())) {
+            writer.writeIntSection(ACTOR_OFFSETS, graph.getCreditOffsets());
+            writer.writeIntSection(ACTOR_MOVIES, graph.getMovieIds());
+            writer.writeIntSection(MOVIE_OFFSETS, graph.getMovieCreditOffsets());
+            writer.writeIntSection(MOVIE_ACTORS, graph.getActorIds());
+            writeNames(writer, ACTOR_NAME_OFFSETS, ACTOR_NAME_BYTES, actorNames);
+            writeNames(writer, MOVIE_NAME_OFFSETS, MOVIE_NAME_BYTES, movieNames);
+            writer.writeIntSection(ACTOR_NAME_INDEX, sortByName(actorNames));
+            if (hubDistances != null) {
+                writer.writeIntSection(HUB_ACTORS, hubDistances.getHubActorIds());
+                writer.beginSection(HUB_DISTANCES).write(hubDistances.getDistances());
+                writer.endSection();
+            }
+            NameSuggestIndex suggestIndex = NameSuggestIndex.of(graph);
+            writer.writeIntSection(SUGGEST_NAME_OFFSETS, suggestIndex.getNameOffsets());
+            writer.beginSection(SUGGEST_NAME_BYTES).write(suggestIndex.getNameBytes());
+            writer.endSection();
+            writer.writeIntSection(SUGGEST_POSITIONS, suggestIndex.getEntryPositions());
+            writer.writeIntSection(SUGGEST_ACTORS, suggestIndex.getEntryActorIds());
+            if (coStars != null) {
+                writer.writeIntSection(COSTAR_OFFSETS, coStars.getOffsets());
+                writer.writeIntSection(COSTAR_ACTORS, coStars.getCoStarIds());
+                writer.writeIntSection(COSTAR_WEIGHTS, coStars.getWeights());
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Returns the IDs of the given UTF-8 names, sorted by comparing the names' bytes as unsigned values.
+     */
+    public static int[] sortByName(byte[][] names) {
+        Integer[] ids = new Integer[names.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        Arrays.sort(ids, (id1, id2) -> compareNames(names[id1], names[id2]));
+        int[] sortedIds = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sortedIds[i] = ids[i];
+        }
+        return sortedIds;
+    }
+
+    /**
+     * Compares two UTF-8 names by their unsigned bytes, which orders them by code point.
+     */
+    public static int compareNames(byte[] name1, byte[] name2) {
+        int length = Math.min(name1.length, name2.length);
+        for (int i = 0; i < length; i++) {
+            if (name1[i] != name2[i]) {
+                return (name1[i] & 0xff) - (name2[i] & 0xff);
+            }
+        }
+        return name1.length - name2.length;
+    }
+
+    private static void writeNames(GraphSnapshotWriter writer, int offsetsSectionId, int bytesSectionId,
+                                   byte[][] names) throws IOException {
+        DataOutputStream outputStream = writer.beginSection(offsetsSectionId);
+        int offset = 0;
+        outputStream.writeInt(offset);
+        for (byte[] name : names) {
+            offset += name.length;
+            outputStream.writeInt(offset);
+        }
+        writer.endSection();
+
+        outputStream = writer.beginSection(bytesSectionId);
+        for (byte[] name : names) {
+            outputStream.write(name);
+        }
+        writer.endSection();
+    }
+}
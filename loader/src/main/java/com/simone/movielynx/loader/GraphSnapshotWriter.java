@@ -0,0 +1,183 @@
+package com.simone.movielynx.loader;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a graph snapshot file, one section at a time.  See GraphSnapshot for the format.
+ * <p>
+ * The file is written under a temporary name, and only renamed to the target file by finish(), once every
+ * section and the header are complete.  Closing a writer that hasn't been finished, as when writing fails part
+ * way through, deletes the temporary file and leaves any existing snapshot untouched, so a reader never sees a
+ * snapshot with sections missing.  Each section is written through a DataOutputStream, and must be finished with
+ * endSection() before the next one is started.
+ */
+public class GraphSnapshotWriter implements Closeable {
+    private final File file;
+    private final File tmpFile;
+    private final FileChannel channel;
+    private final CountingOutputStream countingStream;
+    private final DataOutputStream outputStream;
+    private final int[] counts;
+
+    private final int[] sectionIds = new int[GraphSnapshot.MAX_SECTIONS];
+    private final int[] sectionChecksums = new int[GraphSnapshot.MAX_SECTIONS];
+    private final long[] sectionOffsets = new long[GraphSnapshot.MAX_SECTIONS];
+    private final long[] sectionLengths = new long[GraphSnapshot.MAX_SECTIONS];
+    private int sectionCount = 0;
+    private boolean inSection = false;
+    private boolean finished = false;
+    private boolean closed = false;
+
+    /**
+     * Starts writing a snapshot of a graph with the given numbers of actors, movies and credits.
+     *
+     * @param file the snapshot file to write
+     * @throws IOException if the file can't be created
+     */
+    public GraphSnapshotWriter(File file, int actorCount, int movieCount, int creditCount) throws IOException {
+        this.file = file;
+        this.tmpFile = new File(file.getPath() + ".tmp");
+        this.counts = new int[]{actorCount, movieCount, creditCount};
+        channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(GraphSnapshot.HEADER_SIZE);
+        countingStream = new CountingOutputStream(Channels.newOutputStream(channel), GraphSnapshot.HEADER_SIZE);
+        outputStream = new DataOutputStream(new BufferedOutputStream(countingStream, 1 << 16));
+    }
+
+    /**
+     * Starts a new section with the given ID, and returns the stream to write its contents to.
+     */
+    public DataOutputStream beginSection(int sectionId) throws IOException {
+        if (inSection) {
+            throw new IllegalStateException("Section " + sectionIds[sectionCount] + " has not been ended");
+        }
+        if (sectionCount == GraphSnapshot.MAX_SECTIONS) {
+            throw new IllegalStateException("Too many sections");
+        }
+        // Align every section to 8 bytes, so that mapped int and long views are aligned
+        outputStream.flush();
+        while (countingStream.position % 8 != 0) {
+            countingStream.write(0);
+        }
+        countingStream.checksum.reset();
+        sectionIds[sectionCount] = sectionId;
+        sectionOffsets[sectionCount] = countingStream.position;
+        inSection = true;
+        return outputStream;
+    }
+
+    /**
+     * Finishes the current section.
+     */
+    public void endSection() throws IOException {
+        outputStream.flush();
+        sectionLengths[sectionCount] = countingStream.position - sectionOffsets[sectionCount];
+        sectionChecksums[sectionCount] = (int) countingStream.checksum.getValue();
+        sectionCount++;
+        inSection = false;
+    }
+
+    /**
+     * Writes a whole section of ints.
+     */
+    public void writeIntSection(int sectionId, int[] values) throws IOException {
+        DataOutputStream sectionStream = beginSection(sectionId);
+        for (int value : values) {
+            sectionStream.writeInt(value);
+        }
+        endSection();
+    }
+
+    /**
+     * Writes the header and moves the finished snapshot into place, replacing any existing snapshot.
+     */
+    public void finish() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Snapshot writer is closed");
+        }
+        if (inSection) {
+            throw new IllegalStateException("Section " + sectionIds[sectionCount] + " has not been ended");
+        }
+        outputStream.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(GraphSnapshot.HEADER_SIZE);
+        header.putInt(GraphSnapshot.MAGIC);
+        header.putInt(GraphSnapshot.VERSION);
+        header.putInt(counts[0]);
+        header.putInt(counts[1]);
+        header.putInt(counts[2]);
+        header.putInt(sectionCount);
+        for (int i = 0; i < GraphSnapshot.MAX_SECTIONS; i++) {
+            header.putInt(sectionIds[i]);
+            header.putInt(sectionChecksums[i]);
+            header.putLong(sectionOffsets[i]);
+            header.putLong(sectionLengths[i]);
+        }
+        CRC32 headerChecksum = new CRC32();
+        headerChecksum.update(header.array(), 0, header.position());
+        header.putInt((int) headerChecksum.getValue());
+        header.flip();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(false);
+        channel.close();
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        finished = true;
+        closed = true;
+    }
+
+    /**
+     * Discards the snapshot unless finish() has moved it into place, deleting the temporary file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            if (!finished) {
+                Files.deleteIfExists(tmpFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Counts and checksums the bytes written through it.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        final CRC32 checksum = new CRC32();
+        long position;
+
+        CountingOutputStream(OutputStream outputStream, long position) {
+            super(outputStream);
+            this.position = position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            checksum.update(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            checksum.update(b, off, len);
+            position += len;
+        }
+    }
+}
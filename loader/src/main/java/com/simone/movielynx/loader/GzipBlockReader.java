@@ -0,0 +1,176 @@
+package com.simone.movielynx.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Cuts the decompressed contents of a gzipped actor file into blocks of whole actor blocks, so that each
+ * block can be handed to a different parse thread.
+ * <p>
+ * Everything up to and including the "movie start" line is skipped.  Every block after the first starts at
+ * an actor line, with the same definition of an actor line that ParallelActorFileParser uses to split
+ * uncompressed files.
+ */
+class GzipBlockReader {
+    private final static byte[] MOVIE_START_LINE =
+            ActorFileParser.MOVIE_START_LINE.getBytes(ActorFileParser.ACTOR_FILE_CHARSET);
+
+    private final InputStream inputStream;
+    private final int blockSize;
+    private byte[] buffer;
+    private int length = 0;
+    private boolean started = false;
+    private boolean inLongLine = false;
+    private boolean endOfStream = false;
+
+    GzipBlockReader(InputStream inputStream, int blockSize) {
+        this.inputStream = inputStream;
+        this.blockSize = blockSize;
+        this.buffer = new byte[blockSize];
+    }
+
+    /**
+     * Returns the next block of actor lines, or null once the stream has been consumed.  Each returned
+     * block is backed by its own array, so it can safely be handed to another thread.
+     *
+     * @throws IOException if an error occurs reading from the stream
+     */
+    ByteBuffer nextBlock() throws IOException {
+        while (true) {
+            fill();
+
+            if (!started) {
+                int markerEnd = findMovieStartLineEnd();
+                if (markerEnd < 0) {
+                    if (endOfStream) {
+                        return null;
+                    }
+                    // Keep only the trailing partial line, which may turn out to be the marker.  A partial
+                    // line that fills the whole buffer is too long to be the marker, so drop it.
+                    int lastLineStart = lastLineStart();
+                    if (lastLineStart == 0 && length == buffer.length) {
+                        if (length > MOVIE_START_LINE.length) {
+                            length = 0;
+                            inLongLine = true;
+                        } else {
+                            grow();
+                        }
+                    } else {
+                        carryFrom(lastLineStart, false);
+                    }
+                    continue;
+                }
+                carryFrom(markerEnd, false);
+                started = true;
+            }
+
+            if (endOfStream) {
+                if (length == 0) {
+                    return null;
+                }
+                ByteBuffer block = ByteBuffer.wrap(buffer, 0, length);
+                buffer = new byte[0];
+                length = 0;
+                return block;
+            }
+
+            int cut = findLastActorLineStart();
+            if (cut <= 0) {
+                // A single actor block larger than the buffer: read more of it before cutting
+                if (length == buffer.length) {
+                    grow();
+                }
+                continue;
+            }
+            ByteBuffer block = ByteBuffer.wrap(buffer, 0, cut);
+            carryFrom(cut, true);
+            return block;
+        }
+    }
+
+    /**
+     * Reads from the stream until the buffer is full or the stream ends.
+     */
+    private void fill() throws IOException {
+        while (!endOfStream && length < buffer.length) {
+            int read = inputStream.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                endOfStream = true;
+            } else {
+                length += read;
+            }
+        }
+    }
+
+    private void grow() {
+        byte[] grown = new byte[buffer.length * 2];
+        System.arraycopy(buffer, 0, grown, 0, length);
+        buffer = grown;
+    }
+
+    /**
+     * Drops the bytes before the given offset, copying the rest to the start of the buffer, or of a new
+     * buffer if the current one has been handed off as a block.
+     */
+    private void carryFrom(int offset, boolean newBuffer) {
+        byte[] target = newBuffer ? new byte[Math.max(blockSize, length - offset)] : buffer;
+        System.arraycopy(buffer, offset, target, 0, length - offset);
+        buffer = target;
+        length -= offset;
+    }
+
+    /**
+     * Returns the offset just past the terminator of the "movie start" line, or -1 if the buffer does not
+     * contain it.
+     */
+    private int findMovieStartLineEnd() {
+        int lineStart = inLongLine ? -1 : 0;
+        for (int i = 0; i < length; i++) {
+            if (ParallelActorFileParser.isLineTerminator(buffer[i])) {
+                if (lineStart >= 0 && i - lineStart == MOVIE_START_LINE.length && matchesMarker(lineStart)) {
+                    return i + 1;
+                }
+                lineStart = i + 1;
+                inLongLine = false;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matchesMarker(int offset) {
+        for (int i = 0; i < MOVIE_START_LINE.length; i++) {
+            if (buffer[offset + i] != MOVIE_START_LINE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lastLineStart() {
+        int i = length;
+        while (i > 0 && !ParallelActorFileParser.isLineTerminator(buffer[i - 1])) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the start of the last complete actor line in the buffer, or -1 if there is none after the
+     * first byte.
+     */
+    private int findLastActorLineStart() {
+        int lineEnd = lastLineStart() - 1;
+        while (lineEnd > 0) {
+            int lineStart = lineEnd;
+            while (lineStart > 0 && !ParallelActorFileParser.isLineTerminator(buffer[lineStart - 1])) {
+                lineStart--;
+            }
+            if (lineStart > 0 && ParallelActorFileParser.isActorLine(buffer, lineStart, lineEnd)) {
+                return lineStart;
+            }
+            lineEnd = lineStart - 1;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,177 @@
+package com.simone.movielynx.loader;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The degrees of separation between every actor and each of a few hub actors, such as the best-connected
+ * actors in the graph, computed with one breadth-first search per hub.
+ * <p>
+ * Distances are held one byte per actor per hub, so that even a large graph's index stays small: values up
+ * to MAX_DISTANCE are exact, longer distances are capped at MAX_DISTANCE, and UNREACHABLE marks actors not
+ * connected to the hub at all.  The distances are interleaved by actor, so that all of one actor's hub
+ * distances are adjacent, which is the order searches read them in.
+ * <p>
+ * Apart from answering "how far is X from this hub" directly, the distances bound the distance between any
+ * two actors a and b: for every hub h, |d(h,a) - d(h,b)| <= d(a,b) <= d(h,a) + d(h,b).
+ */
+public class HubDistanceIndex {
+    public final static int MAX_DISTANCE = 0xFE;
+    public final static int UNREACHABLE = 0xFF;
+
+    private final int actorCount;
+    private final int[] hubActorIds;
+    private final byte[] distances;
+
+    /**
+     * @param hubActorIds the IDs of the hubs
+     * @param distances   the distance of actor a from hub h at {@code a * hubActorIds.length + h}
+     */
+    public HubDistanceIndex(int[] hubActorIds, byte[] distances) {
+        if (hubActorIds.length == 0 ? distances.length != 0 : distances.length % hubActorIds.length != 0) {
+            throw new IllegalArgumentException("Hub distances don't match " + hubActorIds.length + " hubs");
+        }
+        this.actorCount = hubActorIds.length == 0 ? 0 : distances.length / hubActorIds.length;
+        this.hubActorIds = hubActorIds;
+        this.distances = distances;
+    }
+
+    /**
+     * Computes the distances from the given hubs to every actor of the given graph, searching from up to the
+     * given number of hubs at once.
+     */
+    public static HubDistanceIndex compute(CreditGraph graph, int[] hubActorIds, int parallelism)
+            throws IOException {
+        // Build the shared movie->actor transpose once, before the searches need it
+        graph.getActorIds();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism,
+                hubActorIds.length)));
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int hubActorId : hubActorIds) {
+                futures.add(executor.submit(() -> search(graph, hubActorId)));
+            }
+            byte[] distances = new byte[graph.getActorCount() * hubActorIds.length];
+            for (int hub = 0; hub < hubActorIds.length; hub++) {
+                byte[] hubDistances = futures.get(hub).get();
+                for (int actorId = 0; actorId < hubDistances.length; actorId++) {
+                    distances[actorId * hubActorIds.length + hub] = hubDistances[actorId];
+                }
+            }
+            return new HubDistanceIndex(hubActorIds, distances);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted computing hub distances", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error computing hub distances", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the given number of actors with the most credits, which tend to be the best connected, most
+     * credited first.
+     */
+    public static int[] selectHubs(CreditGraph graph, int count) {
+        PriorityQueue<Integer> best = new PriorityQueue<>(Comparator.comparingInt(
+                (Integer actorId) -> getCreditCount(graph, actorId)).thenComparing(Comparator.reverseOrder()));
+        for (int actorId = 0; actorId < graph.getActorCount(); actorId++) {
+            best.add(actorId);
+            if (best.size() > count) {
+                best.poll();
+            }
+        }
+        int[] hubActorIds = new int[best.size()];
+        for (int i = hubActorIds.length - 1; i >= 0; i--) {
+            hubActorIds[i] = best.poll();
+        }
+        return hubActorIds;
+    }
+
+    /**
+     * Returns the IDs of the actors with the given names, in the same order, skipping names not in the graph.
+     */
+    public static int[] findActors(CreditGraph graph, List<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (String name : names) {
+            ids.put(name, -1);
+        }
+        for (int actorId = 0; actorId < graph.getActorCount(); actorId++) {
+            ids.replace(graph.getActorName(actorId), actorId);
+        }
+        return names.stream().mapToInt(ids::get).filter(actorId -> actorId >= 0).distinct().toArray();
+    }
+
+    public int getHubCount() {
+        return hubActorIds.length;
+    }
+
+    public int getHubActorId(int hub) {
+        return hubActorIds[hub];
+    }
+
+    public int[] getHubActorIds() {
+        return hubActorIds;
+    }
+
+    /**
+     * Returns the distance of the given actor from the given hub, capped at MAX_DISTANCE, or UNREACHABLE.
+     */
+    public int getDistance(int hub, int actorId) {
+        return distances[actorId * hubActorIds.length + hub] & 0xff;
+    }
+
+    /**
+     * Returns all the distances, interleaved by actor.  The array is shared, and must not be modified.
+     */
+    public byte[] getDistances() {
+        return distances;
+    }
+
+    public int getActorCount() {
+        return actorCount;
+    }
+
+    private static int getCreditCount(CreditGraph graph, int actorId) {
+        return graph.getCreditEnd(actorId) - graph.getCreditStart(actorId);
+    }
+
+    /**
+     * Returns the distances from the given hub to every actor, by breadth-first search.
+     */
+    private static byte[] search(CreditGraph graph, int hubActorId) {
+        int[] movieIds = graph.getMovieIds();
+        int[] movieCreditOffsets = graph.getMovieCreditOffsets();
+        int[] actorIds = graph.getActorIds();
+        byte[] distances = new byte[graph.getActorCount()];
+        Arrays.fill(distances, (byte) UNREACHABLE);
+        boolean[] visitedMovies = new boolean[graph.getMovieCount()];
+        int[] queue = new int[graph.getActorCount()];
+
+        distances[hubActorId] = 0;
+        queue[0] = hubActorId;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int actorId = queue[head++];
+            byte distance = (byte) Math.min((distances[actorId] & 0xff) + 1, MAX_DISTANCE);
+            for (int i = graph.getCreditStart(actorId); i < graph.getCreditEnd(actorId); i++) {
+                int movieId = movieIds[i];
+                if (visitedMovies[movieId]) {
+                    continue;
+                }
+                visitedMovies[movieId] = true;
+                for (int j = movieCreditOffsets[movieId]; j < movieCreditOffsets[movieId + 1]; j++) {
+                    int coStarId = actorIds[j];
+                    if (distances[coStarId] == (byte) UNREACHABLE) {
+                        distances[coStarId] = distance;
+                        queue[tail++] = coStarId;
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+}
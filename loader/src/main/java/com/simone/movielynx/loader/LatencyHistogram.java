@@ -0,0 +1,121 @@
+package com.simone.movielynx.loader;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with logarithmic buckets, safe to record into from any number of threads at once.
+ * <p>
+ * Latencies are bucketed by microsecond with four buckets per power of two, so every reported percentile is
+ * within 25% of the true value, from a microsecond up to days, in a fixed 160 buckets.  Each bucket is a
+ * LongAdder, which stripes its count across cells under contention, so that concurrent recorders don't fight
+ * over a single cache line.
+ */
+public class LatencyHistogram {
+    private final static int SUB_BUCKETS = 4;
+    private final static int BUCKETS = 160;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency, in nanoseconds.
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        counts[bucketOf(nanos / 1000)].increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucketCount : counts) {
+            count += bucketCount.sum();
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the given percentile, from 0 to 100, as the upper bound of the bucket it falls in, in
+     * nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] bucketCounts = getBucketCounts();
+        long count = 0;
+        for (long bucketCount : bucketCounts) {
+            count += bucketCount;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += bucketCounts[bucket];
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBoundNanos(bucket), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Returns the number of buckets, for exporting the whole histogram.
+     */
+    public int getBucketCount() {
+        return BUCKETS;
+    }
+
+    /**
+     * Returns the exclusive upper bound of the latencies in the given bucket, in nanoseconds.
+     */
+    public long getBucketUpperBoundNanos(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return (bucket + 1) * 1000L;
+        }
+        int octave = bucket / SUB_BUCKETS + 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (octave - 2)) * 1000L;
+    }
+
+    /**
+     * Returns a snapshot of the counts of every bucket.  Buckets are read one at a time, so a snapshot taken
+     * while latencies are being recorded may be off by the latencies recorded meanwhile.
+     */
+    public long[] getBucketCounts() {
+        long[] bucketCounts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCounts[i] = counts[i].sum();
+        }
+        return bucketCounts;
+    }
+
+    /**
+     * Returns the bucket of the given latency in microseconds: the first SUB_BUCKETS buckets hold 0 to 3us
+     * exactly, and then each power of two is split into SUB_BUCKETS equal buckets.
+     */
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int octave = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (octave - 2)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, (octave - 1) * SUB_BUCKETS + subBucket);
+    }
+}
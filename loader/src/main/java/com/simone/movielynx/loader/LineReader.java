@@ -0,0 +1,29 @@
+package com.simone.movielynx.loader;
+
+import java.io.IOException;
+
+/**
+ * Source of lines for ActorFileParser.  Each line is read into a reusable char buffer rather than a new
+ * String, and lines are terminated the same way BufferedReader terminates them: by "\n", "\r" or "\r\n".
+ */
+interface LineReader {
+
+    /**
+     * Reads the next line into the line buffer.
+     *
+     * @return false if the end of the input has been reached
+     * @throws IOException if an error occurs reading the input
+     */
+    boolean readLine() throws IOException;
+
+    /**
+     * Returns the buffer holding the current line.  Only the first getLength() chars are valid, and only
+     * until the next call to readLine().
+     */
+    char[] getLine();
+
+    /**
+     * Returns the length of the current line.
+     */
+    int getLength();
+}
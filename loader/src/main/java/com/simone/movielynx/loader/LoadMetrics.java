@@ -0,0 +1,366 @@
+package com.simone.movielynx.loader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings of the phases of a load, safe to update from any number of threads at once.
+ * <p>
+ * A load is made up of the phases below, some of which overlap: parsing runs while the actor files are read
+ * and decompressed, and transactions commit while the store is written.
+ * <pre>
+ *   read        bytes of the actor files read, as stored on disk
+ *   decompress  bytes inflated from gzipped actor files, and the time spent inflating them
+ *   parse       lines and bytes parsed, actors and credits found, and the time spent parsing chunks
+ *   merge       actors and credits of the credit graph, and the time spent building it
+ *   write       actors and credits written to the Neo4J store
+ *   commit      the latency of each transaction, or of finishing an offline import
+ * </pre>
+ * Each phase's elapsed time runs from when it's first started to when it's last ended, while its busy time
+ * is the sum of the latencies recorded into it, across all threads.  Counters are LongAdders, so the parse
+ * threads can count without contending with each other.  Phases with a known total, such as the bytes of the
+ * actor files to read, also give an estimate of their time remaining.
+ * <p>
+ * The metrics can be printed periodically while the load runs, and summarized as JSON at the end, along with
+ * the number of actor and movie names that shared their 64-bit key with a different name.
+ */
+public class LoadMetrics {
+    public final static String READ = "read";
+    public final static String DECOMPRESS = "decompress";
+    public final static String PARSE = "parse";
+    public final static String MERGE = "merge";
+    public final static String WRITE = "write";
+    public final static String COMMIT = "commit";
+
+    private final static double MEGABYTE = 1024 * 1024;
+
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final long startNanos = System.nanoTime();
+    private volatile long keyCollisionCount = 0;
+    private ScheduledExecutorService reporter = null;
+
+    public LoadMetrics() {
+        for (String name : Arrays.asList(READ, DECOMPRESS, PARSE, MERGE, WRITE, COMMIT)) {
+            phases.put(name, new Phase(name));
+        }
+    }
+
+    /**
+     * Returns the phase with the given name, one of the phase constants.
+     *
+     * @throws IllegalArgumentException if there is no such phase
+     */
+    public Phase getPhase(String name) {
+        Phase phase = phases.get(name);
+        if (phase == null) {
+            throw new IllegalArgumentException("Unknown load phase: " + name);
+        }
+        return phase;
+    }
+
+    /**
+     * Sets the number of distinct actor and movie names that share their 64-bit key with a different name.
+     */
+    public void setKeyCollisionCount(long keyCollisionCount) {
+        this.keyCollisionCount = keyCollisionCount;
+    }
+
+    public long getKeyCollisionCount() {
+        return keyCollisionCount;
+    }
+
+    /**
+     * Returns the peak heap usage so far, in bytes, as the sum of each heap pool's peak.  The pools peak at
+     * different times, so this overestimates the true peak somewhat, but unlike sampling it can't miss a peak
+     * between samples.
+     */
+    public static long getHeapPeakBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Starts printing the progress of each running phase to the given stream at the given interval, on a
+     * daemon thread, until stopReporting() is called.
+     */
+    public synchronized void startReporting(long interval, TimeUnit unit, PrintStream out) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid reporting interval: " + interval);
+        }
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            for (String line : formatProgress()) {
+                out.println(line);
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stops printing progress, if it was started.
+     */
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /**
+     * Returns a progress line for each phase that has started and not yet ended.
+     */
+    List<String> formatProgress() {
+        List<String> lines = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Phase phase : phases.values()) {
+            if (phase.isRunning()) {
+                lines.add(phase.formatProgress(now));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns a JSON summary of the load so far: the total elapsed time, the heap high-water mark, the number of
+     * key collisions, and the counters, rates and latencies of each phase that has started.
+     */
+    public String toJson() {
+        long now = System.nanoTime();
+        StringBuilder json = new StringBuilder("{\"elapsedMillis\":").append(toMillis(now - startNanos));
+        json.append(",\"heapPeakBytes\":").append(getHeapPeakBytes());
+        json.append(",\"keyCollisions\":").append(keyCollisionCount);
+        json.append(",\"phases\":{");
+        boolean first = true;
+        for (Phase phase : phases.values()) {
+            if (phase.isStarted()) {
+                json.append(first ? "" : ",").append('"').append(phase.getName()).append("\":");
+                phase.appendJson(json, now);
+                first = false;
+            }
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Writes the JSON summary to the given file.
+     *
+     * @throws IOException if an error occurs writing the file
+     */
+    public void writeJson(File file) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+            writer.write('\n');
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * One phase of a load.
+     */
+    public static class Phase {
+        private final String name;
+        private final AtomicLong startNanos = new AtomicLong();
+        private final AtomicLong endNanos = new AtomicLong();
+        private final AtomicLong running = new AtomicLong();
+        private final LongAdder lines = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder actors = new LongAdder();
+        private final LongAdder credits = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private volatile long totalBytes = 0;
+        private volatile long totalActors = 0;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Marks the phase as running.  Starts and ends may nest, e.g. one per file, and the phase keeps
+         * running until each start has been ended.
+         */
+        public void start() {
+            startNanos.compareAndSet(0, System.nanoTime());
+            running.incrementAndGet();
+        }
+
+        public void end() {
+            long now = System.nanoTime();
+            endNanos.accumulateAndGet(now, Math::max);
+            running.decrementAndGet();
+        }
+
+        public boolean isStarted() {
+            return startNanos.get() != 0;
+        }
+
+        public boolean isRunning() {
+            return running.get() > 0;
+        }
+
+        public void addLines(long count) {
+            lines.add(count);
+        }
+
+        public void addBytes(long count) {
+            bytes.add(count);
+        }
+
+        public void addActors(long count) {
+            actors.add(count);
+        }
+
+        public void addCredits(long count) {
+            credits.add(count);
+        }
+
+        /**
+         * Records the latency of one unit of the phase's work, such as parsing a chunk or committing a
+         * transaction, which also adds to the phase's busy time.
+         */
+        public void recordLatency(long nanos) {
+            latencies.record(nanos);
+        }
+
+        /**
+         * Sets the number of bytes the phase will have handled once it's done, for estimating its time
+         * remaining.
+         */
+        public void setTotalBytes(long totalBytes) {
+            this.totalBytes = totalBytes;
+        }
+
+        /**
+         * Sets the number of actors the phase will have handled once it's done, for estimating its time
+         * remaining when it has no total bytes.
+         */
+        public void setTotalActors(long totalActors) {
+            this.totalActors = totalActors;
+        }
+
+        public long getLines() {
+            return lines.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getActors() {
+            return actors.sum();
+        }
+
+        public long getCredits() {
+            return credits.sum();
+        }
+
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * Returns the time from the phase's first start to its last end, or to now if it's still running.
+         */
+        public long getElapsedNanos() {
+            return getElapsedNanos(System.nanoTime());
+        }
+
+        private long getElapsedNanos(long now) {
+            if (!isStarted()) {
+                return 0;
+            }
+            return (isRunning() ? now : endNanos.get()) - startNanos.get();
+        }
+
+        /**
+         * Returns the estimated time until the phase is done, from its progress towards its total bytes or
+         * actors so far, or -1 if it has no total or no progress yet.
+         */
+        long getRemainingNanos(long now) {
+            long done = totalBytes > 0 ? getBytes() : getActors();
+            long total = totalBytes > 0 ? totalBytes : totalActors;
+            if (total <= 0 || done <= 0) {
+                return -1;
+            }
+            return (long) (getElapsedNanos(now) * (double) Math.max(0, total - done) / done);
+        }
+
+        String formatProgress(long now) {
+            double seconds = Math.max(1, getElapsedNanos(now)) / 1e9;
+            StringBuilder line = new StringBuilder(String.format("Progress %s: %.1fs", name, seconds));
+            if (getLines() > 0) {
+                line.append(String.format(", %d lines (%.0f/sec)", getLines(), getLines() / seconds));
+            }
+            if (getActors() > 0) {
+                line.append(String.format(", %d actors (%.0f/sec)", getActors(), getActors() / seconds));
+            }
+            if (getCredits() > 0) {
+                line.append(String.format(", %d credits (%.0f/sec)", getCredits(), getCredits() / seconds));
+            }
+            if (getBytes() > 0) {
+                line.append(String.format(", %.1f MB (%.1f MB/sec)", getBytes() / MEGABYTE,
+                        getBytes() / MEGABYTE / seconds));
+            }
+            if (latencies.getCount() > 0) {
+                line.append(String.format(", p99 %.1fms", latencies.getPercentileNanos(99) / 1e6));
+            }
+            line.append(String.format(", heap peak %.0f MB", getHeapPeakBytes() / MEGABYTE));
+            long remainingNanos = getRemainingNanos(now);
+            if (remainingNanos >= 0) {
+                line.append(String.format(", ETA %ds", TimeUnit.NANOSECONDS.toSeconds(remainingNanos)));
+            }
+            return line.toString();
+        }
+
+        void appendJson(StringBuilder json, long now) {
+            long elapsedNanos = getElapsedNanos(now);
+            double seconds = Math.max(1, elapsedNanos) / 1e9;
+            json.append("{\"elapsedMillis\":").append(toMillis(elapsedNanos));
+            json.append(",\"busyMillis\":").append(toMillis(latencies.getTotalNanos()));
+            json.append(",\"lines\":").append(getLines());
+            json.append(",\"actors\":").append(getActors());
+            json.append(",\"credits\":").append(getCredits());
+            json.append(",\"bytes\":").append(getBytes());
+            json.append(",\"linesPerSecond\":").append(Math.round(getLines() / seconds));
+            json.append(",\"actorsPerSecond\":").append(Math.round(getActors() / seconds));
+            json.append(",\"creditsPerSecond\":").append(Math.round(getCredits() / seconds));
+            json.append(",\"bytesPerSecond\":").append(Math.round(getBytes() / seconds));
+            json.append(",\"latency\":{\"count\":").append(latencies.getCount());
+            for (int percentile : new int[]{50, 90, 99}) {
+                json.append(",\"p").append(percentile).append("Micros\":");
+                json.append(TimeUnit.NANOSECONDS.toMicros(latencies.getPercentileNanos(percentile)));
+            }
+            json.append(",\"maxMicros\":").append(TimeUnit.NANOSECONDS.toMicros(latencies.getMaxNanos()));
+            json.append("}}");
+        }
+    }
+}
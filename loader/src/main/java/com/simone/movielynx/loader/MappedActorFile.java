@@ -0,0 +1,76 @@
+package com.simone.movielynx.loader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only memory mapping of an actor file.
+ * <p>
+ * A single MappedByteBuffer can only address 2GB, so the file is mapped as a sequence of fixed size
+ * segments.  All access is through absolute gets, so one instance can be shared by any number of threads.
+ */
+class MappedActorFile implements Closeable {
+    final static int SEGMENT_SHIFT = 30;
+    final static int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private final static long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    MappedActorFile(File file) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            size = channel.size();
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long segmentStart = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart,
+                        Math.min(SEGMENT_SIZE, size - segmentStart));
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size of the file in bytes.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Returns the byte at the given position of the file.
+     */
+    byte get(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * Returns the segment containing the given position of the file.
+     */
+    MappedByteBuffer getSegment(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)];
+    }
+
+    /**
+     * Returns the offset of the given position within its segment.
+     */
+    int getSegmentOffset(long position) {
+        return (int) (position & SEGMENT_MASK);
+    }
+
+    /**
+     * Closes the underlying channel.  The mapping itself is released when it is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,82 @@
+package com.simone.movielynx.loader;
+
+import java.nio.MappedByteBuffer;
+
+/**
+ * LineReader over a byte range of a MappedActorFile.
+ * <p>
+ * Line boundaries are found directly in the mapped bytes, and each byte is decoded as ISO-8859-1 (the
+ * charset of the IMDb lists) straight into the line buffer, skipping the copies made by an
+ * InputStreamReader/BufferedReader stack.
+ */
+class MappedLineReader implements LineReader {
+    private final MappedActorFile file;
+    private final long end;
+    private long position;
+    private boolean skipLineFeed = false;
+
+    private char[] line = new char[256];
+    private int length = 0;
+
+    MappedLineReader(MappedActorFile file, long start, long end) {
+        this.file = file;
+        this.position = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean readLine() {
+        length = 0;
+        while (position < end) {
+            // Second half of a "\r\n" pair
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (file.get(position) == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+
+            // Scan the rest of the current segment, or of our range if it ends first
+            MappedByteBuffer segment = file.getSegment(position);
+            int start = file.getSegmentOffset(position);
+            int limit = (int) Math.min(segment.limit(), start + (end - position));
+            int index = start;
+            byte b = 0;
+            while (index < limit && (b = segment.get(index)) != '\n' && b != '\r') {
+                if (length == line.length) {
+                    char[] grown = new char[line.length * 2];
+                    System.arraycopy(line, 0, grown, 0, length);
+                    line = grown;
+                }
+                line[length++] = (char) (b & 0xff);
+                index++;
+            }
+            position += index - start;
+
+            if (index < limit) {
+                position++;
+                skipLineFeed = b == '\r';
+                return true;
+            }
+        }
+        return length > 0;
+    }
+
+    @Override
+    public char[] getLine() {
+        return line;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the position in the file just after the current line.
+     */
+    long getPosition() {
+        return skipLineFeed && position < end && file.get(position) == '\n' ? position + 1 : position;
+    }
+}
@@ -0,0 +1,171 @@
+package com.simone.movielynx.loader;
+
+/**
+ * The parts of a movie name as ActorFileParser returns it: a title, a year, and IMDb's disambiguator for
+ * same-titled movies of the same year, e.g. "Crash (2004/II)" is Crash from 2004, disambiguator II.
+ * <p>
+ * Each movie name also has a 64-bit key, the hash of the whole name, which is what the loader's
+ * open-addressing tables compare first.  Two different names may in principle share a key, so those tables
+ * still check the names of entries whose keys match, and count any true collisions.
+ */
+public final class MovieKey {
+    /**
+     * The year of movies whose year is unknown, given as "????" in the actor files.
+     */
+    public final static int UNKNOWN_YEAR = 0;
+
+    private final String title;
+    private final int year;
+    private final int disambiguator;
+
+    public MovieKey(String title, int year, int disambiguator) {
+        if (title == null || title.isEmpty() || year < 0 || disambiguator < 0) {
+            throw new IllegalArgumentException("Invalid movie key: " + title + ", " + year + ", " + disambiguator);
+        }
+        this.title = title;
+        this.year = year;
+        this.disambiguator = disambiguator;
+    }
+
+    /**
+     * Parses a movie name of the form "title (year[/disambiguator])".
+     *
+     * @throws IllegalArgumentException if the name isn't of that form
+     */
+    public static MovieKey parse(String movie) {
+        MovieKey key = tryParse(movie);
+        if (key == null) {
+            throw new IllegalArgumentException("Invalid movie name: " + movie);
+        }
+        return key;
+    }
+
+    /**
+     * Parses a movie name of the form "title (year[/disambiguator])", or returns null if it isn't of that form.
+     */
+    public static MovieKey tryParse(String movie) {
+        int open = movie.lastIndexOf(" (");
+        if (open <= 0 || !movie.endsWith(")")) {
+            return null;
+        }
+        String group = movie.substring(open + 2, movie.length() - 1);
+        int slash = group.indexOf('/');
+        String yearString = slash < 0 ? group : group.substring(0, slash);
+        try {
+            int year = yearString.equals("????") ? UNKNOWN_YEAR : parseYear(yearString);
+            int disambiguator = slash < 0 ? 0 : parseRoman(group.substring(slash + 1));
+            return new MovieKey(movie.substring(0, open), year, disambiguator);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the 64-bit key of the given movie name.
+     */
+    public static long hash(String movie) {
+        return CreditFingerprintIndex.hash(movie);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Returns the year of the movie, or UNKNOWN_YEAR.
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Returns the movie's disambiguator among same-titled movies of the same year, 1 for "I", 2 for "II"
+     * and so on, or 0 if it has none.
+     */
+    public int getDisambiguator() {
+        return disambiguator;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof MovieKey)) {
+            return false;
+        }
+        MovieKey other = (MovieKey) o;
+        return year == other.year && disambiguator == other.disambiguator && title.equals(other.title);
+    }
+
+    @Override
+    public int hashCode() {
+        return (title.hashCode() * 31 + year) * 31 + disambiguator;
+    }
+
+    /**
+     * Returns the movie name, as ActorFileParser returns it.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(title).append(" (");
+        sb.append(year == UNKNOWN_YEAR ? "????" : String.valueOf(year));
+        if (disambiguator > 0) {
+            sb.append('/').append(toRoman(disambiguator));
+        }
+        return sb.append(')').toString();
+    }
+
+    static boolean isRomanDigit(char c) {
+        return c == 'I' || c == 'V' || c == 'X' || c == 'L' || c == 'C';
+    }
+
+    private static int parseYear(String year) {
+        for (int i = 0; i < year.length(); i++) {
+            if (year.charAt(i) < '0' || year.charAt(i) > '9') {
+                throw new NumberFormatException("Invalid year: " + year);
+            }
+        }
+        return Integer.parseInt(year);
+    }
+
+    private static int parseRoman(String roman) {
+        int value = 0;
+        for (int i = 0; i < roman.length(); i++) {
+            int digit = romanValue(roman.charAt(i));
+            int next = i + 1 < roman.length() ? romanValue(roman.charAt(i + 1)) : 0;
+            value += digit < next ? -digit : digit;
+        }
+        if (value <= 0 || !toRoman(value).equals(roman)) {
+            throw new NumberFormatException("Invalid disambiguator: " + roman);
+        }
+        return value;
+    }
+
+    private static int romanValue(char c) {
+        switch (c) {
+            case 'I':
+                return 1;
+            case 'V':
+                return 5;
+            case 'X':
+                return 10;
+            case 'L':
+                return 50;
+            case 'C':
+                return 100;
+            default:
+                throw new NumberFormatException("Invalid disambiguator digit: " + c);
+        }
+    }
+
+    private static String toRoman(int value) {
+        int[] values = {100, 90, 50, 40, 10, 9, 5, 4, 1};
+        String[] digits = {"C", "XC", "L", "XL", "X", "IX", "V", "IV", "I"};
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            while (value >= values[i]) {
+                sb.append(digits[i]);
+                value -= values[i];
+            }
+        }
+        return sb.toString();
+    }
+}
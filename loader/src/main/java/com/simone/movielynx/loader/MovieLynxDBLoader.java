@@ -1,7 +1,13 @@
 package com.simone.movielynx.loader;
 
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
 import java.io.*;
+import java.net.URI;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Class to load actor/movie data into a Neo4J graph database.
@@ -13,14 +19,45 @@ public class MovieLynxDBLoader {
     public static String NEO4J_DB_URL_ENV_VAR = "NEO4J_DB_URL";
     public static String NEO4J_DB_USER_ENV_VAR = "NEO4J_DB_USER";
     public static String NEO4J_DB_PASSWORD_ENV_VAR = "NEO4J_DB_PASSWORD";
+    public static String PARSE_THREADS_ENV_VAR = "PARSE_THREADS";
+    public static String NEO4J_BATCH_SIZE_ENV_VAR = "NEO4J_BATCH_SIZE";
+    public static String LOAD_MODE_ENV_VAR = "LOAD_MODE";
+    public static String LOAD_MODE_TRANSACTIONAL = "transactional";
+    public static String LOAD_MODE_IMPORT = "import";
+    public static String LOAD_MODE_DELTA = "delta";
+    public static String FINGERPRINT_FILE_ENV_VAR = "FINGERPRINT_FILE";
+    public static String FINGERPRINT_FILE_SUFFIX = ".fingerprints";
+    public static String GRAPH_SNAPSHOT_FILE_ENV_VAR = "GRAPH_SNAPSHOT_FILE";
+    public static String HUB_ACTORS_ENV_VAR = "HUB_ACTORS";
+    public static String HUB_COUNT_ENV_VAR = "HUB_COUNT";
+    public static String HUB_ACTORS_SEPARATOR = ";";
+    public static String PROGRESS_INTERVAL_SECONDS_ENV_VAR = "PROGRESS_INTERVAL_SECONDS";
+    public static String METRICS_FILE_ENV_VAR = "METRICS_FILE";
+    public static String COSTAR_MAX_CAST_SIZE_ENV_VAR = "COSTAR_MAX_CAST_SIZE";
+    public static int DEFAULT_BATCH_SIZE = 10000;
+    public static int DEFAULT_HUB_COUNT = 16;
+    public static int DEFAULT_PROGRESS_INTERVAL_SECONDS = 10;
+    public static int DEFAULT_COSTAR_MAX_CAST_SIZE = 100;
     public static List<String> ACTOR_FILES = Arrays.asList("actors.list", "actresses.list");
 
     // Instance variables
     private Environment environment = null;
     private File actorFilesDir = null;
+    private List<File> actorFiles = null;
     private String dbURL = null;
     private String dbUser = null;
     private String dbPassword = null;
+    private int parseThreads = 1;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private String loadMode = LOAD_MODE_TRANSACTIONAL;
+    private String fingerprintFile = null;
+    private String graphSnapshotFile = null;
+    private List<String> hubActors = null;
+    private int hubCount = DEFAULT_HUB_COUNT;
+    private int progressIntervalSeconds = DEFAULT_PROGRESS_INTERVAL_SECONDS;
+    private String metricsFile = null;
+    private int coStarMaxCastSize = DEFAULT_COSTAR_MAX_CAST_SIZE;
+    private final LoadMetrics metrics = new LoadMetrics();
 
     public static void main(String args[]) throws Exception {
         MovieLynxDBLoader loader = new MovieLynxDBLoader();
@@ -49,97 +86,374 @@ public class MovieLynxDBLoader {
         if (!actorFilesDir.exists()) {
             throw new IllegalArgumentException("Non-existent actors file directory: " + actorFilesDirString);
         }
-        List<String> fileList = new ArrayList<>();
-        if (actorFilesDir.list() != null) {
-            fileList = Arrays.asList(actorFilesDir.list());
-        }
-        for (String expectedActorFile : ACTOR_FILES) {
-            if (!fileList.contains(expectedActorFile)) {
-                throw new IllegalArgumentException("Actor file directory must contain " + expectedActorFile);
-            }
-        }
+        actorFiles = findActorFiles(actorFilesDir);
 
         // Verify Neo4J settings
         dbURL = getVerifyEnvVariable(NEO4J_DB_URL_ENV_VAR, environment);
         dbUser = getVerifyEnvVariable(NEO4J_DB_USER_ENV_VAR, environment);
         dbPassword = getVerifyEnvVariable(NEO4J_DB_PASSWORD_ENV_VAR, environment);
+
+        // Optional settings
+        parseThreads = getIntEnvVariable(PARSE_THREADS_ENV_VAR, Runtime.getRuntime().availableProcessors(),
+                environment);
+        batchSize = getIntEnvVariable(NEO4J_BATCH_SIZE_ENV_VAR, DEFAULT_BATCH_SIZE, environment);
+        if (environment.getValue(LOAD_MODE_ENV_VAR) != null) {
+            loadMode = environment.getValue(LOAD_MODE_ENV_VAR).trim();
+            if (!loadMode.equals(LOAD_MODE_TRANSACTIONAL) && !loadMode.equals(LOAD_MODE_IMPORT) &&
+                    !loadMode.equals(LOAD_MODE_DELTA)) {
+                throw new IllegalArgumentException(LOAD_MODE_ENV_VAR + " must be " + LOAD_MODE_TRANSACTIONAL +
+                        ", " + LOAD_MODE_IMPORT + " or " + LOAD_MODE_DELTA + ": " + loadMode);
+            }
+        }
+        fingerprintFile = environment.getValue(FINGERPRINT_FILE_ENV_VAR);
+        graphSnapshotFile = environment.getValue(GRAPH_SNAPSHOT_FILE_ENV_VAR);
+        if (environment.getValue(HUB_ACTORS_ENV_VAR) != null) {
+            hubActors = new ArrayList<>();
+            for (String hubActor : environment.getValue(HUB_ACTORS_ENV_VAR).split(HUB_ACTORS_SEPARATOR)) {
+                if (!hubActor.trim().isEmpty()) {
+                    hubActors.add(hubActor.trim());
+                }
+            }
+        }
+        hubCount = getIntEnvVariable(HUB_COUNT_ENV_VAR, DEFAULT_HUB_COUNT, environment);
+        progressIntervalSeconds = getIntEnvVariable(PROGRESS_INTERVAL_SECONDS_ENV_VAR,
+                DEFAULT_PROGRESS_INTERVAL_SECONDS, environment);
+        metricsFile = environment.getValue(METRICS_FILE_ENV_VAR);
+        coStarMaxCastSize = getIntEnvVariable(COSTAR_MAX_CAST_SIZE_ENV_VAR, DEFAULT_COSTAR_MAX_CAST_SIZE,
+                environment);
+        if (coStarMaxCastSize == 1 || coStarMaxCastSize < 0) {
+            throw new IllegalArgumentException(COSTAR_MAX_CAST_SIZE_ENV_VAR + " must be 0 or at least 2");
+        }
     }
 
     /**
-     * Loads our Environment's actor files into our given Neo4J DB.
+     * Loads our Environment's actor files into our given Neo4J DB, either transactionally into the existing
+     * store, in import mode by building a fresh store offline and swapping it in, or in delta mode by only
+     * writing the actors that changed since the previous load.
+     * <p>
+     * Every load records a fingerprint of each actor's credits in the fingerprint file, which delta mode
+     * compares against.  A delta load without a fingerprint file from a previous load does a full load.  If a
+     * graph snapshot file is configured, the loaded graph is also written to it, for the Backend App, along
+     * with the distances from the configured hub actors, or from the most credited actors if none are
+     * configured, and with each actor's co-stars in movies of up to the configured cast size.
+     * <p>
+     * While loading, the progress of each running phase is printed every progress interval, and at the end a
+     * JSON summary of the load's metrics is printed, and written to the metrics file if one is configured.
      *
      * @throws IOException if an error occurs reading actor data or loading into Neo4J
      */
     public void load() throws IOException {
+        if (progressIntervalSeconds > 0) {
+            metrics.startReporting(progressIntervalSeconds, TimeUnit.SECONDS, System.out);
+        }
+        try {
+            loadAll();
+        } finally {
+            metrics.stopReporting();
+        }
+        String summary = metrics.toJson();
+        System.out.println("Load metrics: " + summary);
+        if (metricsFile != null) {
+            metrics.writeJson(new File(metricsFile));
+        }
+    }
 
-        // Build up a master map of all actors->movies
-        Map<String, List<String>> masterMap = new HashMap<>();
-        ActorFileParser actorFileParser = new ActorFileParser();
-        for (String actorFileName : ACTOR_FILES) {
-            File actorFile = new File(actorFilesDir.getAbsoluteFile() + File.separator + actorFileName);
-            masterMap.putAll(actorFileParser.parseMovieList(new FileInputStream(actorFile)));
-        }
-
-/*
-        System.out.println("LOADING");
-
-
-        int i = 1;
-        int total = map.keySet().size();
-        Label actorLabel = DynamicLabel.label("Actor");
-        Label movieLabel = DynamicLabel.label("Movie");
-
-        Transaction tx = neo4jDB.beginTx();
-        long stamp = System.currentTimeMillis();
-        for (String actor : map.keySet()) {
-            if (i % 1000 == 0) {
-                tx.success();
-                tx = neo4jDB.beginTx();
-                System.out.println(actor + " %" + Math.round((double) i / (double) total * 10000) / (double) 100);
-                long x = System.currentTimeMillis();
-                System.out.println(x - stamp);
-                stamp = x;
-            }
-            //System.out.println(i++);
+    private void loadAll() throws IOException {
+        File storeDir = getStoreDir();
+        File fingerprintFile = getFingerprintFile(storeDir);
+        CreditGraph creditGraph = buildCreditGraph();
+        CreditFingerprintIndex fingerprints = CreditFingerprintIndex.of(creditGraph);
 
-            Node actorNode = null;
+        if (loadMode.equals(LOAD_MODE_IMPORT)) {
+            importStore(creditGraph, storeDir);
+        } else {
+            GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir);
             try {
-                actorNode = neo4jDB.findNode(actorLabel, "id", actor);
-            } catch (NoSuchElementException e) {
-                //System.out.println("GOT IT FOR " + actor);
+                if (loadMode.equals(LOAD_MODE_DELTA) && fingerprintFile.exists()) {
+                    loadDelta(creditGraph, fingerprints, CreditFingerprintIndex.read(fingerprintFile), graphDb);
+                } else {
+                    load(creditGraph, graphDb);
+                }
+            } finally {
+                graphDb.shutdown();
             }
-            if (actorNode == null) {
-                actorNode = neo4jDB.createNode(actorLabel);
+        }
+        fingerprints.write(fingerprintFile);
+        if (graphSnapshotFile != null) {
+            GraphSnapshot.write(creditGraph, computeHubDistances(creditGraph), computeCoStars(creditGraph),
+                    new File(graphSnapshotFile));
+            System.out.println("Wrote graph snapshot " + graphSnapshotFile);
+        }
+    }
+
+    /**
+     * Loads our Environment's actor files into the given Neo4J DB.
+     *
+     * @param graphDb the graph to load into
+     * @throws IOException if an error occurs reading actor data or loading into Neo4J
+     */
+    public void load(GraphDatabaseService graphDb) throws IOException {
+        load(buildCreditGraph(), graphDb);
+    }
+
+    private void load(CreditGraph creditGraph, GraphDatabaseService graphDb) {
+        System.out.println("Loading " + creditGraph.getActorCount() + " actors");
+        startWrite(creditGraph.getActorCount());
+        try {
+            Neo4jBulkWriter writer = new Neo4jBulkWriter(graphDb, batchSize, false, metrics);
+            for (int actorId = 0; actorId < creditGraph.getActorCount(); actorId++) {
+                ActorCredits credits = creditGraph.getActorCredits(actorId);
+                writer.handle(credits);
+                countWritten(credits);
             }
-            actorNode.setProperty("id", actor);
+            writer.finish();
+        } finally {
+            endWrite();
+        }
+    }
 
-            for (String movie : map.get(actor)) {
-                //System.out.println("   " + movie);
-                Node movieNode = null;
-                try {
-                    movieNode = neo4jDB.findNode(movieLabel, "id", movie);
-                } catch (NoSuchElementException e) {
-                    //System.out.println("GOT IT FOR " + actor + " " + movie);
+    /**
+     * Builds a fresh Neo4J store from our Environment's actor files with the batch inserter, replacing the
+     * store in the given directory once the new one is complete.  No database may have the store open.
+     *
+     * @param storeDir the store directory to replace
+     * @throws IOException if an error occurs reading actor data or writing the store
+     */
+    public void importStore(File storeDir) throws IOException {
+        importStore(buildCreditGraph(), storeDir);
+    }
+
+    private void importStore(CreditGraph creditGraph, File storeDir) throws IOException {
+        System.out.println("Importing " + creditGraph.getActorCount() + " actors");
+        startWrite(creditGraph.getActorCount());
+        try {
+            Neo4jStoreImporter importer = new Neo4jStoreImporter(storeDir);
+            try {
+                for (int actorId = 0; actorId < creditGraph.getActorCount(); actorId++) {
+                    ActorCredits credits = creditGraph.getActorCredits(actorId);
+                    importer.handle(credits);
+                    countWritten(credits);
                 }
-                if (movieNode == null) {
-                    movieNode = neo4jDB.createNode(movieLabel);
+                // The import only becomes a usable store once it's finished, so that's what it commits
+                long commitStart = System.nanoTime();
+                importer.finish();
+                metrics.getPhase(LoadMetrics.COMMIT).recordLatency(System.nanoTime() - commitStart);
+            } catch (Throwable e) {
+                // Whatever failed, don't leave the inserter open or the half-built store behind
+                try {
+                    importer.abort();
+                } catch (IOException | RuntimeException abortException) {
+                    e.addSuppressed(abortException);
                 }
-                movieNode.setProperty("id", movie);
-                boolean foundRelationship = false;
-                for (Relationship r : actorNode.getRelationships(MyRelationshipTypes.ACTED_IN)) {
-                    if (movieNode.equals(r.getEndNode())) {
-                        foundRelationship = true;
+                throw e;
+            }
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Writes only the actors whose credits were added or changed since the previous load, replacing their
+     * existing credits, and deletes the actors that are gone.
+     */
+    private void loadDelta(CreditGraph creditGraph, CreditFingerprintIndex fingerprints,
+                           CreditFingerprintIndex previousFingerprints, GraphDatabaseService graphDb) {
+        int[] changedActors = fingerprints.getChangedActors(creditGraph, previousFingerprints);
+        long[] removedActors = fingerprints.getRemovedActors(previousFingerprints);
+        System.out.println(String.format("Delta: %d actors added or changed, %d removed, %d unchanged",
+                changedActors.length, removedActors.length, creditGraph.getActorCount() - changedActors.length));
+
+        startWrite(changedActors.length);
+        try {
+            Neo4jBulkWriter writer = new Neo4jBulkWriter(graphDb, batchSize, true, metrics);
+            for (int actorId : changedActors) {
+                ActorCredits credits = creditGraph.getActorCredits(actorId);
+                writer.handle(credits);
+                countWritten(credits);
+            }
+            if (removedActors.length > 0) {
+                writer.removeActors(actor ->
+                        Arrays.binarySearch(removedActors, CreditFingerprintIndex.hash(actor)) >= 0);
+            }
+            writer.finish();
+        } finally {
+            endWrite();
+        }
+    }
+
+    private void startWrite(int actorCount) {
+        metrics.getPhase(LoadMetrics.WRITE).setTotalActors(actorCount);
+        metrics.getPhase(LoadMetrics.WRITE).start();
+        metrics.getPhase(LoadMetrics.COMMIT).start();
+    }
+
+    private void countWritten(ActorCredits credits) {
+        LoadMetrics.Phase write = metrics.getPhase(LoadMetrics.WRITE);
+        write.addActors(1);
+        write.addCredits(credits.getMovies().size());
+    }
+
+    private void endWrite() {
+        metrics.getPhase(LoadMetrics.WRITE).end();
+        metrics.getPhase(LoadMetrics.COMMIT).end();
+    }
+
+    /**
+     * Parses our Environment's actor files into a single graph of all actor->movie credits, with every actor
+     * and movie interned to a dense int ID.  An actor found more than once, typically in both actor files,
+     * gets the union of all their credits.
+     *
+     * @throws IOException if an error occurs reading actor data
+     */
+    public CreditGraph buildCreditGraph() throws IOException {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        parseActorFiles(builder);
+        System.out.println("Merged " + builder.getCollisionCount() + " duplicate actor entries, found " +
+                builder.getKeyCollisionCount() + " name key collisions");
+        metrics.setKeyCollisionCount(builder.getKeyCollisionCount());
+
+        LoadMetrics.Phase merge = metrics.getPhase(LoadMetrics.MERGE);
+        merge.start();
+        long startTime = System.nanoTime();
+        CreditGraph creditGraph = builder.build();
+        merge.recordLatency(System.nanoTime() - startTime);
+        merge.addActors(creditGraph.getActorCount());
+        merge.addCredits(creditGraph.getCreditCount());
+        merge.end();
+        return creditGraph;
+    }
+
+    /**
+     * Parses our Environment's actor files, streaming each actor's credits to the given handler as soon as
+     * it has been parsed.  The handler sees credits in ACTOR_FILES order, even when the files are parsed
+     * in parallel.
+     *
+     * @param handler the handler to pass each actor's credits to
+     * @throws IOException if an error occurs reading actor data, or in the handler
+     */
+    public void parseActorFiles(ActorCreditsHandler handler) throws IOException {
+        if (parseThreads > 1) {
+            new ParallelActorFileParser(parseThreads, metrics).parseMovieLists(actorFiles, handler);
+        } else {
+            // Only counts whole files as read, and doesn't time parsing apart from reading
+            ActorFileParser actorFileParser = new ActorFileParser(metrics);
+            LoadMetrics.Phase read = metrics.getPhase(LoadMetrics.READ);
+            LoadMetrics.Phase parse = metrics.getPhase(LoadMetrics.PARSE);
+            read.setTotalBytes(actorFiles.stream().mapToLong(File::length).sum());
+            read.start();
+            parse.start();
+            try {
+                for (File actorFile : actorFiles) {
+                    if (ParallelActorFileParser.isGzipFile(actorFile)) {
+                        actorFileParser.parseMovieList(new GZIPInputStream(new FileInputStream(actorFile)), handler);
+                    } else {
+                        actorFileParser.parseMovieList(actorFile, handler);
                     }
+                    read.addBytes(actorFile.length());
                 }
-                if (!foundRelationship) {
-                    actorNode.createRelationshipTo(movieNode, MyRelationshipTypes.ACTED_IN);
-                }
+            } finally {
+                read.end();
+                parse.end();
             }
+        }
+    }
 
-            i++;
+    /**
+     * Returns the actor files in the given directory, in ACTOR_FILES order.  Each actor file may be either
+     * extracted or still gzipped, preferring the extracted one.
+     *
+     * @param actorFilesDir the directory to look in
+     * @throws IllegalArgumentException if one of the actor files is missing
+     */
+    public static List<File> findActorFiles(File actorFilesDir) {
+        List<File> actorFiles = new ArrayList<>();
+        List<String> fileList = new ArrayList<>();
+        if (actorFilesDir.list() != null) {
+            fileList = Arrays.asList(actorFilesDir.list());
+        }
+        for (String expectedActorFile : ACTOR_FILES) {
+            String gzipActorFile = expectedActorFile + ".gz";
+            if (fileList.contains(expectedActorFile)) {
+                actorFiles.add(new File(actorFilesDir.getAbsoluteFile() + File.separator + expectedActorFile));
+            } else if (fileList.contains(gzipActorFile)) {
+                actorFiles.add(new File(actorFilesDir.getAbsoluteFile() + File.separator + gzipActorFile));
+            } else {
+                throw new IllegalArgumentException("Actor file directory must contain " + expectedActorFile +
+                        " or " + gzipActorFile);
+            }
         }
-        tx.success();
-    */
+        return actorFiles;
+    }
+
+    /**
+     * Returns the embedded store directory our DB URL points to.  Only local stores are supported, given
+     * either as a plain path or as a file: URL.
+     */
+    private File getStoreDir() {
+        if (dbURL.startsWith("file:")) {
+            return new File(URI.create(dbURL));
+        }
+        if (dbURL.matches("^[a-zA-Z][a-zA-Z0-9+.-]+://.*")) {
+            throw new IllegalArgumentException("Only local Neo4J stores are supported: " + dbURL);
+        }
+        return new File(dbURL);
+    }
+
+    /**
+     * Computes the distances from the hub actors for the graph snapshot, searching from a hub per parse
+     * thread at a time.  Returns null if there are no hubs.
+     */
+    HubDistanceIndex computeHubDistances(CreditGraph graph) throws IOException {
+        int[] hubActorIds;
+        if (hubActors != null) {
+            hubActorIds = HubDistanceIndex.findActors(graph, hubActors);
+            if (hubActorIds.length < hubActors.size()) {
+                System.out.println("Skipped " + (hubActors.size() - hubActorIds.length) +
+                        " unknown or duplicate hub actors");
+            }
+        } else {
+            hubActorIds = HubDistanceIndex.selectHubs(graph, hubCount);
+        }
+        if (hubActorIds.length == 0) {
+            return null;
+        }
+        long startTime = System.currentTimeMillis();
+        HubDistanceIndex hubDistances = HubDistanceIndex.compute(graph, hubActorIds, parseThreads);
+        System.out.println("Computed distances from " + hubActorIds.length + " hub actors in " +
+                (System.currentTimeMillis() - startTime) + "ms");
+        return hubDistances;
+    }
+
+    /**
+     * Computes the co-stars of every actor for the graph snapshot, on the parse threads.  Returns null if the
+     * co-stars are disabled.
+     */
+    CoStarIndex computeCoStars(CreditGraph graph) throws IOException {
+        if (coStarMaxCastSize == 0) {
+            return null;
+        }
+        long startTime = System.currentTimeMillis();
+        CoStarIndex coStars = CoStarIndex.compute(graph, coStarMaxCastSize, parseThreads);
+        System.out.println("Computed " + coStars.getCoStarCount() + " co-stars in movies of up to " +
+                coStarMaxCastSize + " actors in " + (System.currentTimeMillis() - startTime) + "ms");
+        return coStars;
+    }
+
+    /**
+     * Returns the fingerprint file of the given store, which defaults to a file next to the store directory.
+     */
+    private File getFingerprintFile(File storeDir) {
+        if (fingerprintFile != null) {
+            return new File(fingerprintFile);
+        }
+        return new File(storeDir.getAbsolutePath() + FINGERPRINT_FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the metrics of the loads run by this loader so far.
+     */
+    public LoadMetrics getMetrics() {
+        return metrics;
     }
 
     private String getVerifyEnvVariable(String variable, Environment environment) {
@@ -149,4 +463,16 @@ public class MovieLynxDBLoader {
         }
         return value;
     }
+
+    private int getIntEnvVariable(String variable, int defaultValue, Environment environment) {
+        String value = environment.getValue(variable);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(variable + " must be an integer: " + value);
+        }
+    }
 }
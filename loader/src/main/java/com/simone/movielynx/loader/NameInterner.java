@@ -0,0 +1,114 @@
+package com.simone.movielynx.loader;
+
+import java.util.Arrays;
+
+/**
+ * Assigns each distinct name a dense int ID, starting at 0 in the order the names are first seen, and keeps a
+ * single copy of each name.
+ * <p>
+ * IDs are kept in an open-addressing table of primitive ints rather than a HashMap, so that millions of names
+ * cost a few bytes each on top of the names themselves.  Each name is keyed by its 64-bit hash, the same one
+ * MovieKey and CreditFingerprintIndex use, and names are only compared when their keys match, so a lookup
+ * almost never compares more than the one name it finds.  Names that differ despite matching keys are kept
+ * apart, and each name added with the same key as a name already in the table is counted once, as a
+ * collision.  Instances are not thread-safe.
+ */
+class NameInterner {
+    private final static int INITIAL_CAPACITY = 1024;
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private long[] hashes = new long[INITIAL_CAPACITY];
+    // ID + 1 of the name in each slot, 0 for an empty slot
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+    private int size = 0;
+    private long collisionCount = 0;
+
+    /**
+     * Returns the ID of the given name, assigning it the next ID if it hasn't been seen before.
+     */
+    int intern(String name) {
+        long hash = CreditFingerprintIndex.hash(name);
+        int mask = table.length - 1;
+        boolean collides = false;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return add(name, hash, slot, collides);
+            }
+            if (hashes[entry - 1] == hash) {
+                if (names[entry - 1].equals(name)) {
+                    return entry - 1;
+                }
+                collides = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the ID of the given name, or -1 if it hasn't been interned.
+     */
+    int getId(String name) {
+        long hash = CreditFingerprintIndex.hash(name);
+        int mask = table.length - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (hashes[entry - 1] == hash && names[entry - 1].equals(name)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the name with the given ID.
+     */
+    String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the number of distinct names interned so far.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct names that were added with the same 64-bit key as a name added before.
+     */
+    long getCollisionCount() {
+        return collisionCount;
+    }
+
+    private int add(String name, long hash, int slot, boolean collides) {
+        if (collides) {
+            collisionCount++;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        names[size] = name;
+        hashes[size] = hash;
+        table[slot] = ++size;
+        // Keep the table at most half full
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = (int) hashes[id] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+}
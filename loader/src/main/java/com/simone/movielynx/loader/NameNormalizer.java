@@ -0,0 +1,86 @@
+package com.simone.movielynx.loader;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Normalizes names for searching, so that they match however they're typed: case and accents are dropped,
+ * punctuation within words is dropped ("O'Brien" becomes "obrien"), other punctuation separates words, and
+ * parenthesized parts such as IMDb's "(I)" disambiguators are left out.  The result is a lowercase string of
+ * words separated by single spaces.
+ */
+public class NameNormalizer {
+
+    private NameNormalizer() {
+    }
+
+    public static String normalize(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        int parenthesisDepth = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (c == '(') {
+                parenthesisDepth++;
+                pendingSpace = true;
+            } else if (c == ')') {
+                parenthesisDepth = Math.max(0, parenthesisDepth - 1);
+                pendingSpace = true;
+            } else if (parenthesisDepth > 0 || Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            } else if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                pendingSpace = false;
+                appendFolded(sb, c);
+            } else if (Character.isWhitespace(c) || c == '-' || c == ',' || c == '/' || c == '&') {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the given letter or digit in lowercase, spelling out the letters that have no decomposition.
+     */
+    private static void appendFolded(StringBuilder sb, char c) {
+        switch (c) {
+            case '\u00D8':
+            case '\u00F8':
+                sb.append('o');
+                break;
+            case '\u00C6':
+            case '\u00E6':
+                sb.append("ae");
+                break;
+            case '\u0152':
+            case '\u0153':
+                sb.append("oe");
+                break;
+            case '\u00DF':
+                sb.append("ss");
+                break;
+            case '\u0141':
+            case '\u0142':
+                sb.append('l');
+                break;
+            case '\u0110':
+            case '\u0111':
+            case '\u00D0':
+            case '\u00F0':
+                sb.append('d');
+                break;
+            case '\u00DE':
+            case '\u00FE':
+                sb.append("th");
+                break;
+            case '\u0131':
+                sb.append('i');
+                break;
+            default:
+                sb.append(String.valueOf(c).toLowerCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.simone.movielynx.loader;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An index of actor names by the prefixes of their words, for autocompleting names as they're typed.
+ * <p>
+ * Every actor's name is normalized with NameNormalizer, and the index has an entry for each word of each
+ * normalized name, pointing at where that word starts.  The entries are sorted by the normalized name bytes
+ * from their word to the end of the name, so the entries matching a typed prefix, whether the start of the
+ * first name or of the surname, are a contiguous range found by binary search.  Everything is held in
+ * primitive arrays, so that it can be written to the graph snapshot and searched in place.
+ */
+public class NameSuggestIndex {
+    private final int[] nameOffsets;
+    private final byte[] nameBytes;
+    private final int[] entryPositions;
+    private final int[] entryActorIds;
+
+    /**
+     * @param nameOffsets    the offsets of each actor's normalized name in nameBytes, with actorCount + 1 entries
+     * @param nameBytes      the normalized names, in UTF-8
+     * @param entryPositions the positions of the indexed words in nameBytes, in sorted order
+     * @param entryActorIds  the actor ID of each entry
+     */
+    public NameSuggestIndex(int[] nameOffsets, byte[] nameBytes, int[] entryPositions, int[] entryActorIds) {
+        this.nameOffsets = nameOffsets;
+        this.nameBytes = nameBytes;
+        this.entryPositions = entryPositions;
+        this.entryActorIds = entryActorIds;
+    }
+
+    /**
+     * Builds the index of the given graph's actor names.
+     */
+    public static NameSuggestIndex of(CreditGraph graph) {
+        byte[][] names = new byte[graph.getActorCount()][];
+        int[] nameOffsets = new int[names.length + 1];
+        int entryCount = 0;
+        for (int actorId = 0; actorId < names.length; actorId++) {
+            names[actorId] = NameNormalizer.normalize(graph.getActorName(actorId)).getBytes(StandardCharsets.UTF_8);
+            nameOffsets[actorId + 1] = nameOffsets[actorId] + names[actorId].length;
+            entryCount += countWords(names[actorId]);
+        }
+        byte[] nameBytes = new byte[nameOffsets[names.length]];
+        int[] positions = new int[entryCount];
+        int[] actorIds = new int[entryCount];
+        int entry = 0;
+        for (int actorId = 0; actorId < names.length; actorId++) {
+            byte[] name = names[actorId];
+            System.arraycopy(name, 0, nameBytes, nameOffsets[actorId], name.length);
+            for (int i = 0; i < name.length; i++) {
+                if (i == 0 || name[i - 1] == ' ') {
+                    positions[entry] = nameOffsets[actorId] + i;
+                    actorIds[entry++] = actorId;
+                }
+            }
+        }
+
+        int[] order = new int[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[entryCount], 0, entryCount, positions, actorIds, nameOffsets, nameBytes);
+        int[] entryPositions = new int[entryCount];
+        int[] entryActorIds = new int[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            entryPositions[i] = positions[order[i]];
+            entryActorIds[i] = actorIds[order[i]];
+        }
+        return new NameSuggestIndex(nameOffsets, nameBytes, entryPositions, entryActorIds);
+    }
+
+    public int[] getNameOffsets() {
+        return nameOffsets;
+    }
+
+    public byte[] getNameBytes() {
+        return nameBytes;
+    }
+
+    public int[] getEntryPositions() {
+        return entryPositions;
+    }
+
+    public int[] getEntryActorIds() {
+        return entryActorIds;
+    }
+
+    private static int countWords(byte[] name) {
+        int count = 0;
+        for (int i = 0; i < name.length; i++) {
+            if (i == 0 || name[i - 1] == ' ') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sorts the given entry indexes by their names from their positions on, then by actor ID.  A merge sort on
+     * the primitive indexes avoids boxing the millions of entries of a full graph.
+     */
+    private static void mergeSort(int[] order, int[] scratch, int from, int to, int[] positions, int[] actorIds,
+                                  int[] nameOffsets, byte[] nameBytes) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, scratch, from, middle, positions, actorIds, nameOffsets, nameBytes);
+        mergeSort(order, scratch, middle, to, positions, actorIds, nameOffsets, nameBytes);
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right == to || (left < middle && compareEntries(scratch[left], scratch[right], positions, actorIds,
+                    nameOffsets, nameBytes) <= 0)) {
+                order[i] = scratch[left++];
+            } else {
+                order[i] = scratch[right++];
+            }
+        }
+    }
+
+    private static int compareEntries(int entry1, int entry2, int[] positions, int[] actorIds, int[] nameOffsets,
+                                      byte[] nameBytes) {
+        int position1 = positions[entry1];
+        int position2 = positions[entry2];
+        int length1 = nameOffsets[actorIds[entry1] + 1] - position1;
+        int length2 = nameOffsets[actorIds[entry2] + 1] - position2;
+        for (int i = 0; i < Math.min(length1, length2); i++) {
+            int b1 = nameBytes[position1 + i] & 0xff;
+            int b2 = nameBytes[position2 + i] & 0xff;
+            if (b1 != b2) {
+                return b1 - b2;
+            }
+        }
+        if (length1 != length2) {
+            return length1 - length2;
+        }
+        return Integer.compare(actorIds[entry1], actorIds[entry2]);
+    }
+}
@@ -0,0 +1,341 @@
+package com.simone.movielynx.loader;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.schema.IndexDefinition;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Writes actor credits into a Neo4J graph as (:Actor)-[:ACTED_IN]->(:Movie), in transactions of a fixed
+ * number of rows.
+ * <p>
+ * Every node is looked up at most once: node IDs are cached by name as soon as a node has been found or
+ * created, so later credits for the same actor or movie go straight to the cached node.  ACTED_IN
+ * relationships are de-duplicated in memory against the actor's existing relationships, so re-running a load
+ * into a populated store doesn't duplicate anything.  When the store starts out without any actors or
+ * movies, the index lookups are skipped altogether.
+ * <p>
+ * A writer that replaces credits also removes any ACTED_IN relationships of a written actor that are not in
+ * the actor's new credits, and deletes movies that are left without any actor, for delta loads.
+ * <p>
+ * Given LoadMetrics, the writer records the latency of each transaction's commit in the commit phase.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class Neo4jBulkWriter implements ActorCreditsHandler {
+    public final static Label ACTOR_LABEL = DynamicLabel.label("Actor");
+    public final static Label MOVIE_LABEL = DynamicLabel.label("Movie");
+    public final static RelationshipType ACTED_IN = DynamicRelationshipType.withName("ACTED_IN");
+    public final static String ID_PROPERTY = "id";
+    public final static String TITLE_PROPERTY = "title";
+    public final static String YEAR_PROPERTY = "year";
+
+    private final static long PROGRESS_INTERVAL_MILLIS = 10000;
+
+    private final GraphDatabaseService graphDb;
+    private final int batchSize;
+    private final boolean emptyStore;
+    private final boolean replaceCredits;
+    private final LoadMetrics metrics;
+    private final NodeIdTable actorNodeIds = new NodeIdTable();
+    private final NodeIdTable movieNodeIds = new NodeIdTable();
+
+    private Transaction transaction = null;
+    private int batchRows = 0;
+    private long actorCount = 0;
+    private long movieCount = 0;
+    private long relationshipCount = 0;
+    private long removedActorCount = 0;
+    private long removedMovieCount = 0;
+    private long removedRelationshipCount = 0;
+    private final long startTime = System.currentTimeMillis();
+    private long lastProgressTime = startTime;
+
+    /**
+     * Creates a new writer, creating the Actor and Movie indexes if they don't exist yet.
+     *
+     * @param graphDb   the graph to write to
+     * @param batchSize the number of rows (nodes plus relationships) to write per transaction
+     */
+    public Neo4jBulkWriter(GraphDatabaseService graphDb, int batchSize) {
+        this(graphDb, batchSize, false);
+    }
+
+    /**
+     * Creates a new writer, creating the Actor and Movie indexes if they don't exist yet.
+     *
+     * @param graphDb        the graph to write to
+     * @param batchSize      the number of rows (nodes plus relationships) to write per transaction
+     * @param replaceCredits whether each written actor's credits replace the actor's existing ones, rather
+     *                       than being added to them
+     */
+    public Neo4jBulkWriter(GraphDatabaseService graphDb, int batchSize, boolean replaceCredits) {
+        this(graphDb, batchSize, replaceCredits, null);
+    }
+
+    /**
+     * Creates a new writer, creating the Actor and Movie indexes if they don't exist yet.
+     *
+     * @param graphDb        the graph to write to
+     * @param batchSize      the number of rows (nodes plus relationships) to write per transaction
+     * @param replaceCredits whether each written actor's credits replace the actor's existing ones, rather
+     *                       than being added to them
+     * @param metrics        the metrics to record commit latencies in, or null
+     */
+    public Neo4jBulkWriter(GraphDatabaseService graphDb, int batchSize, boolean replaceCredits,
+                           LoadMetrics metrics) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        this.graphDb = graphDb;
+        this.batchSize = batchSize;
+        this.replaceCredits = replaceCredits;
+        this.metrics = metrics;
+        createIndexes();
+        try (Transaction tx = graphDb.beginTx()) {
+            emptyStore = !graphDb.findNodes(ACTOR_LABEL).hasNext() && !graphDb.findNodes(MOVIE_LABEL).hasNext();
+            tx.success();
+        }
+    }
+
+    /**
+     * Writes the given actor's credits.
+     *
+     * @param credits the actor's credits
+     */
+    @Override
+    public void handle(ActorCredits credits) {
+        if (transaction == null) {
+            transaction = graphDb.beginTx();
+        }
+
+        // Movies this actor is already linked to, to avoid duplicate relationships
+        Set<Long> linkedMovieIds = new HashSet<>();
+        Node actorNode = getOrCreateNode(ACTOR_LABEL, credits.getActor(), actorNodeIds, linkedMovieIds);
+        Set<Long> creditedMovieIds = replaceCredits ? new HashSet<>() : null;
+        for (String movie : credits.getMovies()) {
+            Node movieNode = getOrCreateNode(MOVIE_LABEL, movie, movieNodeIds, null);
+            if (creditedMovieIds != null) {
+                creditedMovieIds.add(movieNode.getId());
+            }
+            if (linkedMovieIds.add(movieNode.getId())) {
+                actorNode.createRelationshipTo(movieNode, ACTED_IN);
+                relationshipCount++;
+                batchRows++;
+            }
+        }
+        if (creditedMovieIds != null && linkedMovieIds.size() > creditedMovieIds.size()) {
+            removeCredits(actorNode, creditedMovieIds);
+        }
+
+        if (batchRows >= batchSize) {
+            commit();
+        }
+    }
+
+    /**
+     * Deletes every actor whose name matches the given predicate, along with the actor's relationships and any
+     * movies left without an actor.  The actors are found by scanning all actor nodes.
+     *
+     * @param isRemoved the predicate matching the names of the actors to delete
+     */
+    public void removeActors(Predicate<String> isRemoved) {
+        commit();
+        List<Long> removedNodeIds = new ArrayList<>();
+        try (Transaction tx = graphDb.beginTx()) {
+            ResourceIterator<Node> actors = graphDb.findNodes(ACTOR_LABEL);
+            while (actors.hasNext()) {
+                Node actor = actors.next();
+                if (isRemoved.test((String) actor.getProperty(ID_PROPERTY))) {
+                    removedNodeIds.add(actor.getId());
+                }
+            }
+            tx.success();
+        }
+
+        for (long nodeId : removedNodeIds) {
+            if (transaction == null) {
+                transaction = graphDb.beginTx();
+            }
+            Node actorNode = graphDb.getNodeById(nodeId);
+            actorNodeIds.remove((String) actorNode.getProperty(ID_PROPERTY));
+            removeCredits(actorNode, Collections.<Long>emptySet());
+            actorNode.delete();
+            removedActorCount++;
+            batchRows++;
+            if (batchRows >= batchSize) {
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Commits any remaining writes and reports the final totals.
+     */
+    public void finish() {
+        commit();
+        reportProgress();
+    }
+
+    /**
+     * Returns the number of actor nodes created or matched so far.
+     */
+    public long getActorCount() {
+        return actorCount;
+    }
+
+    /**
+     * Returns the number of movie nodes created or matched so far.
+     */
+    public long getMovieCount() {
+        return movieCount;
+    }
+
+    /**
+     * Returns the number of relationships created so far.
+     */
+    public long getRelationshipCount() {
+        return relationshipCount;
+    }
+
+    /**
+     * Returns the number of actor nodes deleted so far.
+     */
+    public long getRemovedActorCount() {
+        return removedActorCount;
+    }
+
+    /**
+     * Returns the number of relationships deleted so far.
+     */
+    public long getRemovedRelationshipCount() {
+        return removedRelationshipCount;
+    }
+
+    private Node getOrCreateNode(Label label, String id, NodeIdTable nodeIds, Set<Long> linkedMovieIds) {
+        long nodeId = nodeIds.get(id);
+        if (nodeId >= 0) {
+            Node node = graphDb.getNodeById(nodeId);
+            if (linkedMovieIds != null) {
+                addLinkedMovieIds(node, linkedMovieIds);
+            }
+            return node;
+        }
+
+        Node node = emptyStore ? null : graphDb.findNode(label, ID_PROPERTY, id);
+        if (node != null) {
+            if (linkedMovieIds != null) {
+                addLinkedMovieIds(node, linkedMovieIds);
+            }
+        } else {
+            node = graphDb.createNode(label);
+            for (Map.Entry<String, Object> property : getNodeProperties(label, id).entrySet()) {
+                node.setProperty(property.getKey(), property.getValue());
+            }
+            batchRows++;
+        }
+        nodeIds.put(id, node.getId());
+        if (label == ACTOR_LABEL) {
+            actorCount++;
+        } else {
+            movieCount++;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the properties of a new node: its ID, and for movies, the title and year, if known, that make up
+     * the movie's name.
+     */
+    static Map<String, Object> getNodeProperties(Label label, String id) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put(ID_PROPERTY, id);
+        MovieKey movieKey = label == MOVIE_LABEL ? MovieKey.tryParse(id) : null;
+        if (movieKey != null) {
+            properties.put(TITLE_PROPERTY, movieKey.getTitle());
+            if (movieKey.getYear() != MovieKey.UNKNOWN_YEAR) {
+                properties.put(YEAR_PROPERTY, movieKey.getYear());
+            }
+        }
+        return properties;
+    }
+
+    private void addLinkedMovieIds(Node actorNode, Set<Long> linkedMovieIds) {
+        for (Relationship relationship : actorNode.getRelationships(Direction.OUTGOING, ACTED_IN)) {
+            linkedMovieIds.add(relationship.getEndNode().getId());
+        }
+    }
+
+    /**
+     * Deletes the given actor's ACTED_IN relationships to movies other than the given ones, and any movie
+     * left without an actor.
+     */
+    private void removeCredits(Node actorNode, Set<Long> keptMovieIds) {
+        for (Relationship relationship : actorNode.getRelationships(Direction.OUTGOING, ACTED_IN)) {
+            Node movieNode = relationship.getEndNode();
+            if (!keptMovieIds.contains(movieNode.getId())) {
+                relationship.delete();
+                removedRelationshipCount++;
+                batchRows++;
+                if (movieNode.getDegree() == 0) {
+                    movieNodeIds.remove((String) movieNode.getProperty(ID_PROPERTY));
+                    movieNode.delete();
+                    removedMovieCount++;
+                    batchRows++;
+                }
+            }
+        }
+    }
+
+    private void commit() {
+        if (transaction != null) {
+            long commitStart = System.nanoTime();
+            transaction.success();
+            transaction.close();
+            transaction = null;
+            if (metrics != null) {
+                metrics.getPhase(LoadMetrics.COMMIT).recordLatency(System.nanoTime() - commitStart);
+            }
+        }
+        batchRows = 0;
+        if (System.currentTimeMillis() - lastProgressTime >= PROGRESS_INTERVAL_MILLIS) {
+            reportProgress();
+        }
+    }
+
+    private void reportProgress() {
+        long now = System.currentTimeMillis();
+        long rows = actorCount + movieCount + relationshipCount;
+        double seconds = Math.max(1, now - startTime) / 1000.0;
+        System.out.println(String.format("Wrote %d actors, %d movies, %d relationships in %.1fs (%.0f rows/sec)",
+                actorCount, movieCount, relationshipCount, seconds, rows / seconds));
+        if (removedActorCount + removedMovieCount + removedRelationshipCount > 0) {
+            System.out.println(String.format("Removed %d actors, %d movies, %d relationships",
+                    removedActorCount, removedMovieCount, removedRelationshipCount));
+        }
+        lastProgressTime = now;
+    }
+
+    private void createIndexes() {
+        try (Transaction tx = graphDb.beginTx()) {
+            for (Label label : new Label[]{ACTOR_LABEL, MOVIE_LABEL}) {
+                boolean hasIndex = false;
+                for (IndexDefinition index : graphDb.schema().getIndexes(label)) {
+                    for (String propertyKey : index.getPropertyKeys()) {
+                        hasIndex |= ID_PROPERTY.equals(propertyKey);
+                    }
+                }
+                if (!hasIndex) {
+                    graphDb.schema().indexFor(label).on(ID_PROPERTY).create();
+                }
+            }
+            tx.success();
+        }
+        try (Transaction tx = graphDb.beginTx()) {
+            graphDb.schema().awaitIndexesOnline(10, TimeUnit.MINUTES);
+            tx.success();
+        }
+    }
+}
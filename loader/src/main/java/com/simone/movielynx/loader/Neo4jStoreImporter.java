@@ -0,0 +1,153 @@
+package com.simone.movielynx.loader;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.Label;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.neo4j.unsafe.batchinsert.BatchRelationship;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Builds a brand new Neo4J store offline with Neo4J's batch inserter, for full reloads.
+ * <p>
+ * The batch inserter writes straight to the store files without transactions, which is far faster than
+ * going through Neo4jBulkWriter, but requires exclusive access to a store directory.  The store is
+ * therefore built in a temporary directory next to the target one, and only swapped in once it is
+ * complete, so a failed import never leaves a half-written store in place.  While the new store is swapped in,
+ * the old one is moved aside to a directory of its own, and moved back if the swap fails.  Should the loader
+ * die in between, the next import restores the old store before starting.
+ * <p>
+ * The resulting graph has the same shape as the one Neo4jBulkWriter writes, including the schema indexes.
+ * Instances are not thread-safe.
+ */
+public class Neo4jStoreImporter implements ActorCreditsHandler {
+    private final static String IMPORT_SUFFIX = ".importing";
+    private final static String PREVIOUS_SUFFIX = ".previous";
+
+    private final File storeDir;
+    private final File importDir;
+    private final File previousDir;
+    private final BatchInserter inserter;
+    private boolean inserterShutDown = false;
+    private final NodeIdTable actorNodeIds = new NodeIdTable();
+    private final NodeIdTable movieNodeIds = new NodeIdTable();
+    private long relationshipCount = 0;
+    private final long startTime = System.currentTimeMillis();
+
+    /**
+     * Starts a new import that will replace the store in the given directory.
+     *
+     * @param storeDir the store directory to replace once the import is finished
+     * @throws IOException if an interrupted swap can't be undone, or the temporary import store can't be created
+     */
+    public Neo4jStoreImporter(File storeDir) throws IOException {
+        this.storeDir = storeDir.getAbsoluteFile();
+        this.importDir = new File(this.storeDir.getPath() + IMPORT_SUFFIX);
+        this.previousDir = new File(this.storeDir.getPath() + PREVIOUS_SUFFIX);
+        restorePreviousStore();
+        FileUtils.deleteDirectory(importDir);
+        inserter = BatchInserters.inserter(importDir);
+    }
+
+    /**
+     * Adds the given actor's credits to the store being built.
+     *
+     * @param credits the actor's credits
+     */
+    @Override
+    public void handle(ActorCredits credits) {
+        Set<Long> linkedMovieIds = new HashSet<>();
+        long actorNodeId = actorNodeIds.get(credits.getActor());
+        if (actorNodeId < 0) {
+            actorNodeId = createNode(Neo4jBulkWriter.ACTOR_LABEL, credits.getActor(), actorNodeIds);
+        } else {
+            for (BatchRelationship relationship : inserter.getRelationships(actorNodeId)) {
+                linkedMovieIds.add(relationship.getEndNode());
+            }
+        }
+
+        for (String movie : credits.getMovies()) {
+            long movieNodeId = movieNodeIds.get(movie);
+            if (movieNodeId < 0) {
+                movieNodeId = createNode(Neo4jBulkWriter.MOVIE_LABEL, movie, movieNodeIds);
+            }
+            if (linkedMovieIds.add(movieNodeId)) {
+                inserter.createRelationship(actorNodeId, movieNodeId, Neo4jBulkWriter.ACTED_IN, null);
+                relationshipCount++;
+            }
+        }
+    }
+
+    /**
+     * Finishes the import: creates the schema indexes, flushes the new store to disk and swaps it in place
+     * of the existing store, if any.  If the import can't be finished, the existing store is left in place, as
+     * by abort().
+     *
+     * @throws IOException if the new store can't be swapped in
+     */
+    public void finish() throws IOException {
+        inserter.createDeferredSchemaIndex(Neo4jBulkWriter.ACTOR_LABEL).on(Neo4jBulkWriter.ID_PROPERTY).create();
+        inserter.createDeferredSchemaIndex(Neo4jBulkWriter.MOVIE_LABEL).on(Neo4jBulkWriter.ID_PROPERTY).create();
+        shutdownInserter();
+
+        // Move the old store aside first, and back if the new one can't take its place, so that there is always
+        // a complete store on disk
+        FileUtils.deleteDirectory(previousDir);
+        if (storeDir.exists() && !storeDir.renameTo(previousDir)) {
+            throw new IOException("Unable to move aside existing store " + storeDir);
+        }
+        if (!importDir.renameTo(storeDir)) {
+            restorePreviousStore();
+            throw new IOException("Unable to move imported store " + importDir + " to " + storeDir);
+        }
+        FileUtils.deleteDirectory(previousDir);
+
+        double seconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+        long rows = actorNodeIds.size() + movieNodeIds.size() + relationshipCount;
+        System.out.println(String.format("Imported %d actors, %d movies, %d relationships in %.1fs (%.0f rows/sec)",
+                actorNodeIds.size(), movieNodeIds.size(), relationshipCount, seconds, rows / seconds));
+    }
+
+    /**
+     * Abandons the import, leaving any existing store untouched.  May be called after a failed finish().
+     */
+    public void abort() throws IOException {
+        try {
+            shutdownInserter();
+        } finally {
+            FileUtils.deleteDirectory(importDir);
+        }
+    }
+
+    private void shutdownInserter() {
+        if (!inserterShutDown) {
+            inserterShutDown = true;
+            inserter.shutdown();
+        }
+    }
+
+    /**
+     * Moves an old store that was moved aside for a swap that never finished back into place.  An old store
+     * with a store next to it is left over from a finished swap, and is deleted.
+     */
+    private void restorePreviousStore() throws IOException {
+        if (!previousDir.exists()) {
+            return;
+        }
+        if (storeDir.exists()) {
+            FileUtils.deleteDirectory(previousDir);
+        } else if (!previousDir.renameTo(storeDir)) {
+            throw new IOException("Unable to restore previous store " + previousDir + " to " + storeDir);
+        }
+    }
+
+    private long createNode(Label label, String id, NodeIdTable nodeIds) {
+        long nodeId = inserter.createNode(Neo4jBulkWriter.getNodeProperties(label, id), label);
+        nodeIds.put(id, nodeId);
+        return nodeId;
+    }
+}
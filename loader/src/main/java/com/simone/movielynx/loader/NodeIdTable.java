@@ -0,0 +1,54 @@
+package com.simone.movielynx.loader;
+
+import java.util.Arrays;
+
+/**
+ * Maps actor or movie names to the Neo4J node IDs they were written as, in primitive arrays rather than a
+ * HashMap of boxed IDs.
+ * <p>
+ * Names are interned into dense IDs, keyed by their 64-bit hashes, and node IDs are kept in an array indexed
+ * by those IDs.  A removed name keeps its slot, marked as having no node.  Instances are not thread-safe.
+ */
+class NodeIdTable {
+    private final static long NO_NODE = -1;
+
+    private final NameInterner names = new NameInterner();
+    private long[] nodeIds = new long[0];
+    private int size = 0;
+
+    /**
+     * Returns the node ID of the given name, or -1 if it has none.
+     */
+    long get(String name) {
+        int id = names.getId(name);
+        return id < 0 ? NO_NODE : nodeIds[id];
+    }
+
+    void put(String name, long nodeId) {
+        int id = names.intern(name);
+        if (id >= nodeIds.length) {
+            int oldLength = nodeIds.length;
+            nodeIds = Arrays.copyOf(nodeIds, Math.max(1024, oldLength * 2));
+            Arrays.fill(nodeIds, oldLength, nodeIds.length, NO_NODE);
+        }
+        if (nodeIds[id] == NO_NODE) {
+            size++;
+        }
+        nodeIds[id] = nodeId;
+    }
+
+    void remove(String name) {
+        int id = names.getId(name);
+        if (id >= 0 && nodeIds[id] != NO_NODE) {
+            nodeIds[id] = NO_NODE;
+            size--;
+        }
+    }
+
+    /**
+     * Returns the number of names with a node.
+     */
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,414 @@
+package com.simone.movielynx.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Parses actor files in parallel by splitting them into byte ranges that are parsed concurrently on a
+ * fork-join pool.
+ * <p>
+ * Each split point is moved forward to the start of the next actor line: a line whose first character is
+ * not whitespace and that contains a tab, which is exactly the kind of line that makes ActorFileParser
+ * start a new actor.  Every chunk therefore contains whole actor blocks, and parsing the chunks
+ * independently gives the same credits as parsing the whole file.  The chunks of all files are parsed in
+ * file and chunk order, and their credits are handed to the caller's handler in that order, so the handler
+ * sees exactly the same sequence of calls as it would from the sequential parser.  Only a window of
+ * parallelism * 2 chunks is parsed ahead of the handler: the next chunk is only submitted once the credits
+ * of the oldest one have been handed over, so parsed credits never pile up in memory faster than the handler
+ * takes them.
+ * <p>
+ * Files are memory mapped, which makes finding the split points cheap, and both split points and lines are
+ * found directly in the mapped bytes.
+ * <p>
+ * Gzipped files (ending in .gz) are parsed without being extracted to disk.  Each one is inflated on its own
+ * decompressor thread, which cuts the inflated data into blocks at actor lines and feeds them to the parse
+ * pool through a queue bounded by the same window.  Gzip can't be inflated in parallel, so for those files
+ * parsing is what gets spread over the pool, overlapping with decompression.
+ * <p>
+ * Given LoadMetrics, the parser counts the bytes of the files it reads, the time spent inflating and parsing
+ * each block or chunk, and the lines, actors and credits it parses.
+ */
+public class ParallelActorFileParser {
+    private final static long DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+    private final static long MAX_GZIP_BLOCK_SIZE = 4 * 1024 * 1024;
+    private final static int GZIP_BUFFER_SIZE = 256 * 1024;
+    private final static String GZIP_EXTENSION = ".gz";
+    private final static Future<List<ActorCredits>> END_OF_FILE = CompletableFuture.completedFuture(null);
+
+    private final int parallelism;
+    // The number of chunks or blocks of a file that may be parsed ahead of the handler
+    private final int window;
+    private final long chunkSize;
+    private final LoadMetrics metrics;
+    private final ActorFileParser actorFileParser;
+
+    /**
+     * Creates a new parser that uses the given number of threads.
+     *
+     * @param parallelism the number of threads to parse with
+     */
+    public ParallelActorFileParser(int parallelism) {
+        this(parallelism, null);
+    }
+
+    /**
+     * Creates a new parser that uses the given number of threads, and counts its progress in the read,
+     * decompress and parse phases of the given metrics.
+     *
+     * @param parallelism the number of threads to parse with
+     * @param metrics     the metrics to count in, or null
+     */
+    public ParallelActorFileParser(int parallelism, LoadMetrics metrics) {
+        this(parallelism, DEFAULT_CHUNK_SIZE, metrics);
+    }
+
+    ParallelActorFileParser(int parallelism, long chunkSize) {
+        this(parallelism, chunkSize, null);
+    }
+
+    ParallelActorFileParser(int parallelism, long chunkSize, LoadMetrics metrics) {
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Invalid parallelism or chunk size!");
+        }
+        this.parallelism = parallelism;
+        this.window = parallelism * 2;
+        this.chunkSize = chunkSize;
+        this.metrics = metrics;
+        this.actorFileParser = new ActorFileParser(metrics);
+    }
+
+    /**
+     * Parses the given actor files in parallel, streaming each actor's credits to the given handler.  The
+     * handler is only ever called from the calling thread.
+     *
+     * @param actorFiles the actor files to parse
+     * @param handler    the handler to pass each actor's credits to
+     * @throws IOException if an error occurs reading the actor files, or in the handler
+     */
+    public void parseMovieLists(List<File> actorFiles, ActorCreditsHandler handler) throws IOException {
+        List<MappedActorFile> mappedFiles = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ExecutorService decompressors = Executors.newCachedThreadPool();
+        startPhases(actorFiles);
+        try {
+            // Start decompressing every gzipped file up front, so that they're inflated at the same time, and
+            // line up the chunks of the mapped files to be parsed in order, a window at a time
+            List<BlockingQueue<Future<List<ActorCredits>>>> gzipChunkResults = new ArrayList<>();
+            int[] chunkCounts = new int[actorFiles.size()];
+            Deque<Callable<List<ActorCredits>>> pendingChunks = new ArrayDeque<>();
+            Deque<Future<List<ActorCredits>>> submittedChunks = new ArrayDeque<>();
+            for (int i = 0; i < actorFiles.size(); i++) {
+                File actorFile = actorFiles.get(i);
+                if (isGzipFile(actorFile)) {
+                    gzipChunkResults.add(startDecompressor(actorFile, pool, decompressors));
+                } else {
+                    gzipChunkResults.add(null);
+                    MappedActorFile mappedFile = new MappedActorFile(actorFile);
+                    mappedFiles.add(mappedFile);
+                    List<long[]> ranges = split(mappedFile);
+                    chunkCounts[i] = ranges.size();
+                    for (long[] range : ranges) {
+                        pendingChunks.add(() -> parseChunk(mappedFile, range[0], range[1]));
+                    }
+                }
+            }
+            submitChunks(pool, pendingChunks, submittedChunks);
+
+            for (int i = 0; i < actorFiles.size(); i++) {
+                BlockingQueue<Future<List<ActorCredits>>> chunkResults = gzipChunkResults.get(i);
+                if (chunkResults != null) {
+                    Future<List<ActorCredits>> chunkResult;
+                    while ((chunkResult = takeChunkResult(chunkResults)) != END_OF_FILE) {
+                        handleChunkResult(chunkResult, handler);
+                    }
+                } else {
+                    for (int chunk = 0; chunk < chunkCounts[i]; chunk++) {
+                        handleChunkResult(submittedChunks.remove(), handler);
+                        submitChunks(pool, pendingChunks, submittedChunks);
+                    }
+                }
+            }
+        } finally {
+            decompressors.shutdownNow();
+            pool.shutdownNow();
+            for (MappedActorFile mappedFile : mappedFiles) {
+                mappedFile.close();
+            }
+            endPhases(actorFiles);
+        }
+    }
+
+    /**
+     * Submits pending chunks to the pool, in order, until a window of them is waiting to be handled.
+     */
+    private void submitChunks(ForkJoinPool pool, Deque<Callable<List<ActorCredits>>> pendingChunks,
+                              Deque<Future<List<ActorCredits>>> submittedChunks) {
+        while (submittedChunks.size() < window && !pendingChunks.isEmpty()) {
+            submittedChunks.add(pool.submit(pendingChunks.remove()));
+        }
+    }
+
+    private void handleChunkResult(Future<List<ActorCredits>> chunkResult, ActorCreditsHandler handler)
+            throws IOException {
+        for (ActorCredits credits : getChunkResult(chunkResult)) {
+            handler.handle(credits);
+        }
+    }
+
+    private void startPhases(List<File> actorFiles) {
+        if (metrics == null) {
+            return;
+        }
+        long totalBytes = 0;
+        for (File actorFile : actorFiles) {
+            totalBytes += actorFile.length();
+            if (isGzipFile(actorFile)) {
+                metrics.getPhase(LoadMetrics.DECOMPRESS).start();
+            }
+        }
+        metrics.getPhase(LoadMetrics.READ).setTotalBytes(totalBytes);
+        metrics.getPhase(LoadMetrics.READ).start();
+        metrics.getPhase(LoadMetrics.PARSE).start();
+    }
+
+    private void endPhases(List<File> actorFiles) {
+        if (metrics == null) {
+            return;
+        }
+        for (File actorFile : actorFiles) {
+            if (isGzipFile(actorFile)) {
+                metrics.getPhase(LoadMetrics.DECOMPRESS).end();
+            }
+        }
+        metrics.getPhase(LoadMetrics.READ).end();
+        metrics.getPhase(LoadMetrics.PARSE).end();
+    }
+
+    /**
+     * Returns whether the given actor file is gzipped, based on its extension.
+     */
+    public static boolean isGzipFile(File actorFile) {
+        return actorFile.getName().endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * Starts decompressing the given gzipped file on its own thread.  The decompressor cuts the inflated
+     * data into blocks of whole actor blocks and submits each block to the parse pool, so that inflating
+     * and parsing overlap.  The returned queue is bounded, which stops the decompressor from running too
+     * far ahead of the caller's handler.
+     */
+    private BlockingQueue<Future<List<ActorCredits>>> startDecompressor(File actorFile, ForkJoinPool pool,
+                                                                        ExecutorService decompressors) {
+        BlockingQueue<Future<List<ActorCredits>>> chunkResults = new ArrayBlockingQueue<>(window);
+        int blockSize = (int) Math.min(chunkSize, MAX_GZIP_BLOCK_SIZE);
+        decompressors.submit(() -> {
+            try (InputStream inputStream = new GZIPInputStream(openCounted(actorFile), GZIP_BUFFER_SIZE)) {
+                GzipBlockReader blockReader = new GzipBlockReader(inputStream, blockSize);
+                ByteBuffer block;
+                long blockStart = System.nanoTime();
+                while ((block = blockReader.nextBlock()) != null) {
+                    if (metrics != null) {
+                        LoadMetrics.Phase decompress = metrics.getPhase(LoadMetrics.DECOMPRESS);
+                        decompress.recordLatency(System.nanoTime() - blockStart);
+                        decompress.addBytes(block.remaining());
+                    }
+                    ByteBuffer chunk = block;
+                    chunkResults.put(pool.submit(() -> parseChunk(chunk)));
+                    blockStart = System.nanoTime();
+                }
+                chunkResults.put(END_OF_FILE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                CompletableFuture<List<ActorCredits>> failure = new CompletableFuture<>();
+                failure.completeExceptionally(e);
+                chunkResults.clear();
+                chunkResults.offer(failure);
+            }
+            return null;
+        });
+        return chunkResults;
+    }
+
+    /**
+     * Splits the actor lines of the given file into ranges of roughly chunkSize bytes, each starting at an
+     * actor line.
+     *
+     * @return the [start, end) byte ranges, in file order
+     */
+    List<long[]> split(MappedActorFile mappedFile) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        long start = findMovieListStart(mappedFile);
+        long size = mappedFile.size();
+        if (start < 0) {
+            return ranges;
+        }
+
+        // Aim for at least one chunk per thread, but never chunks larger than chunkSize
+        long targetSize = Math.max(1, Math.min(chunkSize, (size - start) / parallelism));
+        while (start < size) {
+            long end = start + targetSize >= size ? size : findActorLineStart(mappedFile, start + targetSize);
+            ranges.add(new long[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns a stream to the given file that counts the bytes read from it in the read phase.
+     */
+    private InputStream openCounted(File actorFile) throws IOException {
+        InputStream inputStream = new FileInputStream(actorFile);
+        if (metrics == null) {
+            return inputStream;
+        }
+        LoadMetrics.Phase read = metrics.getPhase(LoadMetrics.READ);
+        return new FilterInputStream(inputStream) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                read.addBytes(b < 0 ? 0 : 1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = super.read(b, off, len);
+                read.addBytes(Math.max(0, count));
+                return count;
+            }
+        };
+    }
+
+    private List<ActorCredits> parseChunk(MappedActorFile mappedFile, long start, long end) throws IOException {
+        long startTime = System.nanoTime();
+        List<ActorCredits> chunkCredits = new ArrayList<>();
+        actorFileParser.parseActorBlocks(new MappedLineReader(mappedFile, start, end), chunkCredits::add);
+        if (metrics != null) {
+            // The chunk is only read from disk as it's parsed, through the mapping
+            metrics.getPhase(LoadMetrics.READ).addBytes(end - start);
+            recordChunk(end - start, startTime);
+        }
+        return chunkCredits;
+    }
+
+    private List<ActorCredits> parseChunk(ByteBuffer chunk) throws IOException {
+        long startTime = System.nanoTime();
+        List<ActorCredits> chunkCredits = new ArrayList<>();
+        InputStream inputStream = new ByteArrayInputStream(chunk.array(), chunk.position(), chunk.remaining());
+        actorFileParser.parseActorBlocks(
+                new CharLineReader(new InputStreamReader(inputStream, ActorFileParser.ACTOR_FILE_CHARSET)),
+                chunkCredits::add);
+        if (metrics != null) {
+            recordChunk(chunk.remaining(), startTime);
+        }
+        return chunkCredits;
+    }
+
+    private void recordChunk(long bytes, long startTime) {
+        LoadMetrics.Phase parse = metrics.getPhase(LoadMetrics.PARSE);
+        parse.addBytes(bytes);
+        parse.recordLatency(System.nanoTime() - startTime);
+    }
+
+    private Future<List<ActorCredits>> takeChunkResult(BlockingQueue<Future<List<ActorCredits>>> chunkResults)
+            throws IOException {
+        try {
+            return chunkResults.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing actor files", e);
+        }
+    }
+
+    private List<ActorCredits> getChunkResult(Future<List<ActorCredits>> chunkResult) throws IOException {
+        try {
+            return chunkResult.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing actor files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to parse actor file chunk", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the offset of the first byte after the "movie start" line, or -1 if the file has none.
+     */
+    private long findMovieListStart(MappedActorFile mappedFile) throws IOException {
+        MappedLineReader reader = new MappedLineReader(mappedFile, 0, mappedFile.size());
+        return actorFileParser.skipToMovieList(reader) ? reader.getPosition() : -1;
+    }
+
+    /**
+     * Returns the offset of the first actor line starting at or after the given position, or the size of
+     * the file if there is none.  An actor line starts with a non-whitespace character and contains a tab.
+     */
+    private long findActorLineStart(MappedActorFile mappedFile, long position) {
+        long size = mappedFile.size();
+
+        // The position is most likely in the middle of a line, so skip ahead to the next line start
+        if (!isLineTerminator(mappedFile.get(position - 1))) {
+            position = nextLineStart(mappedFile, position);
+        }
+        while (position < size) {
+            byte first = mappedFile.get(position);
+            if (isActorLineStart(first)) {
+                for (long i = position + 1; i < size && !isLineTerminator(mappedFile.get(i)); i++) {
+                    if (mappedFile.get(i) == '\t') {
+                        return position;
+                    }
+                }
+            }
+            position = nextLineStart(mappedFile, position);
+        }
+        return size;
+    }
+
+    private static long nextLineStart(MappedActorFile mappedFile, long position) {
+        long size = mappedFile.size();
+        while (position < size && !isLineTerminator(mappedFile.get(position))) {
+            position++;
+        }
+        return Math.min(size, position + 1);
+    }
+
+    /**
+     * Returns whether the bytes [start, end) of the given buffer are an actor line: one that starts with a
+     * non-whitespace character and contains a tab.
+     */
+    static boolean isActorLine(byte[] bytes, int start, int end) {
+        if (start >= end || !isActorLineStart(bytes[start])) {
+            return false;
+        }
+        for (int i = start + 1; i < end; i++) {
+            if (bytes[i] == '\t') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isLineTerminator(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static boolean isActorLineStart(byte first) {
+        return !isLineTerminator(first) && !Character.isWhitespace((char) (first & 0xff));
+    }
+}
@@ -101,7 +101,17 @@ public class ActorFileParserTest {
     @Test
     public void testMovieFromLine3() throws Exception {
         String line = "Abajian, Agaby\tArmenia, My Love... (2016)  [Armenian Prisoner]";
-        assertEquals("Armenia, My Love...", actorFileParser.getMovieFromLine(line));
+        assertEquals("Armenia, My Love... (2016)", actorFileParser.getMovieFromLine(line));
+    }
+
+    @Test
+    public void testMovieFromLineKeepsYearAndDisambiguator() throws Exception {
+        assertEquals("Crash (2004/I)", actorFileParser.getMovieFromLine("\tCrash (2004/I)  [Cop]  <12>"));
+        assertEquals("Crash (2004/II)", actorFileParser.getMovieFromLine("\tCrash (2004/II)"));
+        assertEquals("Untitled Project (????)", actorFileParser.getMovieFromLine("\tUntitled Project (????)"));
+        assertEquals("Hamlet (1948)", actorFileParser.getMovieFromLine("\tHamlet (1948) (TV)  [Osric]"));
+        assertEquals(null, actorFileParser.getMovieFromLine("\tHamlet (V)"));
+        assertEquals(null, actorFileParser.getMovieFromLine("\tHamlet (2004/)"));
     }
 
     @Test
@@ -176,15 +186,19 @@ public class ActorFileParserTest {
 
         Map<String, List<String>> expectedMap = new HashMap<>();
         List<String> list1 =
-                Arrays.asList("1 2 3", "Abarinding", "Bayanihan", "Biyaya ng lupa", "Cuatro cantos", "Dalawang ina");
+                Arrays.asList("1 2 3 (1955)", "Abarinding (1954)", "Bayanihan (1960)", "Biyaya ng lupa (1959)",
+                        "Cuatro cantos (1960)", "Dalawang ina (1957)");
         expectedMap.put("Carmencita Abad", list1);
-        List<String> list2 = Arrays.asList("Conquista en Juego", "The Real Double", "The Remake");
+        // The disambiguated Goodbye (2016/II) is a movie like any other
+        List<String> list2 = Arrays.asList("Conquista en Juego (2015)", "Goodbye (2016/II)", "The Real Double (2014)",
+                "The Remake (2015)");
         expectedMap.put("Macarena Abad", list2);
-        List<String> list3 = Arrays.asList("Impulso");
+        List<String> list3 = Arrays.asList("Impulso (2008)");
         expectedMap.put("Patricia (I) Abad", list3);
-        List<String> list4 = Arrays.asList("Troyanas");
+        List<String> list4 = Arrays.asList("Troyanas (2015)");
         expectedMap.put("Angeles Abad", list4);
-        List<String> list5 = Arrays.asList("Apocalypse Child", "Ben & Sam", "Dry Rain", "Fidel", "Metro Manila");
+        List<String> list5 = Arrays.asList("Apocalypse Child (2015)", "Ben & Sam (2010)", "Dry Rain (2009)",
+                "Fidel (2009)", "Metro Manila (2013)");
         expectedMap.put("Ana Abad-Santos", list5);
         assertEquals(expectedMap, actorMoveListMap);
     }
@@ -207,6 +221,79 @@ public class ActorFileParserTest {
         assertEquals(new HashMap<String, List<String>>(), actorMoveListMap);
     }
 
+    @Test
+    public void parseMovieList3() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        // Windows and old Mac line endings
+        sb.append("THE ACTRESSES LIST\r\n");
+        sb.append("----\t\t\t------\r\n");
+        sb.append("Abad, Carmencita\t1 2 3 (1955)\r\n");
+        sb.append("\tAbarinding (1954)  <5>\r");
+        sb.append("\tBayanihan (1960)\r\n");
+        sb.append("\r\n");
+        sb.append("Abad, Angeles\tTroyanas (2015)");
+
+        InputStream inputStream = new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8));
+        Map<String, List<String>> actorMoveListMap = actorFileParser.parseMovieList(inputStream);
+
+        Map<String, List<String>> expectedMap = new HashMap<>();
+        expectedMap.put("Carmencita Abad", Arrays.asList("1 2 3 (1955)", "Abarinding (1954)", "Bayanihan (1960)"));
+        expectedMap.put("Angeles Abad", Arrays.asList("Troyanas (2015)"));
+        assertEquals(expectedMap, actorMoveListMap);
+    }
+
+    @Test
+    public void parseMovieListStreaming() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        sb.append("THE ACTRESSES LIST\n");
+        sb.append("----\t\t\t------\n");
+        sb.append("Abad, Carmencita\t1 2 3 (1955)\n");
+        sb.append("\tAbarinding (1954)  <5>\n");
+        sb.append("\n");
+        sb.append("Abad, Chantal\t\"Hacete de Oliva\" (2013) {(2013-08-19)}  [Herself - Guest]\n");
+        sb.append("\n");
+        sb.append("Abad, Angeles\tTroyanas (2015)\n");
+
+        InputStream inputStream = new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8));
+        List<String> actors = new ArrayList<>();
+        List<List<String>> movies = new ArrayList<>();
+        actorFileParser.parseMovieList(inputStream, credits -> {
+            actors.add(credits.getActor());
+            movies.add(credits.getMovies());
+        });
+
+        // Actors are handed off in file order, and actors without movies are skipped
+        assertEquals(Arrays.asList("Carmencita Abad", "Angeles Abad"), actors);
+        assertEquals(Arrays.asList(Arrays.asList("1 2 3 (1955)", "Abarinding (1954)"),
+                Arrays.asList("Troyanas (2015)")), movies);
+    }
+
+    @Test
+    public void parseMovieListMappedFile() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        sb.append("THE ACTRESSES LIST\r\n");
+        sb.append("----\t\t\t------\r\n");
+        sb.append("Abad, Carmencita\t1 2 3 (1955)\r\n");
+        sb.append("\tAbarinding (1954)  <5>\r\n");
+        sb.append("\r\n");
+        sb.append("Åberg, Ängla\tBon appétit (2010)  [Sara]  <9>\n");
+        sb.append("\tDalawang ina (1957)");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        File file = File.createTempFile("ActorFileParserTest", ".list");
+        file.deleteOnExit();
+        FileUtils.writeByteArrayToFile(file, bytes);
+        Map<String, List<String>> mappedMap = new HashMap<>();
+        actorFileParser.parseMovieList(file, credits -> mappedMap.put(credits.getActor(), credits.getMovies()));
+
+        // The mapped file and the InputStream give the same ISO-8859-1 decoded results
+        Map<String, List<String>> expectedMap = new HashMap<>();
+        expectedMap.put("Carmencita Abad", Arrays.asList("1 2 3 (1955)", "Abarinding (1954)"));
+        expectedMap.put("Ängla Åberg", Arrays.asList("Bon appétit (2010)", "Dalawang ina (1957)"));
+        assertEquals(expectedMap, mappedMap);
+        assertEquals(expectedMap, actorFileParser.parseMovieList(new ByteArrayInputStream(bytes)));
+    }
+
     //@Test
     public void foo() throws Exception {
         Map<String, List<String>> map = actorFileParser.parseMovieList(new FileInputStream("d:\\actresses.txt"));
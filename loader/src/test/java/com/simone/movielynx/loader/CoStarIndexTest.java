@@ -0,0 +1,123 @@
+package com.simone.movielynx.loader;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.IntBuffer;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for CoStarIndex.
+ */
+public class CoStarIndexTest {
+
+    @Test
+    public void testCompute() throws Exception {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        builder.handle(new ActorCredits("A", Arrays.asList("M1", "M2", "Big")));
+        builder.handle(new ActorCredits("B", Arrays.asList("M1", "M2", "Big")));
+        builder.handle(new ActorCredits("C", Arrays.asList("M2", "Big")));
+        builder.handle(new ActorCredits("D", Arrays.asList("M3", "Big")));
+        builder.handle(new ActorCredits("E", Arrays.asList("M3")));
+        CreditGraph graph = builder.build();
+
+        // Big's cast of 4 is left out
+        CoStarIndex index = CoStarIndex.compute(graph, 3, 2);
+        assertEquals(5, index.getActorCount());
+        assertEquals(8, index.getCoStarCount());
+        assertEquals("B:2 C:1", coStars(graph, index, 0));
+        assertEquals("A:2 C:1", coStars(graph, index, 1));
+        assertEquals("A:1 B:1", coStars(graph, index, 2));
+        assertEquals("E:1", coStars(graph, index, 3));
+        assertEquals("D:1", coStars(graph, index, 4));
+
+        index = CoStarIndex.compute(graph, 4, 1);
+        assertEquals("B:3 C:2 D:1", coStars(graph, index, 0));
+        assertEquals("A:1 B:1 C:1 E:1", coStars(graph, index, 3));
+    }
+
+    @Test
+    public void testComputeMatchesPairs() throws Exception {
+        Random random = new Random(7);
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        for (int actor = 0; actor < 10000; actor++) {
+            List<String> movies = new ArrayList<>();
+            for (int j = random.nextInt(6); j >= 0; j--) {
+                movies.add("Movie " + random.nextInt(3000));
+            }
+            builder.handle(new ActorCredits("Actor " + actor, movies));
+        }
+        CreditGraph graph = builder.build();
+        int maxCastSize = 25;
+
+        // Count the shared movies of every pair of co-stars directly from the casts
+        int[] movieCreditOffsets = graph.getMovieCreditOffsets();
+        int[] actorIds = graph.getActorIds();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int movieId = 0; movieId < graph.getMovieCount(); movieId++) {
+            if (movieCreditOffsets[movieId + 1] - movieCreditOffsets[movieId] > maxCastSize) {
+                continue;
+            }
+            for (int i = movieCreditOffsets[movieId]; i < movieCreditOffsets[movieId + 1]; i++) {
+                for (int j = movieCreditOffsets[movieId]; j < movieCreditOffsets[movieId + 1]; j++) {
+                    if (i != j) {
+                        expected.merge(((long) actorIds[i] << 32) | actorIds[j], 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        CoStarIndex index = CoStarIndex.compute(graph, maxCastSize, 4);
+        assertEquals(expected.size(), index.getCoStarCount());
+        for (int actorId = 0; actorId < graph.getActorCount(); actorId++) {
+            for (int i = index.getCoStarsStart(actorId); i < index.getCoStarsEnd(actorId); i++) {
+                int coStarId = index.getCoStarIds()[i];
+                int weight = index.getWeights()[i];
+                assertEquals(expected.get(((long) actorId << 32) | coStarId), Integer.valueOf(weight));
+                if (i > index.getCoStarsStart(actorId)) {
+                    int previousWeight = index.getWeights()[i - 1];
+                    assertTrue(previousWeight > weight ||
+                            previousWeight == weight && index.getCoStarIds()[i - 1] < coStarId);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotSections() throws Exception {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        builder.handle(new ActorCredits("A", Arrays.asList("M1", "M2")));
+        builder.handle(new ActorCredits("B", Arrays.asList("M1", "M2")));
+        builder.handle(new ActorCredits("C", Arrays.asList("M2")));
+        CreditGraph graph = builder.build();
+        File file = File.createTempFile("CoStarIndexTest", ".graph");
+        file.deleteOnExit();
+
+        GraphSnapshot.write(graph, null, CoStarIndex.compute(graph, 10, 1), file);
+        try (GraphSnapshot snapshot = GraphSnapshot.open(file)) {
+            snapshot.verify();
+            IntBuffer offsets = snapshot.mapInts(GraphSnapshot.COSTAR_OFFSETS);
+            assertEquals(4, offsets.remaining());
+            assertEquals(6, offsets.get(3));
+            assertEquals(1, snapshot.mapInts(GraphSnapshot.COSTAR_ACTORS).get(0));
+            assertEquals(2, snapshot.mapInts(GraphSnapshot.COSTAR_WEIGHTS).get(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxCastSize() throws Exception {
+        CoStarIndex.compute(new CreditGraphBuilder().build(), 1, 1);
+    }
+
+    private static String coStars(CreditGraph graph, CoStarIndex index, int actorId) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = index.getCoStarsStart(actorId); i < index.getCoStarsEnd(actorId); i++) {
+            sb.append(sb.length() == 0 ? "" : " ").append(graph.getActorName(index.getCoStarIds()[i]))
+                    .append(':').append(index.getWeights()[i]);
+        }
+        return sb.toString();
+    }
+}
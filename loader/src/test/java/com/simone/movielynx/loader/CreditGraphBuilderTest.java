@@ -0,0 +1,83 @@
+package com.simone.movielynx.loader;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for CreditGraphBuilder and CreditGraph.
+ */
+public class CreditGraphBuilderTest {
+
+    @Test
+    public void testBuild() throws Exception {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        builder.handle(new ActorCredits("Actor A", Arrays.asList("Movie 1", "Movie 2")));
+        builder.handle(new ActorCredits("Actor B", Arrays.asList("Movie 2", "Movie 3")));
+        CreditGraph graph = builder.build();
+
+        assertEquals(2, graph.getActorCount());
+        assertEquals(3, graph.getMovieCount());
+        assertEquals(4, graph.getCreditCount());
+        assertEquals("Actor A [Movie 1, Movie 2]", graph.getActorCredits(0).toString());
+        assertEquals("Actor B [Movie 2, Movie 3]", graph.getActorCredits(1).toString());
+
+        // Both actors share the same movie ID, and the same name instance
+        int[] movieIds = graph.getMovieIds();
+        assertEquals(movieIds[graph.getCreditStart(0) + 1], movieIds[graph.getCreditStart(1)]);
+        assertSame(graph.getActorCredits(0).getMovies().get(1), graph.getActorCredits(1).getMovies().get(0));
+    }
+
+    @Test
+    public void testDuplicateActorsMerged() throws Exception {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        builder.handle(new ActorCredits("Actor A", Arrays.asList("Movie 1", "Movie 2")));
+        builder.handle(new ActorCredits("Actor B", Arrays.asList("Movie 3")));
+        builder.handle(new ActorCredits("Actor A", Arrays.asList("Movie 3", "Movie 1", "Movie 4")));
+        CreditGraph graph = builder.build();
+
+        assertEquals(2, graph.getActorCount());
+        assertEquals(1, builder.getCollisionCount());
+        assertEquals("Actor A [Movie 1, Movie 2, Movie 3, Movie 4]", graph.getActorCredits(0).toString());
+        assertEquals("Actor B [Movie 3]", graph.getActorCredits(1).toString());
+        assertEquals(4, graph.getMovieCount());
+        assertEquals(5, graph.getCreditCount());
+    }
+
+    @Test
+    public void testMatchesMap() throws Exception {
+        Random random = new Random(42);
+        Map<String, Set<String>> expected = new HashMap<>();
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        for (int i = 0; i < 20000; i++) {
+            List<String> movies = new ArrayList<>();
+            for (int j = random.nextInt(5); j >= 0; j--) {
+                movies.add("Movie " + random.nextInt(5000));
+            }
+            ActorCredits credits = new ActorCredits("Actor " + random.nextInt(10000), movies);
+            expected.computeIfAbsent(credits.getActor(), actor -> new HashSet<>()).addAll(movies);
+            builder.handle(credits);
+        }
+        CreditGraph graph = builder.build();
+
+        Map<String, Set<String>> actual = new HashMap<>();
+        Set<String> movieNames = new HashSet<>();
+        int[] movieIds = graph.getMovieIds();
+        for (int actorId = 0; actorId < graph.getActorCount(); actorId++) {
+            ActorCredits credits = graph.getActorCredits(actorId);
+            actual.put(credits.getActor(), new HashSet<>(credits.getMovies()));
+            assertEquals(credits.getMovies().size(), actual.get(credits.getActor()).size());
+            movieNames.addAll(credits.getMovies());
+            for (int i = graph.getCreditStart(actorId) + 1; i < graph.getCreditEnd(actorId); i++) {
+                assertTrue(movieIds[i - 1] < movieIds[i]);
+            }
+        }
+        assertEquals(expected, actual);
+        assertEquals(movieNames.size(), graph.getMovieCount());
+        assertEquals(20000 - expected.size(), builder.getCollisionCount());
+    }
+}
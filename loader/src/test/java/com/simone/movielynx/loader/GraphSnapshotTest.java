@@ -0,0 +1,151 @@
+package com.simone.movielynx.loader;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for GraphSnapshot and GraphSnapshotWriter.
+ */
+public class GraphSnapshotTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        CreditGraph graph = createGraph();
+        File file = writeSnapshot(graph);
+        try (GraphSnapshot snapshot = GraphSnapshot.open(file)) {
+            snapshot.verify();
+            assertEquals(3, snapshot.getActorCount());
+            assertEquals(3, snapshot.getMovieCount());
+            assertEquals(5, snapshot.getCreditCount());
+            assertEquals(Arrays.toString(graph.getCreditOffsets()),
+                    toString(snapshot.mapInts(GraphSnapshot.ACTOR_OFFSETS)));
+            assertEquals(Arrays.toString(graph.getMovieIds()),
+                    toString(snapshot.mapInts(GraphSnapshot.ACTOR_MOVIES)));
+            assertEquals(Arrays.toString(graph.getMovieCreditOffsets()),
+                    toString(snapshot.mapInts(GraphSnapshot.MOVIE_OFFSETS)));
+            assertEquals(Arrays.toString(graph.getActorIds()),
+                    toString(snapshot.mapInts(GraphSnapshot.MOVIE_ACTORS)));
+            assertEquals("[0, 5, 10, 24]", toString(snapshot.mapInts(GraphSnapshot.ACTOR_NAME_OFFSETS)));
+            ByteBuffer nameBytes = snapshot.mapBytes(GraphSnapshot.ACTOR_NAME_BYTES);
+            byte[] names = new byte[nameBytes.remaining()];
+            nameBytes.get(names);
+            assertEquals("ZoëBAdamsÅström, Anna", new String(names, StandardCharsets.UTF_8));
+
+            // Sorted by code point: "Adams" < "ZoëB" < "Åström, Anna"
+            assertEquals("[1, 0, 2]", toString(snapshot.mapInts(GraphSnapshot.ACTOR_NAME_INDEX)));
+            assertFalse(snapshot.hasSection(1000));
+        }
+    }
+
+    @Test
+    public void testCorruptSection() throws Exception {
+        File file = writeSnapshot(createGraph());
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(randomAccessFile.length() - 1);
+            int b = randomAccessFile.read();
+            randomAccessFile.seek(randomAccessFile.length() - 1);
+            randomAccessFile.write(b ^ 1);
+        }
+        // The header is still fine, but the checksums aren't
+        try (GraphSnapshot snapshot = GraphSnapshot.open(file)) {
+            assertException(snapshot::verify);
+        }
+    }
+
+    @Test
+    public void testCorruptHeader() throws Exception {
+        File file = writeSnapshot(createGraph());
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(8);
+            randomAccessFile.writeInt(1000);
+        }
+        assertException(() -> GraphSnapshot.open(file).close());
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(100);
+        }
+        assertException(() -> GraphSnapshot.open(file).close());
+    }
+
+    @Test
+    public void testFailedWriteKeepsSnapshot() throws Exception {
+        CreditGraph graph = createGraph();
+        File file = writeSnapshot(graph);
+        byte[] snapshotBytes = Files.readAllBytes(file.toPath());
+
+        // Fails once every other section has been written
+        CoStarIndex coStars = new CoStarIndex(10, new int[graph.getActorCount() + 1], new int[0], new int[0]) {
+            @Override
+            public int[] getWeights() {
+                throw new IllegalStateException("Failed");
+            }
+        };
+        boolean gotException = false;
+        try {
+            GraphSnapshot.write(graph, null, coStars, file);
+        } catch (IllegalStateException e) {
+            gotException = true;
+        }
+        assertTrue(gotException);
+        assertArrayEquals(snapshotBytes, Files.readAllBytes(file.toPath()));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        // Nor is a snapshot written for a writer closed part way through a section
+        File newFile = new File(file.getPath() + ".new");
+        try (GraphSnapshotWriter writer = new GraphSnapshotWriter(newFile, 0, 0, 0)) {
+            writer.writeIntSection(GraphSnapshot.ACTOR_OFFSETS, new int[]{0});
+            writer.beginSection(GraphSnapshot.ACTOR_MOVIES).writeInt(1);
+        }
+        assertFalse(newFile.exists());
+        assertFalse(new File(newFile.getPath() + ".tmp").exists());
+    }
+
+    private static CreditGraph createGraph() throws Exception {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        builder.handle(new ActorCredits("ZoëB", Arrays.asList("M1", "M2")));
+        builder.handle(new ActorCredits("Adams", Arrays.asList("M2")));
+        builder.handle(new ActorCredits("Åström, Anna", Arrays.asList("M1", "M3")));
+        return builder.build();
+    }
+
+    private static File writeSnapshot(CreditGraph graph) throws Exception {
+        File file = File.createTempFile("GraphSnapshotTest", ".graph");
+        file.deleteOnExit();
+        GraphSnapshot.write(graph, file);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        return file;
+    }
+
+    private static String toString(IntBuffer buffer) {
+        int[] values = new int[buffer.remaining()];
+        buffer.get(values);
+        return Arrays.toString(values);
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private static void assertException(IOAction action) {
+        boolean gotException = false;
+        try {
+            action.run();
+        } catch (IOException e) {
+            gotException = true;
+        }
+        assertTrue(gotException);
+    }
+}
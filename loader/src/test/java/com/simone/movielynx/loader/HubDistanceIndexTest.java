@@ -0,0 +1,77 @@
+package com.simone.movielynx.loader;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for HubDistanceIndex.
+ */
+public class HubDistanceIndexTest {
+
+    @Test
+    public void testCompute() throws Exception {
+        CreditGraph graph = createGraph();
+        int[] hubActorIds = HubDistanceIndex.selectHubs(graph, 2);
+        assertEquals("[1, 2]", Arrays.toString(hubActorIds));
+
+        HubDistanceIndex index = HubDistanceIndex.compute(graph, hubActorIds, 2);
+        assertEquals(2, index.getHubCount());
+        assertEquals(5, index.getActorCount());
+        assertEquals("1 0 1 2 255", distances(index, 0));
+        assertEquals("2 1 0 1 255", distances(index, 1));
+    }
+
+    @Test
+    public void testFindActors() throws Exception {
+        CreditGraph graph = createGraph();
+        assertEquals("[3, 0]", Arrays.toString(HubDistanceIndex.findActors(graph,
+                Arrays.asList("D", "Unknown", "A", "D"))));
+    }
+
+    @Test
+    public void testSnapshotSections() throws Exception {
+        CreditGraph graph = createGraph();
+        HubDistanceIndex index = HubDistanceIndex.compute(graph, new int[]{3}, 1);
+        File file = File.createTempFile("HubDistanceIndexTest", ".graph");
+        file.deleteOnExit();
+
+        GraphSnapshot.write(graph, file);
+        try (GraphSnapshot snapshot = GraphSnapshot.open(file)) {
+            assertFalse(snapshot.hasSection(GraphSnapshot.HUB_DISTANCES));
+        }
+        GraphSnapshot.write(graph, index, file);
+        try (GraphSnapshot snapshot = GraphSnapshot.open(file)) {
+            snapshot.verify();
+            assertTrue(snapshot.hasSection(GraphSnapshot.HUB_ACTORS));
+            assertEquals(3, snapshot.mapInts(GraphSnapshot.HUB_ACTORS).get(0));
+            ByteBuffer distances = snapshot.mapBytes(GraphSnapshot.HUB_DISTANCES);
+            assertEquals(5, distances.remaining());
+            assertEquals(2, distances.get(1));
+        }
+    }
+
+    private static CreditGraph createGraph() throws Exception {
+        CreditGraphBuilder builder = new CreditGraphBuilder();
+        builder.handle(new ActorCredits("A", Arrays.asList("M1")));
+        builder.handle(new ActorCredits("B", Arrays.asList("M1", "M2")));
+        builder.handle(new ActorCredits("C", Arrays.asList("M2", "M3")));
+        builder.handle(new ActorCredits("D", Arrays.asList("M3")));
+        builder.handle(new ActorCredits("E", Arrays.asList("M4")));
+        return builder.build();
+    }
+
+    private static String distances(HubDistanceIndex index, int hub) {
+        StringBuilder sb = new StringBuilder();
+        for (int actorId = 0; actorId < index.getActorCount(); actorId++) {
+            sb.append(actorId == 0 ? "" : " ").append(index.getDistance(hub, actorId));
+        }
+        return sb.toString();
+    }
+}
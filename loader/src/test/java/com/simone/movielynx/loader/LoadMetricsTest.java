@@ -0,0 +1,112 @@
+package com.simone.movielynx.loader;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for LoadMetrics and LatencyHistogram.
+ */
+public class LoadMetricsTest {
+
+    @Test
+    public void testLatencyHistogram() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+        for (int micros = 1; micros <= 1000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getMaxNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(500500), histogram.getTotalNanos());
+
+        // Every percentile is within a bucket's width, 25%, of the true value
+        for (int percentile : new int[]{1, 10, 50, 90, 99, 100}) {
+            long expected = TimeUnit.MICROSECONDS.toNanos(percentile * 10);
+            long actual = histogram.getPercentileNanos(percentile);
+            assertTrue(percentile + ": " + actual, actual >= expected && actual <= expected * 1.25);
+        }
+
+        // Bucket bounds only ever grow
+        for (int bucket = 1; bucket < histogram.getBucketCount(); bucket++) {
+            assertTrue(histogram.getBucketUpperBoundNanos(bucket) > histogram.getBucketUpperBoundNanos(bucket - 1));
+        }
+        histogram.record(TimeUnit.DAYS.toNanos(365));
+        assertEquals(1, histogram.getBucketCounts()[histogram.getBucketCount() - 1]);
+    }
+
+    @Test
+    public void testParsePhases() throws Exception {
+        File dir = File.createTempFile("LoadMetricsTest", "");
+        dir.delete();
+        dir.mkdirs();
+        File actorsFile = new File(dir, "actors.list");
+        File actressesFile = new File(dir, "actresses.list.gz");
+        byte[] actors = ("----\t\t\t------\n" +
+                "Bar1, Foo1\tMovieA (1955)\n" +
+                "\tMovieB (1954)\n" +
+                "\n" +
+                "Bar2, Foo2\tMovieB (1954)\n").getBytes(ActorFileParser.ACTOR_FILE_CHARSET);
+        try (OutputStream outputStream = new FileOutputStream(actorsFile)) {
+            outputStream.write(actors);
+        }
+        try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(actressesFile))) {
+            outputStream.write(actors);
+        }
+
+        for (int parallelism : new int[]{1, 2}) {
+            LoadMetrics metrics = new LoadMetrics();
+            List<ActorCredits> credits = new ArrayList<>();
+            new ParallelActorFileParser(parallelism, 8, metrics).parseMovieLists(
+                    Arrays.asList(actorsFile, actressesFile), credits::add);
+            assertEquals(4, credits.size());
+
+            LoadMetrics.Phase read = metrics.getPhase(LoadMetrics.READ);
+            LoadMetrics.Phase decompress = metrics.getPhase(LoadMetrics.DECOMPRESS);
+            LoadMetrics.Phase parse = metrics.getPhase(LoadMetrics.PARSE);
+            assertEquals(actorsFile.length() - 14 + actressesFile.length(), read.getBytes());
+            assertEquals(actors.length - 14, decompress.getBytes());
+            assertEquals(2 * (actors.length - 14), parse.getBytes());
+            assertEquals(8, parse.getLines());
+            assertEquals(4, parse.getActors());
+            assertEquals(6, parse.getCredits());
+            assertTrue(parse.getLatencies().getCount() >= 2);
+            assertTrue(!parse.isRunning() && !read.isRunning() && !decompress.isRunning());
+            assertTrue(metrics.formatProgress().isEmpty());
+
+            metrics.setKeyCollisionCount(3);
+            String json = metrics.toJson();
+            assertTrue(json, json.contains("\"parse\":{") && json.contains("\"lines\":8,\"actors\":4,\"credits\":6"));
+            assertTrue(json, json.contains(",\"keyCollisions\":3,"));
+            assertTrue(json, !json.contains("\"merge\""));
+        }
+    }
+
+    @Test
+    public void testProgress() throws Exception {
+        LoadMetrics metrics = new LoadMetrics();
+        LoadMetrics.Phase write = metrics.getPhase(LoadMetrics.WRITE);
+        write.setTotalActors(100);
+        write.start();
+        write.addActors(25);
+        write.addCredits(50);
+
+        List<String> progress = metrics.formatProgress();
+        assertEquals(1, progress.size());
+        assertTrue(progress.get(0), progress.get(0).startsWith("Progress write: "));
+        assertTrue(progress.get(0), progress.get(0).contains(" 25 actors ") &&
+                progress.get(0).contains(" 50 credits ") && progress.get(0).contains(", ETA "));
+        write.end();
+        assertTrue(metrics.formatProgress().isEmpty());
+    }
+}
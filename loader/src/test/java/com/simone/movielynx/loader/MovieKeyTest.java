@@ -0,0 +1,54 @@
+package com.simone.movielynx.loader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for MovieKey.
+ */
+public class MovieKeyTest {
+
+    @Test
+    public void testParse() {
+        MovieKey key = MovieKey.parse("Crash (2004/II)");
+        assertEquals("Crash", key.getTitle());
+        assertEquals(2004, key.getYear());
+        assertEquals(2, key.getDisambiguator());
+        assertEquals("Crash (2004/II)", key.toString());
+
+        key = MovieKey.parse("Untitled (Project) (????)");
+        assertEquals("Untitled (Project)", key.getTitle());
+        assertEquals(MovieKey.UNKNOWN_YEAR, key.getYear());
+        assertEquals(0, key.getDisambiguator());
+        assertEquals("Untitled (Project) (????)", key.toString());
+
+        assertEquals("Goodbye (2016/XIV)", MovieKey.parse("Goodbye (2016/XIV)").toString());
+    }
+
+    @Test
+    public void testInvalidNames() {
+        assertNull(MovieKey.tryParse("Crash"));
+        assertNull(MovieKey.tryParse("Crash (TV)"));
+        assertNull(MovieKey.tryParse("Crash (2004/)"));
+        assertNull(MovieKey.tryParse("Crash (2004/IIII)"));
+        assertNull(MovieKey.tryParse("(2004)"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidName() {
+        MovieKey.parse("Crash (20x4)");
+    }
+
+    @Test
+    public void testRemakesAreDistinct() {
+        MovieKey original = MovieKey.parse("Hamlet (1948)");
+        MovieKey remake = MovieKey.parse("Hamlet (1996)");
+        assertNotEquals(original, remake);
+        assertNotEquals(MovieKey.parse("Crash (2004/I)"), MovieKey.parse("Crash (2004/II)"));
+        assertEquals(original, MovieKey.parse("Hamlet (1948)"));
+        assertNotEquals(MovieKey.hash(original.toString()), MovieKey.hash(remake.toString()));
+    }
+}
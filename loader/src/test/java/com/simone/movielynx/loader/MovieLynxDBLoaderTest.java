@@ -8,10 +8,14 @@ import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -94,9 +98,30 @@ public class MovieLynxDBLoaderTest {
         assertTrue(gotException);
     }
 
+    @Test
+    public void testEnvSettings5GzipFiles() throws Exception {
+        File gzipDir = new File(workDir + File.separator + "gzip");
+        gzipDir.mkdirs();
+        for (String actorFileName : MovieLynxDBLoader.ACTOR_FILES) {
+            File gzipFile = new File(gzipDir + File.separator + actorFileName + ".gz");
+            try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(gzipFile))) {
+                outputStream.write(FileUtils.readFileToByteArray(new File(workDir + File.separator + actorFileName)));
+            }
+        }
+
+        MockEnvironment env = new MockEnvironment();
+        env.setValue(MovieLynxDBLoader.ACTOR_FILE_DIR_ENV_VAR, gzipDir.getAbsolutePath());
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_URL_ENV_VAR, "tbd");
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_USER_ENV_VAR, "tbd");
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_PASSWORD_ENV_VAR, "tbd");
+        new MovieLynxDBLoader(env);
+    }
+
     @Test
     public void testLoadIntoDB() throws Exception {
-        GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder(workDir)
+        File storeDir = new File(workDir + File.separator + "graph.db");
+        FileUtils.deleteDirectory(storeDir);
+        GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder(storeDir)
                 .setConfig(GraphDatabaseSettings.pagecache_memory, "128M")
                 .setConfig(GraphDatabaseSettings.string_block_size, "60")
                 .setConfig(GraphDatabaseSettings.array_block_size, "300").newGraphDatabase();
@@ -105,26 +130,173 @@ public class MovieLynxDBLoaderTest {
         env.setValue(MovieLynxDBLoader.NEO4J_DB_URL_ENV_VAR, "tbd");
         env.setValue(MovieLynxDBLoader.NEO4J_DB_USER_ENV_VAR, "tbd");
         env.setValue(MovieLynxDBLoader.NEO4J_DB_PASSWORD_ENV_VAR, "tbd");
+        env.setValue(MovieLynxDBLoader.NEO4J_BATCH_SIZE_ENV_VAR, "3");
+
+        try {
+            MovieLynxDBLoader defaultLoader = new MovieLynxDBLoader(env);
+            defaultLoader.load(graphDb);
+            assertGraph(graphDb);
+
+            // Loading again must not duplicate any nodes or relationships
+            defaultLoader.load(graphDb);
+            assertGraph(graphDb);
+        } finally {
+            graphDb.shutdown();
+        }
+    }
+
+    @Test
+    public void testImportStore() throws Exception {
+        File storeDir = new File(workDir + File.separator + "import.db");
+        FileUtils.deleteDirectory(storeDir);
+        MockEnvironment env = new MockEnvironment();
+        env.setValue(MovieLynxDBLoader.ACTOR_FILE_DIR_ENV_VAR, workDir.getAbsolutePath());
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_URL_ENV_VAR, storeDir.getAbsolutePath());
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_USER_ENV_VAR, "tbd");
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_PASSWORD_ENV_VAR, "tbd");
+        env.setValue(MovieLynxDBLoader.LOAD_MODE_ENV_VAR, MovieLynxDBLoader.LOAD_MODE_IMPORT);
+        File snapshotFile = new File(workDir + File.separator + "import.graph");
+        snapshotFile.delete();
+        env.setValue(MovieLynxDBLoader.GRAPH_SNAPSHOT_FILE_ENV_VAR, snapshotFile.getAbsolutePath());
+        File metricsFile = new File(workDir + File.separator + "import.metrics.json");
+        env.setValue(MovieLynxDBLoader.METRICS_FILE_ENV_VAR, metricsFile.getAbsolutePath());
 
+        // Importing again must replace the existing store rather than add to it
         MovieLynxDBLoader defaultLoader = new MovieLynxDBLoader(env);
         defaultLoader.load();
+        defaultLoader.load();
+        assertTrue(!new File(storeDir.getPath() + ".importing").exists());
+        assertTrue(!new File(storeDir.getPath() + ".previous").exists());
+        try (DataInputStream inputStream = new DataInputStream(new FileInputStream(snapshotFile))) {
+            assertEquals(GraphSnapshot.MAGIC, inputStream.readInt());
+            assertEquals(GraphSnapshot.VERSION, inputStream.readInt());
+            assertEquals(5, inputStream.readInt());
+            assertEquals(4, inputStream.readInt());
+        }
+        String metrics = FileUtils.readFileToString(metricsFile, "UTF-8");
+        for (String phase : Arrays.asList(LoadMetrics.READ, LoadMetrics.PARSE, LoadMetrics.MERGE,
+                LoadMetrics.WRITE, LoadMetrics.COMMIT)) {
+            assertTrue(metrics, metrics.contains("\"" + phase + "\":{"));
+        }
+        // Both loads are counted, and each merge sees every actor once
+        assertEquals(10, defaultLoader.getMetrics().getPhase(LoadMetrics.MERGE).getActors());
+        assertEquals(10, defaultLoader.getMetrics().getPhase(LoadMetrics.WRITE).getActors());
+        assertEquals(2, defaultLoader.getMetrics().getPhase(LoadMetrics.COMMIT).getLatencies().getCount());
+
+        // A swap that died after moving the store aside is undone by the next import, even one that's abandoned
+        File previousDir = new File(storeDir.getPath() + ".previous");
+        assertTrue(storeDir.renameTo(previousDir));
+        new Neo4jStoreImporter(storeDir).abort();
+        assertTrue(!previousDir.exists() && !new File(storeDir.getPath() + ".importing").exists());
+
+        GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir);
+        try {
+            assertGraph(graphDb);
+        } finally {
+            graphDb.shutdown();
+        }
+    }
+
+    @Test
+    public void testDeltaLoad() throws Exception {
+        File deltaDir = new File(workDir + File.separator + "delta");
+        deltaDir.mkdirs();
+        for (String actorFileName : MovieLynxDBLoader.ACTOR_FILES) {
+            FileUtils.copyFile(new File(workDir + File.separator + actorFileName),
+                    new File(deltaDir + File.separator + actorFileName));
+        }
+        File storeDir = new File(workDir + File.separator + "delta.db");
+        FileUtils.deleteDirectory(storeDir);
+        File fingerprintFile = new File(storeDir.getPath() + MovieLynxDBLoader.FINGERPRINT_FILE_SUFFIX);
+        fingerprintFile.delete();
+        MockEnvironment env = new MockEnvironment();
+        env.setValue(MovieLynxDBLoader.ACTOR_FILE_DIR_ENV_VAR, deltaDir.getAbsolutePath());
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_URL_ENV_VAR, storeDir.getAbsolutePath());
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_USER_ENV_VAR, "tbd");
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_PASSWORD_ENV_VAR, "tbd");
+        env.setValue(MovieLynxDBLoader.LOAD_MODE_ENV_VAR, MovieLynxDBLoader.LOAD_MODE_DELTA);
+
+        // Without a previous fingerprint file, the first delta load is a full load
+        new MovieLynxDBLoader(env).load();
+        assertTrue(fingerprintFile.exists());
+        assertEquals(5, CreditFingerprintIndex.read(fingerprintFile).size());
+
+        // Change Foo4, remove Foo5 and add Foo6, leaving MovieD without any actor
+        try (OutputStream outputStream = new FileOutputStream(deltaDir + File.separator + "actresses.list")) {
+            outputStream.write(("----\t\t\t------\n" +
+                    "Bar4, Foo4\tMovieA (1955)\n" +
+                    "\tMovieE (1954)  <5>\n" +
+                    "\n" +
+                    "Bar6, Foo6\tMovieB (1954)\n").getBytes("ISO-8859-1"));
+        }
+        new MovieLynxDBLoader(env).load();
+
+        Map<String, List<String>> expected = new TreeMap<>();
+        expected.put("Foo1 Bar1", Arrays.asList("MovieA (1955)", "MovieB (1954)", "MovieC (1954)"));
+        expected.put("Foo2 Bar2", Arrays.asList("MovieB (1954)", "MovieC (1954)"));
+        expected.put("Foo3 Bar3", Arrays.asList("MovieA (1955)"));
+        expected.put("Foo4 Bar4", Arrays.asList("MovieA (1955)", "MovieE (1954)"));
+        expected.put("Foo6 Bar6", Arrays.asList("MovieB (1954)"));
+        GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir);
+        try {
+            assertGraph(graphDb, expected, 4);
+        } finally {
+            graphDb.shutdown();
+        }
+        assertEquals(5, CreditFingerprintIndex.read(fingerprintFile).size());
+    }
+
+    @Test
+    public void testInvalidLoadMode() throws Exception {
+        MockEnvironment env = new MockEnvironment();
+        env.setValue(MovieLynxDBLoader.ACTOR_FILE_DIR_ENV_VAR, workDir.getAbsolutePath());
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_URL_ENV_VAR, "tbd");
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_USER_ENV_VAR, "tbd");
+        env.setValue(MovieLynxDBLoader.NEO4J_DB_PASSWORD_ENV_VAR, "tbd");
+        env.setValue(MovieLynxDBLoader.LOAD_MODE_ENV_VAR, "bogus");
+        boolean gotException = false;
+        try {
+            new MovieLynxDBLoader(env);
+        } catch (IllegalArgumentException e) {
+            gotException = true;
+        }
+        assertTrue(gotException);
+    }
+
+    private void assertGraph(GraphDatabaseService graphDb) {
+        Map<String, List<String>> expected = new TreeMap<>();
+        expected.put("Foo1 Bar1", Arrays.asList("MovieA (1955)", "MovieB (1954)", "MovieC (1954)"));
+        expected.put("Foo2 Bar2", Arrays.asList("MovieB (1954)", "MovieC (1954)"));
+        expected.put("Foo3 Bar3", Arrays.asList("MovieA (1955)"));
+        expected.put("Foo4 Bar4", Arrays.asList("MovieA (1955)", "MovieB (1954)", "MovieC (1954)"));
+        expected.put("Foo5 Bar5", Arrays.asList("MovieC (1954)", "MovieD (1954)"));
+        assertGraph(graphDb, expected, 4);
+    }
 
-        Node firstNode = graphDb.createNode();
-        firstNode.setProperty("message", "Hello, ");
-        Node secondNode = graphDb.createNode();
-        secondNode.setProperty("message", "World!");
-
-        //Relationship relationship = firstNode.createRelationshipTo(secondNode, RelTypes.KNOWS);
-        //relationship.setProperty("message", "brave Neo4j ");
-        //String query = "MATCH (n) RETURN n.actor";
-        //Result result = graphDb.execute(query);
-        //List<String> actorNames = new ArrayList<>();
-        //while (result.hasNext()) {
-        //    actorNames.add(result.next().get("n.name").toString());
-        // }
-        // assertEquals(actorNames, Arrays.asList("Carmencita Abad"));
-        // graphDb.shutdown();
+    private void assertGraph(GraphDatabaseService graphDb, Map<String, List<String>> expected, int expectedMovies) {
+        try (Transaction tx = graphDb.beginTx()) {
+            Map<String, List<String>> actorMovies = new TreeMap<>();
+            ResourceIterator<Node> actors = graphDb.findNodes(Neo4jBulkWriter.ACTOR_LABEL);
+            while (actors.hasNext()) {
+                Node actor = actors.next();
+                List<String> movies = new ArrayList<>();
+                for (Relationship r : actor.getRelationships(Direction.OUTGOING, Neo4jBulkWriter.ACTED_IN)) {
+                    movies.add((String) r.getEndNode().getProperty(Neo4jBulkWriter.ID_PROPERTY));
+                }
+                Collections.sort(movies);
+                actorMovies.put((String) actor.getProperty(Neo4jBulkWriter.ID_PROPERTY), movies);
+            }
+            assertEquals(expected, actorMovies);
 
+            int movieCount = 0;
+            ResourceIterator<Node> movies = graphDb.findNodes(Neo4jBulkWriter.MOVIE_LABEL);
+            while (movies.hasNext()) {
+                movies.next();
+                movieCount++;
+            }
+            assertEquals(expectedMovies, movieCount);
+            tx.success();
+        }
     }
 
     private static class MockEnvironment extends Environment {
@@ -0,0 +1,22 @@
+package com.simone.movielynx.loader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for NameNormalizer.
+ */
+public class NameNormalizerTest {
+
+    @Test
+    public void testNormalize() throws Exception {
+        assertEquals("kevin bacon", NameNormalizer.normalize("Kevin (I) Bacon"));
+        assertEquals("zoe saldana", NameNormalizer.normalize("Zoë  Saldaña"));
+        assertEquals("conan obrien", NameNormalizer.normalize("Conan O'Brien"));
+        assertEquals("jj abrams", NameNormalizer.normalize("J.J. Abrams"));
+        assertEquals("jean claude van damme", NameNormalizer.normalize("Jean-Claude Van Damme"));
+        assertEquals("soren strasse", NameNormalizer.normalize("Søren Straße"));
+        assertEquals("", NameNormalizer.normalize(" (II) "));
+    }
+}
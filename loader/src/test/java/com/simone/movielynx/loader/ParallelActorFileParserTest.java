@@ -0,0 +1,222 @@
+package com.simone.movielynx.loader;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for ParallelActorFileParser.
+ */
+public class ParallelActorFileParserTest {
+    private static File actorsFile = null;
+    private static File actressesFile = null;
+
+    @BeforeClass
+    public static void staticPrepare() throws Exception {
+        actorsFile = writeActorFile("actors", 500, "\n");
+        actressesFile = writeActorFile("actresses", 300, "\r\n");
+    }
+
+    @Test
+    public void testMatchesSequentialParser() throws Exception {
+        List<ActorCredits> expected = parseSequential(actorsFile, actressesFile);
+        assertTrue(expected.size() > 700);
+
+        // Tiny chunks so that nearly every split point has to be re-aligned
+        for (long chunkSize : new long[]{1, 7, 100, 1000, 1024 * 1024}) {
+            for (int parallelism : new int[]{1, 2, 4}) {
+                List<ActorCredits> actual = new ArrayList<>();
+                new ParallelActorFileParser(parallelism, chunkSize).parseMovieLists(
+                        Arrays.asList(actorsFile, actressesFile), actual::add);
+                assertEquals("chunkSize=" + chunkSize + " parallelism=" + parallelism,
+                        toStrings(expected), toStrings(actual));
+            }
+        }
+    }
+
+    @Test
+    public void testGzipMatchesSequentialParser() throws Exception {
+        List<ActorCredits> expected = parseSequential(actorsFile, actressesFile);
+        File gzipActorsFile = gzip(actorsFile);
+        File gzipActressesFile = gzip(actressesFile);
+
+        // Mix gzipped and uncompressed files, with blocks small enough that nearly every cut is re-aligned
+        for (long chunkSize : new long[]{1, 100, 4096, 1024 * 1024}) {
+            for (int parallelism : new int[]{1, 3}) {
+                List<ActorCredits> actual = new ArrayList<>();
+                new ParallelActorFileParser(parallelism, chunkSize).parseMovieLists(
+                        Arrays.asList(gzipActorsFile, actressesFile), actual::add);
+                assertEquals("chunkSize=" + chunkSize + " parallelism=" + parallelism,
+                        toStrings(expected), toStrings(actual));
+
+                actual.clear();
+                new ParallelActorFileParser(parallelism, chunkSize).parseMovieLists(
+                        Arrays.asList(gzipActorsFile, gzipActressesFile), actual::add);
+                assertEquals(toStrings(expected), toStrings(actual));
+            }
+        }
+    }
+
+    @Test
+    public void testMergedGraphMatchesSequentialParser() throws Exception {
+        // Both files use the same actor names, so most actresses are merged with an actor
+        CreditGraphBuilder expected = new CreditGraphBuilder();
+        for (ActorCredits credits : parseSequential(actorsFile, actressesFile)) {
+            expected.handle(credits);
+        }
+        assertTrue(expected.getCollisionCount() > 150);
+
+        for (int parallelism : new int[]{2, 4}) {
+            CreditGraphBuilder actual = new CreditGraphBuilder();
+            new ParallelActorFileParser(parallelism, 100).parseMovieLists(
+                    Arrays.asList(actorsFile, gzip(actressesFile)), actual);
+            assertEquals(expected.getCollisionCount(), actual.getCollisionCount());
+            assertEquals(toStrings(expected.build()), toStrings(actual.build()));
+        }
+    }
+
+    @Test
+    public void testParsesAheadOfHandlerInWindow() throws Exception {
+        // One movie per actor and one actor per chunk, so every chunk is one call to the handler, which is slow
+        // enough for an unbounded parser to run far ahead of it
+        StringBuilder sb = new StringBuilder("THE ACTORS LIST\n\tName\tTitles\n----\t\t\t------\n");
+        for (int i = 0; i < 200; i++) {
+            sb.append("Actor ").append(i).append("\tMovie ").append(i).append(" (2000)\n\n");
+        }
+        File file = File.createTempFile("ParallelActorFileParserTest", ".list");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, sb.toString(), "UTF-8");
+
+        LoadMetrics metrics = new LoadMetrics();
+        LatencyHistogram parsedChunks = metrics.getPhase(LoadMetrics.PARSE).getLatencies();
+        long[] handledChunks = new long[1];
+        long[] maxParsedAhead = new long[1];
+        new ParallelActorFileParser(2, 1, metrics).parseMovieLists(Collections.singletonList(file),
+                credits -> {
+                    if (handledChunks[0] < 20) {
+                        try {
+                            Thread.sleep(5);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                    handledChunks[0]++;
+                    maxParsedAhead[0] = Math.max(maxParsedAhead[0], parsedChunks.getCount() - handledChunks[0]);
+                });
+        assertEquals(200, handledChunks[0]);
+        // Besides the chunk being handled, at most 3 more of the window of 4 are parsed
+        assertTrue("Parsed " + maxParsedAhead[0] + " chunks ahead", maxParsedAhead[0] <= 3);
+    }
+
+    @Test
+    public void testGzipCorrupt() throws Exception {
+        File file = File.createTempFile("ParallelActorFileParserTest", ".list.gz");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write("not gzipped".getBytes(StandardCharsets.UTF_8));
+        }
+        boolean gotException = false;
+        try {
+            new ParallelActorFileParser(2).parseMovieLists(Collections.singletonList(file), credits -> {
+            });
+        } catch (IOException e) {
+            gotException = true;
+        }
+        assertTrue(gotException);
+    }
+
+    @Test
+    public void testNoMovieStartLine() throws Exception {
+        File file = File.createTempFile("ParallelActorFileParserTest", ".list");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write("Abad, Carmencita\t1 2 3 (1955)\n".getBytes(StandardCharsets.UTF_8));
+        }
+        List<ActorCredits> actual = new ArrayList<>();
+        new ParallelActorFileParser(2, 1).parseMovieLists(Collections.singletonList(file), actual::add);
+        assertEquals(0, actual.size());
+    }
+
+    private static List<ActorCredits> parseSequential(File... files) throws Exception {
+        List<ActorCredits> credits = new ArrayList<>();
+        ActorFileParser actorFileParser = new ActorFileParser();
+        for (File file : files) {
+            actorFileParser.parseMovieList(new FileInputStream(file), credits::add);
+        }
+        return credits;
+    }
+
+    private static File gzip(File file) throws Exception {
+        File gzipFile = new File(file.getAbsolutePath() + ".gz");
+        gzipFile.deleteOnExit();
+        try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(gzipFile))) {
+            outputStream.write(FileUtils.readFileToByteArray(file));
+        }
+        return gzipFile;
+    }
+
+    private static List<String> toStrings(List<ActorCredits> credits) {
+        List<String> strings = new ArrayList<>();
+        for (ActorCredits actorCredits : credits) {
+            strings.add(actorCredits.toString());
+        }
+        return strings;
+    }
+
+    private static List<String> toStrings(CreditGraph graph) {
+        List<String> strings = new ArrayList<>();
+        for (int actorId = 0; actorId < graph.getActorCount(); actorId++) {
+            strings.add(graph.getActorCredits(actorId).toString());
+        }
+        return strings;
+    }
+
+    /**
+     * Writes a file in the actor file format, with a header, a mix of actor, movie, TV show and blank
+     * lines, and a footer.
+     */
+    private static File writeActorFile(String name, int actorCount, String newLine) throws Exception {
+        Random random = new Random(name.hashCode());
+        StringBuilder sb = new StringBuilder();
+        sb.append("THE ").append(name.toUpperCase()).append(" LIST").append(newLine);
+        sb.append("\tName\tTitles").append(newLine);
+        sb.append("----\t\t\t------").append(newLine);
+        for (int i = 0; i < actorCount; i++) {
+            sb.append("Last").append(i).append(", First").append(i % 17).append("\t");
+            int movieCount = 1 + random.nextInt(6);
+            for (int j = 0; j < movieCount; j++) {
+                if (j > 0) {
+                    sb.append("\t\t\t");
+                }
+                if (random.nextInt(4) == 0) {
+                    sb.append("\"Show ").append(random.nextInt(50)).append("\" (2001) {Pilot}");
+                } else {
+                    sb.append("Movie ").append(random.nextInt(200)).append(" (").append(1950 + j).append(")");
+                }
+                sb.append("  [Role]").append(newLine);
+            }
+            sb.append(newLine);
+        }
+        sb.append("-----------------------------------------------------------------------------").append(newLine);
+        sb.append("SUBMITTING UPDATES").append(newLine);
+
+        File file = File.createTempFile("ParallelActorFileParserTest-" + name, ".list");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}